@@ -0,0 +1,17 @@
+package io.github.baole444.anotherCurrency.configurations;
+
+/**
+ * Access to currency declaration for benchmarks outside this package, which run without a currency config.
+ */
+public final class BenchCurrencies {
+    private BenchCurrencies() {}
+
+    /**
+     * Declare a currency code name, assigning its handle as loading the currency config does.
+     * @param codeName the canonical name of the currency
+     * @return the handle of the code name
+     */
+    public static CurrencyHandle declare(String codeName) {
+        return CurrencyHandle.assign(codeName);
+    }
+}
@@ -0,0 +1,69 @@
+package io.github.baole444.anotherCurrency.configurations;
+
+import net.kyori.adventure.text.Component;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of rendering balances with {@link Currency#format(double)} and {@link Currency#formatLegacy(double)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CurrencyFormatBenchmark {
+    /**
+     * Grouping configuration of the formatted currency.
+     */
+    @Param({"none", "thousands", "deep"})
+    public String grouping;
+
+    /**
+     * Style of the prefix and suffix of the formatted currency.
+     */
+    @Param({"legacy", "minimessage"})
+    public String style;
+
+    private Currency currency;
+    private double[] values;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Currency.Grouping currencyGrouping = switch (grouping) {
+            case "thousands" -> new Currency.Grouping(1000, List.of("K", "M", "B"));
+            case "deep" -> new Currency.Grouping(10, List.of("D", "H", "K", "TK", "HK", "M", "TM", "HM", "B"));
+            default -> new Currency.Grouping(0, List.of());
+        };
+
+        currency = style.equals("minimessage")
+                ? new Currency("bench", "Bench", "<gradient:#FF00FF:#00FFFF><bold>ANC ", " <gray><italic>coins", currencyGrouping, Currency.DefaultScale)
+                : new Currency("bench", "Bench", "&6ANC ", " &e&o$", currencyGrouping, Currency.DefaultScale);
+
+        values = new double[] {0, 0.5, 12.34, 999, 1500, 1_050_000, 987_654_321.25, -42.1};
+    }
+
+    @Benchmark
+    public Component format() {
+        return currency.format(nextValue());
+    }
+
+    @Benchmark
+    public String formatLegacy() {
+        return currency.formatLegacy(nextValue());
+    }
+
+    private double nextValue() {
+        double value = values[next];
+        next = (next + 1) % values.length;
+        return value;
+    }
+}
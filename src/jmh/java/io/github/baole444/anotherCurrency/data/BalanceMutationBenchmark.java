@@ -0,0 +1,78 @@
+package io.github.baole444.anotherCurrency.data;
+
+import io.github.baole444.anotherCurrency.configurations.CurrencyLimit;
+import org.bukkit.OfflinePlayer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of concurrent deposit and withdraw throughput on cached players, with write-behind enabled
+ * so the numbers measure the in-memory path and its locking rather than disk I/O.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+public class BalanceMutationBenchmark {
+    private static final String CurrencyCode = "bench";
+
+    /**
+     * Number of players the threads spread their changes over, fewer players means more contention.
+     */
+    @Param({"1", "64", "4096"})
+    public int players;
+
+    private PlayerDataManager playerDataManager;
+    private OfflinePlayer[] accounts;
+    private CurrencyLimit limit;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        playerDataManager = new PlayerDataManager(StandIns.plugin(), StandIns.memoryStore(), null, StandIns::defaultScale, StandIns.declare(CurrencyCode));
+        playerDataManager.writeBehind(true);
+        limit = CurrencyLimit.getDefault();
+
+        accounts = new OfflinePlayer[players];
+        for (int i = 0; i < players; i++) {
+            accounts[i] = StandIns.offlinePlayer(UUID.randomUUID(), "Player" + i);
+            playerDataManager.balance(accounts[i], CurrencyCode, 1_000_000D);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        playerDataManager.shutdown();
+    }
+
+    @Benchmark
+    public TransactionResult deposit() {
+        return playerDataManager.deposit(randomAccount(), CurrencyCode, 1.25D, limit);
+    }
+
+    @Benchmark
+    public TransactionResult withdraw() {
+        return playerDataManager.withdraw(randomAccount(), CurrencyCode, 0.01D, limit);
+    }
+
+    @Benchmark
+    public double balance() {
+        return playerDataManager.balance(randomAccount(), CurrencyCode);
+    }
+
+    private OfflinePlayer randomAccount() {
+        return accounts[ThreadLocalRandom.current().nextInt(accounts.length)];
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.baole444.anotherCurrency.data;
+
+import io.github.baole444.anotherCurrency.data.storage.YamlPlayerDataStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of {@link PlayerDataManager#loadPlayerData(UUID, String)} and {@link PlayerDataManager#savePlayerData(PlayerData)}
+ * against YAML player files in a temporary directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PlayerDataStorageBenchmark {
+    private static final int Players = 256;
+
+    /**
+     * Number of currencies each player has a balance of.
+     */
+    @Param({"1", "8"})
+    public int currencies;
+
+    private File dataDir;
+    private PlayerDataManager playerDataManager;
+    private PlayerData[] data;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dataDir = StandIns.tempDir();
+        YamlPlayerDataStore store = new YamlPlayerDataStore(new File(dataDir, YamlPlayerDataStore.PlayerDataDirName), StandIns.quietLogger(), StandIns::defaultScale);
+        String[] codeNames = new String[currencies];
+        for (int c = 0; c < currencies; c++) codeNames[c] = "currency_" + c;
+        playerDataManager = new PlayerDataManager(StandIns.plugin(), store, null, StandIns::defaultScale, StandIns.declare(codeNames));
+
+        data = new PlayerData[Players];
+        for (int i = 0; i < Players; i++) {
+            PlayerData player = new PlayerData(UUID.randomUUID(), "Player" + i, i * 60L);
+            for (int c = 0; c < currencies; c++) player.balance(codeNames[c], i * 1_000L + c);
+            playerDataManager.savePlayerData(player);
+            data[i] = player;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        playerDataManager.shutdown();
+        StandIns.deleteRecursively(dataDir);
+    }
+
+    @Benchmark
+    public PlayerData load() {
+        PlayerData player = nextPlayer();
+        return playerDataManager.loadPlayerData(player.uuid(), player.playerName());
+    }
+
+    @Benchmark
+    public boolean save() {
+        return playerDataManager.savePlayerData(nextPlayer());
+    }
+
+    private PlayerData nextPlayer() {
+        PlayerData player = data[next];
+        next = (next + 1) % data.length;
+        return player;
+    }
+}
@@ -0,0 +1,56 @@
+package io.github.baole444.anotherCurrency.data;
+
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of crediting one playtime tracking interval to simulated online players,
+ * the work {@link PlaytimeTracker} does for each player on its tick.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PlaytimeAccrualBenchmark {
+    private static final long IntervalNanos = TimeUnit.SECONDS.toNanos(60L);
+
+    /**
+     * Number of simulated online players.
+     */
+    @Param({"1000", "10000"})
+    public int players;
+
+    private PlayerDataManager playerDataManager;
+    private List<Player> onlinePlayers;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        playerDataManager = new PlayerDataManager(StandIns.plugin(), StandIns.memoryStore(), null, StandIns::defaultScale, StandIns.declare());
+        onlinePlayers = StandIns.players(players);
+
+        // Online players are cached from their join
+        for (Player player : onlinePlayers) playerDataManager.playerData(player);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        playerDataManager.shutdown();
+    }
+
+    @Benchmark
+    public int accruePlaytime() {
+        for (Player player : onlinePlayers) playerDataManager.accruePlaytime(player, IntervalNanos);
+        return playerDataManager.cacheSize();
+    }
+}
@@ -0,0 +1,197 @@
+package io.github.baole444.anotherCurrency.data;
+
+import io.github.baole444.anotherCurrency.configurations.BenchCurrencies;
+import io.github.baole444.anotherCurrency.configurations.Currency;
+import io.github.baole444.anotherCurrency.configurations.CurrencyHandle;
+import io.github.baole444.anotherCurrency.data.storage.PlayerDataStore;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Lightweight stand-ins for server types so benchmarks run without a server.
+ * Players only answer for their identity, name and idle time, and the plugin only for its name and logger,
+ * every other call returns a default value.
+ */
+final class StandIns {
+    private StandIns() {}
+
+    /**
+     * Create a logger that only reports warnings, so periodic info messages do not skew results.
+     * @return a quiet logger
+     */
+    static Logger quietLogger() {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setLevel(Level.WARNING);
+        return logger;
+    }
+
+    /**
+     * Create a stand-in plugin to construct managers with.
+     * @return a plugin reporting to a {@link #quietLogger()}
+     */
+    static Plugin plugin() {
+        Logger logger = quietLogger();
+        Object proxy = Proxy.newProxyInstance(Plugin.class.getClassLoader(), new Class<?>[] {Plugin.class}, (self, method, args) -> switch (method.getName()) {
+            case "getLogger" -> logger;
+            case "getName" -> "AnotherCurrency";
+            case "hashCode" -> System.identityHashCode(self);
+            case "equals" -> self == args[0];
+            case "toString" -> "AnotherCurrency";
+            default -> defaultValue(method.getReturnType());
+        });
+
+        return Plugin.class.cast(proxy);
+    }
+
+    /**
+     * Scale lookup where every currency has the default scale.
+     * @param currencyCode the canonical name of the currency
+     * @return the default scale
+     */
+    static int defaultScale(String currencyCode) {
+        return Currency.DefaultScale;
+    }
+
+    /**
+     * Declare currencies so their code names resolve to handles, as loading the currency config does.
+     * @param codeNames canonical names of the currencies
+     * @return lookup of the handle of a declared currency by its code name, null if it is not one of them
+     */
+    static Function<String, CurrencyHandle> declare(String... codeNames) {
+        for (String codeName : codeNames) BenchCurrencies.declare(codeName);
+
+        Set<String> declared = Set.of(codeNames);
+        return codeName -> declared.contains(codeName) ? CurrencyHandle.find(codeName) : null;
+    }
+
+    /**
+     * Create an in-memory player data store, for benchmarks that should not measure disk I/O.
+     * @return an empty store
+     */
+    static PlayerDataStore memoryStore() {
+        Map<UUID, PlayerData> stored = new ConcurrentHashMap<>();
+        return new PlayerDataStore() {
+            @Override
+            public String name() {
+                return "memory";
+            }
+
+            @Override
+            public PlayerData load(UUID uuid, String fallbackName) {
+                return stored.get(uuid);
+            }
+
+            @Override
+            public boolean save(PlayerData data) {
+                stored.put(data.uuid(), data);
+                return true;
+            }
+
+            @Override
+            public boolean delete(UUID uuid) {
+                return stored.remove(uuid) != null;
+            }
+
+            @Override
+            public boolean exists(UUID uuid) {
+                return stored.containsKey(uuid);
+            }
+
+            @Override
+            public Collection<UUID> uuids() {
+                return List.copyOf(stored.keySet());
+            }
+        };
+    }
+
+    /**
+     * Create stand-in online players.
+     * @param count number of players
+     * @return the players with random unique identifiers
+     */
+    static List<Player> players(int count) {
+        List<Player> players = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) players.add(player(Player.class, UUID.randomUUID(), "Player" + i));
+        return players;
+    }
+
+    /**
+     * Create a stand-in offline player.
+     * @param uuid the unique identifier of the player
+     * @param name the name of the player
+     * @return the player
+     */
+    static OfflinePlayer offlinePlayer(UUID uuid, String name) {
+        return player(OfflinePlayer.class, uuid, name);
+    }
+
+    /**
+     * Create a temporary directory for a benchmark run.
+     * @return the directory
+     * @throws IOException if the directory cannot be created
+     */
+    static File tempDir() throws IOException {
+        return Files.createTempDirectory("anc-bench").toFile();
+    }
+
+    /**
+     * Delete a temporary directory and everything in it.
+     * @param dir the directory
+     * @throws IOException if a file cannot be deleted
+     */
+    static void deleteRecursively(File dir) throws IOException {
+        if (!dir.exists()) return;
+
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) Files.delete(path);
+        }
+    }
+
+    private static <T> T player(Class<T> type, UUID uuid, String name) {
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (self, method, args) -> switch (method.getName()) {
+            case "getUniqueId" -> uuid;
+            case "getName" -> name;
+            case "getIdleDuration" -> Duration.ZERO;
+            case "hashCode" -> uuid.hashCode();
+            case "equals" -> self == args[0];
+            case "toString" -> name;
+            default -> defaultValue(method.getReturnType());
+        });
+
+        return type.cast(proxy);
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive()) return null;
+        if (type == boolean.class) return false;
+        if (type == long.class) return 0L;
+        if (type == double.class) return 0D;
+        if (type == float.class) return 0F;
+        if (type == int.class) return 0;
+        if (type == short.class) return (short) 0;
+        if (type == byte.class) return (byte) 0;
+        if (type == char.class) return (char) 0;
+
+        return null;
+    }
+}
@@ -1,13 +1,38 @@
 package io.github.baole444.anotherCurrency;
 
+import io.github.baole444.anotherCurrency.commands.AnotherCurrencyCommand;
 import io.github.baole444.anotherCurrency.configurations.ConfigManager;
+import io.github.baole444.anotherCurrency.configurations.Currency;
 import io.github.baole444.anotherCurrency.configurations.CurrencyManager;
+import io.github.baole444.anotherCurrency.configurations.Players;
+import io.github.baole444.anotherCurrency.data.CacheEvictor;
+import io.github.baole444.anotherCurrency.data.CurrencyPurger;
+import io.github.baole444.anotherCurrency.data.EconomyOperator;
+import io.github.baole444.anotherCurrency.data.JournalCompactor;
+import io.github.baole444.anotherCurrency.data.PlayerDataFlusher;
 import io.github.baole444.anotherCurrency.data.PlayerDataManager;
+import io.github.baole444.anotherCurrency.data.PlayerDataUpgrader;
 import io.github.baole444.anotherCurrency.data.PlaytimeTracker;
+import io.github.baole444.anotherCurrency.data.TransactionJournal;
+import io.github.baole444.anotherCurrency.data.history.TransactionHistory;
+import io.github.baole444.anotherCurrency.data.storage.PlayerDataStore;
+import io.github.baole444.anotherCurrency.data.storage.StorageMigrator;
+import io.github.baole444.anotherCurrency.data.storage.StorageType;
 import io.github.baole444.anotherCurrency.integrations.VaultHook;
 import io.github.baole444.anotherCurrency.listeners.PlayerDataListener;
+import io.github.baole444.anotherCurrency.metrics.MetricsRegistry;
+import io.github.baole444.anotherCurrency.scheduling.TaskScheduler;
+import org.bukkit.command.PluginCommand;
+import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+
 /**
  * Main entry of AnotherCurrency (ANC) plugin.
  */
@@ -16,10 +41,18 @@ public final class AnotherCurrency extends JavaPlugin {
      * Version string of AnotherCurrency.
      */
     public static final String Version = "0.1";
+    private TaskScheduler scheduler;
     private ConfigManager configManager;
     private CurrencyManager currencyManager;
     private PlayerDataManager playerDataManager;
+    private PlayerDataFlusher playerDataFlusher;
+    private JournalCompactor journalCompactor;
+    private CacheEvictor cacheEvictor;
+    private PlayerDataUpgrader playerDataUpgrader;
+    private CurrencyPurger currencyPurger;
+    private EconomyOperator economyOperator;
     private PlaytimeTracker playtimeTracker;
+    private MetricsRegistry metricsRegistry;
     private VaultHook vaultHook;
 
     /**
@@ -29,18 +62,51 @@ public final class AnotherCurrency extends JavaPlugin {
 
     @Override
     public void onEnable() {
+        scheduler = new TaskScheduler(this);
         getLogger().info("Checking configurations...");
         configManager = new ConfigManager(this);
         currencyManager = new CurrencyManager(this);
-        playerDataManager = new PlayerDataManager(this);
+        PlayerDataStore store = openPlayerDataStore();
+        playerDataManager = new PlayerDataManager(this, store, openJournal(store), currencyManager::scale, currencyManager::handle, currencyManager::scale);
+        playerDataManager.history(openHistory());
+        currencyPurger = new CurrencyPurger(this);
+        // Balances of a purge still running are stripped on load, before the leaderboard is seeded
+        currencyPurger.resume();
+        currencyManager.removalListener(currencyPurger::purge);
+        indexAccounts();
+        economyOperator = new EconomyOperator(this);
+        economyOperator.resume();
+        // Players already online after a reload never fire a join event
+        for (Player player : getServer().getOnlinePlayers()) playerDataManager.pin(player.getUniqueId());
+        playerDataFlusher = new PlayerDataFlusher(this);
+        journalCompactor = new JournalCompactor(this);
+        cacheEvictor = new CacheEvictor(this);
+        playerDataUpgrader = new PlayerDataUpgrader(this);
         playtimeTracker = new PlaytimeTracker(this);
         getServer().getPluginManager().registerEvents(new PlayerDataListener(this), this);
+        registerCommands();
+        metricsRegistry = new MetricsRegistry(getLogger());
+        metricsRegistry.register(playerDataManager);
 
         if (configManager.players().playtime().trackPlaytime()) {
             playtimeTracker.start();
             getLogger().info("Playtime tracking started.");
         }
 
+        if (configManager.players().persistence().writeBehind()) {
+            playerDataFlusher.start();
+            getLogger().info("Write-behind player data saving started.");
+        }
+
+        if (configManager.players().persistence().journal()) {
+            journalCompactor.start();
+            getLogger().info("Player data journal started.");
+        }
+
+        cacheEvictor.start();
+
+        if (configManager.players().storage().upgradeRate() > 0) playerDataUpgrader.start();
+
         vaultHook = new VaultHook(this);
         if (vaultHook.setupEconomy()) getLogger().info("Hooking into Vault Economy successfully.");
         getLogger().info("AnotherCurrency enabled.");
@@ -49,11 +115,26 @@ public final class AnotherCurrency extends JavaPlugin {
     @Override
     public void onDisable() {
         playtimeTracker.stop();
-        playerDataManager.clearCache();
+        playerDataFlusher.stop();
+        journalCompactor.stop();
+        cacheEvictor.stop();
+        playerDataUpgrader.stop();
+        currencyPurger.stop();
+        economyOperator.stop();
+        playerDataManager.shutdown();
+        metricsRegistry.unregister();
         vaultHook.unregisterEconomy();
         getLogger().info("AnotherCurrency disabled.");
     }
 
+    /**
+     * Get the task scheduler of ANC.
+     * @return the task scheduler
+     */
+    public TaskScheduler scheduler() {
+        return scheduler;
+    }
+
     /**
      * Get the global config manager of ANC.
      * @return the config manager
@@ -78,6 +159,30 @@ public final class AnotherCurrency extends JavaPlugin {
         return playerDataManager;
     }
 
+    /**
+     * Get the write-behind player data flusher of ANC.
+     * @return the player data flusher
+     */
+    public PlayerDataFlusher playerDataFlusher() {
+        return playerDataFlusher;
+    }
+
+    /**
+     * Get the removed currency purger of ANC.
+     * @return the currency purger
+     */
+    public CurrencyPurger currencyPurger() {
+        return currencyPurger;
+    }
+
+    /**
+     * Get the economy operator of ANC.
+     * @return the economy operator
+     */
+    public EconomyOperator economyOperator() {
+        return economyOperator;
+    }
+
     /**
      * Get the playtime tracker of ANC.
      * @return the playtime tracker
@@ -96,12 +201,13 @@ public final class AnotherCurrency extends JavaPlugin {
 
     /**
      * Reload all configurations of ANC from disk.
+     * Cached player data is kept, balances of currencies whose scale changed are converted in memory.
      */
     public void reloadConfigs() {
         boolean trackingPlaytime = configManager.players().playtime().trackPlaytime();
+        boolean writingBehind = configManager.players().persistence().writeBehind();
         configManager.reload();
-        currencyManager.loadCurrencies();
-        playerDataManager.clearCache();
+        reloadCurrencies();
 
         boolean stillTrackPlaytime = configManager.players().playtime().trackPlaytime();
         if (stillTrackPlaytime && !trackingPlaytime) {
@@ -112,6 +218,130 @@ public final class AnotherCurrency extends JavaPlugin {
             getLogger().info("Playtime tracking stopped.");
         }
 
+        boolean stillWriteBehind = configManager.players().persistence().writeBehind();
+        if (stillWriteBehind && !writingBehind) {
+            playerDataFlusher.start();
+            getLogger().info("Write-behind player data saving started.");
+        } else if (!stillWriteBehind && writingBehind) {
+            playerDataFlusher.stop();
+            getLogger().info("Write-behind player data saving stopped.");
+        }
+
         getLogger().info("Configuration reloaded.");
     }
+
+    private void reloadCurrencies() {
+        Map<String, Currency> previous = currencyManager.currencies();
+        Map<String, Integer> previousScales = currencyManager.scales();
+        Map<String, Currency> loaded = currencyManager.readCurrencies();
+
+        Set<String> rescaled = playerDataManager.swapCurrencies(() -> currencyManager.applyCurrencies(loaded), previousScales);
+        if (!rescaled.isEmpty()) getLogger().info(String.format("Converted cached balances of %s to their new scale.", String.join(", ", rescaled)));
+
+        Set<String> removed = new HashSet<>(previous.keySet());
+        removed.removeAll(loaded.keySet());
+        Set<String> added = new HashSet<>(loaded.keySet());
+        added.removeAll(previous.keySet());
+        if (removed.isEmpty() && added.isEmpty()) return;
+
+        // A currency dropped from the file may be a mistake, so its balances are only purged on request
+        for (String codeName : removed) {
+            getLogger().info(String.format("Currency %s was removed, run /anc purge %s to drop its balances from every player.", codeName, codeName));
+        }
+
+        playerDataManager.reconcileCurrencies(removed, added).whenComplete((ignored, e) -> {
+            if (e != null) getLogger().log(Level.SEVERE, "Failed to reconcile changed currencies", e);
+        });
+    }
+
+    private void registerCommands() {
+        PluginCommand command = getCommand(AnotherCurrencyCommand.CommandName);
+        if (command == null) {
+            getLogger().warning(String.format("Command '%s' is missing from plugin.yml.", AnotherCurrencyCommand.CommandName));
+            return;
+        }
+
+        AnotherCurrencyCommand executor = new AnotherCurrencyCommand(this);
+        command.setExecutor(executor);
+        command.setTabCompleter(executor);
+    }
+
+    private void indexAccounts() {
+        long startTime = System.currentTimeMillis();
+        playerDataManager.indexAccounts().whenComplete((scanned, e) -> {
+            if (e != null) {
+                getLogger().log(Level.SEVERE, "Failed to index stored accounts", e);
+                return;
+            }
+
+            long finishTime = System.currentTimeMillis();
+            getLogger().info(String.format("Indexed %d accounts. Took %dms.", scanned, finishTime - startTime));
+        });
+    }
+
+    private PlayerDataStore openPlayerDataStore() {
+        Players.Storage config = configManager.players().storage();
+        StorageType type = StorageType.fromName(config.type());
+        if (type == null) {
+            getLogger().warning(String.format("Unknown storage type '%s', using %s instead.", config.type(), StorageType.YAML.configName()));
+            type = StorageType.YAML;
+        }
+
+        PlayerDataStore store = type.open(this, config.poolSize(), currencyManager::scale);
+        getLogger().info(String.format("Using %s player data storage.", store.name()));
+        if (!config.hasMigrateFrom()) return store;
+
+        StorageType sourceType = StorageType.fromName(config.migrateFrom());
+        if (sourceType == null || sourceType == type) {
+            getLogger().warning(String.format("Cannot migrate player data from '%s' to %s, skipping migration.", config.migrateFrom(), type.configName()));
+            return store;
+        }
+
+        PlayerDataStore source = sourceType.open(this, config.poolSize(), currencyManager::scale);
+        boolean migrated = new StorageMigrator(getLogger()).migrate(source, store);
+        source.close();
+
+        if (!migrated) {
+            getLogger().warning("Some player data failed to migrate, the migration will run again on next startup.");
+            return store;
+        }
+
+        Players players = configManager.players();
+        Players.Storage storage = new Players.Storage(config.type(), config.poolSize(), "", config.upgradeRate(), config.purgeRate(), config.operationRate());
+        configManager.updatePlayers(new Players(players.playtime(), players.persistence(), storage, players.cache(), players.history()));
+        return store;
+    }
+
+    private TransactionHistory openHistory() {
+        Players.History config = configManager.players().history();
+        if (!config.enabled()) return null;
+
+        File historyDir = new File(getDataFolder(), TransactionHistory.HistoryDirName);
+        TransactionHistory history = new TransactionHistory(historyDir, getLogger(), config.bufferSize(), config.segmentSize() * 1024L, config.maxSegments());
+        try {
+            history.open();
+            return history;
+        } catch (IOException e) {
+            getLogger().log(Level.SEVERE, "Failed to open the transaction history, transactions will not be recorded.", e);
+            return null;
+        }
+    }
+
+    private TransactionJournal openJournal(PlayerDataStore store) {
+        Players.Persistence config = configManager.players().persistence();
+        File journalDir = new File(getDataFolder(), TransactionJournal.JournalDirName);
+        if (!config.journal() && !journalDir.exists()) return null;
+
+        TransactionJournal journal = new TransactionJournal(journalDir, getLogger(), config.commitInterval(), currencyManager::scale);
+        journal.replay(store);
+        if (!config.journal()) return null;
+
+        try {
+            journal.open();
+            return journal;
+        } catch (IOException e) {
+            getLogger().log(Level.SEVERE, "Failed to open the player data journal, changes will not be journaled.", e);
+            return null;
+        }
+    }
 }
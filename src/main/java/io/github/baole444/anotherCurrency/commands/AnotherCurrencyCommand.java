@@ -0,0 +1,345 @@
+package io.github.baole444.anotherCurrency.commands;
+
+import io.github.baole444.anotherCurrency.AnotherCurrency;
+import io.github.baole444.anotherCurrency.configurations.Currency;
+import io.github.baole444.anotherCurrency.configurations.CurrencyManager;
+import io.github.baole444.anotherCurrency.data.CacheStats;
+import io.github.baole444.anotherCurrency.data.CurrencyPurger;
+import io.github.baole444.anotherCurrency.data.EconomyOperation;
+import io.github.baole444.anotherCurrency.data.EconomyOperator;
+import io.github.baole444.anotherCurrency.data.PlayerDataManager;
+import io.github.baole444.anotherCurrency.data.history.TransactionEvent;
+import io.github.baole444.anotherCurrency.data.history.TransactionHistory;
+import io.github.baole444.anotherCurrency.metrics.LatencyHistogram;
+import io.github.baole444.anotherCurrency.metrics.Metrics;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabExecutor;
+import org.bukkit.entity.Player;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Handler of the {@code /anothercurrency} command, aliased {@code /anc}.
+ */
+public class AnotherCurrencyCommand implements TabExecutor {
+    /**
+     * Name of the command in plugin.yml.
+     */
+    public static final String CommandName = "anothercurrency";
+    public static final String StatsSubcommand = "stats";
+    public static final String StatsPermission = "anothercurrency.command.stats";
+    public static final String HistorySubcommand = "history";
+    public static final String HistoryPermission = "anothercurrency.command.history";
+    public static final String PurgeSubcommand = "purge";
+    public static final String PurgePermission = "anothercurrency.command.purge";
+    public static final String EconomySubcommand = "economy";
+    public static final String EconomyPermission = "anothercurrency.command.economy";
+    private static final List<String> Subcommands = List.of(StatsSubcommand, HistorySubcommand, PurgeSubcommand, EconomySubcommand);
+    private static final List<String> EconomyOperations = List.of("reset", "scale", "convert");
+    private static final int HistoryPageSize = 10;
+    private static final DateTimeFormatter HistoryTimeFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+    private final AnotherCurrency plugin;
+
+    /**
+     * Initialize command handler.
+     * @param plugin the ANC plugin's instance
+     */
+    public AnotherCurrencyCommand(AnotherCurrency plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (args.length == 0) {
+            sender.sendMessage(Component.text(String.format("AnotherCurrency v%s, usage: /%s <%s>", AnotherCurrency.Version, label, String.join("|", Subcommands)), NamedTextColor.GOLD));
+            return true;
+        }
+
+        String subcommand = args[0].toLowerCase(Locale.ROOT);
+        if (subcommand.equals(StatsSubcommand)) return stats(sender);
+        if (subcommand.equals(HistorySubcommand)) return history(sender, label, args);
+        if (subcommand.equals(PurgeSubcommand)) return purge(sender, args);
+        if (subcommand.equals(EconomySubcommand)) return economy(sender, label, args);
+
+        sender.sendMessage(Component.text(String.format("Unknown subcommand '%s'.", args[0]), NamedTextColor.RED));
+        return true;
+    }
+
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command command, String label, String[] args) {
+        if (args.length == 2 && args[0].equalsIgnoreCase(HistorySubcommand) && sender.hasPermission(HistoryPermission)) {
+            List<String> names = new ArrayList<>();
+            String prefix = args[1].toLowerCase(Locale.ROOT);
+            for (Player player : plugin.getServer().getOnlinePlayers()) {
+                if (player.getName().toLowerCase(Locale.ROOT).startsWith(prefix)) names.add(player.getName());
+            }
+
+            return names;
+        }
+
+        if (args.length == 2 && args[0].equalsIgnoreCase(EconomySubcommand) && sender.hasPermission(EconomyPermission)) {
+            String prefix = args[1].toLowerCase(Locale.ROOT);
+            return EconomyOperations.stream().filter(operation -> operation.startsWith(prefix)).toList();
+        }
+
+        if (args.length != 1) return List.of();
+
+        List<String> matches = new ArrayList<>();
+        String prefix = args[0].toLowerCase(Locale.ROOT);
+        for (String subcommand : Subcommands) {
+            if (subcommand.startsWith(prefix) && sender.hasPermission(permission(subcommand))) matches.add(subcommand);
+        }
+
+        return matches;
+    }
+
+    private boolean stats(CommandSender sender) {
+        if (!sender.hasPermission(StatsPermission)) {
+            sender.sendMessage(Component.text("You do not have permission to view the stats.", NamedTextColor.RED));
+            return true;
+        }
+
+        PlayerDataManager playerDataManager = plugin.playerDataManager();
+        CacheStats cache = playerDataManager.cacheStats();
+        sender.sendMessage(Component.text("AnotherCurrency stats", NamedTextColor.GOLD));
+        sender.sendMessage(Component.text(String.format("Cache: %d cached, %d pinned, hit rate %.1f%% (%d hits, %d misses), %d evicted",
+                cache.size(), cache.pinned(), cache.hitRate() * 100D, cache.hits(), cache.misses(), cache.evictions()), NamedTextColor.GRAY));
+        sender.sendMessage(Component.text(String.format("Pending writes: %d, indexed accounts: %d",
+                playerDataManager.pendingWrites(), playerDataManager.accounts().size()), NamedTextColor.GRAY));
+
+        TransactionHistory history = playerDataManager.history();
+        if (history != null) {
+            sender.sendMessage(Component.text(String.format("History: %d recorded, %d dropped, %d waiting",
+                    history.recorded(), history.dropped(), history.pending()), NamedTextColor.GRAY));
+        }
+
+        for (LatencyHistogram histogram : Metrics.latencies()) {
+            sender.sendMessage(Component.text(String.format("%s: %d samples, mean %s, p50 %s, p99 %s, max %s",
+                    histogram.name(), histogram.count(), millis(histogram.meanNanos()), millis(histogram.percentileNanos(50D)),
+                    millis(histogram.percentileNanos(99D)), millis(histogram.maxNanos())), NamedTextColor.GRAY));
+        }
+
+        return true;
+    }
+
+    private boolean history(CommandSender sender, String label, String[] args) {
+        if (!sender.hasPermission(HistoryPermission)) {
+            sender.sendMessage(Component.text("You do not have permission to view transaction history.", NamedTextColor.RED));
+            return true;
+        }
+
+        if (args.length < 2) {
+            sender.sendMessage(Component.text(String.format("Usage: /%s %s <player> [page]", label, HistorySubcommand), NamedTextColor.RED));
+            return true;
+        }
+
+        TransactionHistory history = plugin.playerDataManager().history();
+        if (history == null) {
+            sender.sendMessage(Component.text("Transaction history is disabled.", NamedTextColor.RED));
+            return true;
+        }
+
+        UUID uuid = plugin.playerDataManager().accounts().uuid(args[1]);
+        if (uuid == null) {
+            sender.sendMessage(Component.text(String.format("Unknown player '%s'.", args[1]), NamedTextColor.RED));
+            return true;
+        }
+
+        int page = 1;
+        if (args.length > 2) {
+            try {
+                page = Math.max(1, Integer.parseInt(args[2]));
+            } catch (NumberFormatException e) {
+                sender.sendMessage(Component.text(String.format("Invalid page '%s'.", args[2]), NamedTextColor.RED));
+                return true;
+            }
+        }
+
+        // Reading history touches the disk, keep it off the calling thread
+        int requestedPage = page;
+        String indexedName = plugin.playerDataManager().accounts().name(uuid);
+        String playerName = indexedName != null ? indexedName : args[1];
+        plugin.scheduler().runAsync(() -> {
+            List<TransactionEvent> events = history.history(uuid, requestedPage, HistoryPageSize);
+            if (events.isEmpty()) {
+                sender.sendMessage(Component.text(String.format("No transactions of %s on page %d.", playerName, requestedPage), NamedTextColor.GRAY));
+                return;
+            }
+
+            sender.sendMessage(Component.text(String.format("Transactions of %s, page %d", playerName, requestedPage), NamedTextColor.GOLD));
+            for (TransactionEvent event : events) sender.sendMessage(describe(event));
+        });
+
+        return true;
+    }
+
+    private boolean purge(CommandSender sender, String[] args) {
+        if (!sender.hasPermission(PurgePermission)) {
+            sender.sendMessage(Component.text("You do not have permission to purge currencies.", NamedTextColor.RED));
+            return true;
+        }
+
+        CurrencyPurger purger = plugin.currencyPurger();
+        if (args.length < 2) {
+            CurrencyPurger.Progress progress = purger.progress();
+            if (progress.currencies().isEmpty()) {
+                sender.sendMessage(Component.text("No currency is being purged.", NamedTextColor.GRAY));
+                return true;
+            }
+
+            sender.sendMessage(Component.text(String.format("Purging %s: %d of %s players checked, %d purged.",
+                    String.join(", ", progress.currencies()), progress.checked(),
+                    progress.total() > 0 ? String.valueOf(progress.total()) : "?", progress.purged()), NamedTextColor.GRAY));
+            return true;
+        }
+
+        String codeName = args[1];
+        if (plugin.currencyManager().hasCurrency(codeName)) {
+            sender.sendMessage(Component.text(String.format("Currency %s is still declared, remove it from %s first.", codeName, CurrencyManager.currenciesYML), NamedTextColor.RED));
+            return true;
+        }
+
+        if (!purger.purge(codeName)) {
+            sender.sendMessage(Component.text(String.format("Currency %s is already being purged.", codeName), NamedTextColor.RED));
+            return true;
+        }
+
+        sender.sendMessage(Component.text(String.format("Purging balances of %s from every player in the background.", codeName), NamedTextColor.GREEN));
+        return true;
+    }
+
+    private boolean economy(CommandSender sender, String label, String[] args) {
+        if (!sender.hasPermission(EconomyPermission)) {
+            sender.sendMessage(Component.text("You do not have permission to run economy operations.", NamedTextColor.RED));
+            return true;
+        }
+
+        EconomyOperator operator = plugin.economyOperator();
+        if (args.length < 2) {
+            EconomyOperator.Progress progress = operator.progress();
+            if (progress.operation() == null) {
+                sender.sendMessage(Component.text(String.format("No economy operation is running, usage: /%s %s <reset|scale|convert> ...", label, EconomySubcommand), NamedTextColor.GRAY));
+                return true;
+            }
+
+            sender.sendMessage(Component.text(String.format("Economy operation %s: %d of %s players checked, %d changed, %d clamped.",
+                    progress.operation().describe(), progress.checked(), progress.total() > 0 ? String.valueOf(progress.total()) : "?",
+                    progress.changed(), progress.clamped()), NamedTextColor.GRAY));
+            return true;
+        }
+
+        EconomyOperation operation = parseOperation(sender, label, args);
+        if (operation == null) return true;
+
+        for (String codeName : operation.currencies()) {
+            if (plugin.currencyManager().hasCurrency(codeName)) continue;
+
+            sender.sendMessage(Component.text(String.format("Unknown currency '%s'.", codeName), NamedTextColor.RED));
+            return true;
+        }
+
+        if (!operator.submit(operation)) {
+            EconomyOperation running = operator.progress().operation();
+            sender.sendMessage(Component.text(String.format("Economy operation %s is still running.",
+                    running != null ? running.describe() : "another operation"), NamedTextColor.RED));
+            return true;
+        }
+
+        sender.sendMessage(Component.text(String.format("Started economy operation %s for every player in the background.", operation.describe()), NamedTextColor.GREEN));
+        return true;
+    }
+
+    private EconomyOperation parseOperation(CommandSender sender, String label, String[] args) {
+        String kind = args[1].toLowerCase(Locale.ROOT);
+        switch (kind) {
+            case "reset" -> {
+                if (args.length < 3) break;
+
+                Double amount = args.length > 3 ? parseNumber(sender, args[3]) : Double.valueOf(0D);
+                return amount != null ? EconomyOperation.reset(args[2], amount) : null;
+            }
+            case "scale" -> {
+                if (args.length < 4) break;
+
+                Double factor = parseNumber(sender, args[3]);
+                return factor != null ? EconomyOperation.scale(args[2], factor) : null;
+            }
+            case "convert" -> {
+                if (args.length < 5) break;
+                if (args[2].equals(args[3])) {
+                    sender.sendMessage(Component.text("A currency cannot be converted into itself.", NamedTextColor.RED));
+                    return null;
+                }
+
+                Double rate = parseNumber(sender, args[4]);
+                return rate != null ? EconomyOperation.convert(args[2], args[3], rate) : null;
+            }
+            default -> {
+                sender.sendMessage(Component.text(String.format("Unknown economy operation '%s'.", args[1]), NamedTextColor.RED));
+                return null;
+            }
+        }
+
+        sender.sendMessage(Component.text(String.format("Usage: /%s %s reset <currency> [amount], scale <currency> <factor> or convert <currency> <target> <rate>",
+                label, EconomySubcommand), NamedTextColor.RED));
+        return null;
+    }
+
+    /**
+     * Parse a non-negative number, telling the sender if it is invalid.
+     */
+    private static Double parseNumber(CommandSender sender, String text) {
+        try {
+            double value = Double.parseDouble(text);
+            if (Double.isFinite(value) && value >= 0D) return value;
+        } catch (NumberFormatException ignored) {
+            // Reported below like any other invalid number
+        }
+
+        sender.sendMessage(Component.text(String.format("Invalid number '%s', it must be 0 or more.", text), NamedTextColor.RED));
+        return null;
+    }
+
+    private Component describe(TransactionEvent event) {
+        double delta = Currency.toAmount(event.delta(), event.scale());
+        double balance = Currency.toAmount(event.balance(), event.scale());
+        Currency currency = plugin.currencyManager().currency(event.currency());
+        Component amount = currency != null ? currency.format(Math.abs(delta)) : Component.text(String.format("%s %s", Math.abs(delta), event.currency()));
+        Component after = currency != null ? currency.format(balance) : Component.text(String.format("%s %s", balance, event.currency()));
+
+        StringBuilder details = new StringBuilder(String.format(" (%s", event.kind().name().toLowerCase(Locale.ROOT)));
+        if (event.counterparty() != null) {
+            String other = plugin.playerDataManager().accounts().name(event.counterparty());
+            details.append(String.format(" %s %s", delta < 0 ? "to" : "from", other != null ? other : event.counterparty()));
+        }
+        if (event.source() != null) details.append(String.format(" by %s", event.source()));
+        details.append(')');
+
+        // The formatted amounts keep their own colors, the rest of the line takes the color of the change
+        return Component.text()
+                .color(delta < 0 ? NamedTextColor.RED : NamedTextColor.GREEN)
+                .append(Component.text(String.format("%s %s", HistoryTimeFormat.format(Instant.ofEpochMilli(event.time())), delta < 0 ? "-" : "+")))
+                .append(amount)
+                .append(Component.text(", balance "))
+                .append(after)
+                .append(Component.text(details.toString()))
+                .build();
+    }
+
+    private static String permission(String subcommand) {
+        return String.format("anothercurrency.command.%s", subcommand);
+    }
+
+    private static String millis(double nanos) {
+        return String.format("%.3fms", nanos / 1_000_000D);
+    }
+}
@@ -18,9 +18,9 @@ public class ConfigManager {
     public static final String ConfigYML = "config.yml";
     private final ConfigMigrator migrator;
     private final JavaPlugin plugin;
-    private CurrencyLimit currencyLimit;
-    private Players players;
-    private Vault vault;
+    private volatile CurrencyLimit currencyLimit;
+    private volatile Players players;
+    private volatile Vault vault;
 
     /**
      * Initialize config manager instance.
@@ -34,15 +34,20 @@ public class ConfigManager {
 
     /**
      * Load the config from file or create and save default config.
+     * Every section is read and validated before any of them is replaced, so readers never see a half loaded config.
      */
     public void loadConfig() {
         if (migrator.checkAndMigrate()) plugin.reloadConfig();
         plugin.saveDefaultConfig();
 
         FileConfiguration config = plugin.getConfig();
-        currencyLimit = getCurrencyLimitFromConfig(config);
-        players = getPlayersFromConfig(config);
-        vault = getVaultFromConfig(config);
+        CurrencyLimit loadedLimit = getCurrencyLimitFromConfig(config);
+        Players loadedPlayers = getPlayersFromConfig(config);
+        Vault loadedVault = getVaultFromConfig(config);
+
+        currencyLimit = loadedLimit;
+        players = loadedPlayers;
+        vault = loadedVault;
     }
 
     /**
@@ -140,7 +145,38 @@ public class ConfigManager {
         long AFKThreshold = config.getLong(Players.PlaytimePath.AFKThreshold, 300L);
 
         Players.Playtime playtime = new Players.Playtime(trackPlaytime, detectAFK, AFKThreshold);
-        return new Players(playtime);
+
+        boolean writeBehind = config.getBoolean(Players.PersistencePath.WriteBehind, true);
+        long flushInterval = config.getLong(Players.PersistencePath.FlushInterval, 5L);
+        long maxStaleness = config.getLong(Players.PersistencePath.MaxStaleness, 30L);
+        boolean journal = config.getBoolean(Players.PersistencePath.Journal, false);
+        long commitInterval = config.getLong(Players.PersistencePath.CommitInterval, 50L);
+        long compactionInterval = config.getLong(Players.PersistencePath.CompactionInterval, 300L);
+
+        Players.Persistence persistence = new Players.Persistence(writeBehind, flushInterval, maxStaleness,
+                journal, commitInterval, compactionInterval);
+
+        String storageType = config.getString(Players.StoragePath.Type, "yaml");
+        int poolSize = config.getInt(Players.StoragePath.PoolSize, 4);
+        String migrateFrom = config.getString(Players.StoragePath.MigrateFrom, "");
+        int upgradeRate = config.getInt(Players.StoragePath.UpgradeRate, 20);
+        int purgeRate = config.getInt(Players.StoragePath.PurgeRate, 50);
+        int operationRate = config.getInt(Players.StoragePath.OperationRate, 200);
+
+        Players.Storage storage = new Players.Storage(storageType, poolSize, migrateFrom, upgradeRate, purgeRate, operationRate);
+
+        int maxSize = config.getInt(Players.CachePath.MaxSize, 1000);
+        long idleTimeout = config.getLong(Players.CachePath.IdleTimeout, 600L);
+
+        Players.Cache cache = new Players.Cache(maxSize, idleTimeout);
+
+        boolean historyEnabled = config.getBoolean(Players.HistoryPath.Enabled, true);
+        int bufferSize = config.getInt(Players.HistoryPath.BufferSize, 65536);
+        long segmentSize = config.getLong(Players.HistoryPath.SegmentSize, 4096L);
+        int maxSegments = config.getInt(Players.HistoryPath.MaxSegments, 32);
+
+        Players.History history = new Players.History(historyEnabled, bufferSize, segmentSize, maxSegments);
+        return new Players(playtime, persistence, storage, cache, history);
     }
 
     private boolean savePlayersToConfig(FileConfiguration config, Players newPlayers) {
@@ -148,6 +184,24 @@ public class ConfigManager {
         config.set(Players.PlaytimePath.TrackPlayTime, newPlayers.playtime().trackPlaytime());
         config.set(Players.PlaytimePath.DetectAFK, newPlayers.playtime().detectAFK());
         config.set(Players.PlaytimePath.AFKThreshold, newPlayers.playtime().afkThreshold());
+        config.set(Players.PersistencePath.WriteBehind, newPlayers.persistence().writeBehind());
+        config.set(Players.PersistencePath.FlushInterval, newPlayers.persistence().flushInterval());
+        config.set(Players.PersistencePath.MaxStaleness, newPlayers.persistence().maxStaleness());
+        config.set(Players.PersistencePath.Journal, newPlayers.persistence().journal());
+        config.set(Players.PersistencePath.CommitInterval, newPlayers.persistence().commitInterval());
+        config.set(Players.PersistencePath.CompactionInterval, newPlayers.persistence().compactionInterval());
+        config.set(Players.StoragePath.Type, newPlayers.storage().type());
+        config.set(Players.StoragePath.PoolSize, newPlayers.storage().poolSize());
+        config.set(Players.StoragePath.MigrateFrom, newPlayers.storage().migrateFrom());
+        config.set(Players.StoragePath.UpgradeRate, newPlayers.storage().upgradeRate());
+        config.set(Players.StoragePath.PurgeRate, newPlayers.storage().purgeRate());
+        config.set(Players.StoragePath.OperationRate, newPlayers.storage().operationRate());
+        config.set(Players.CachePath.MaxSize, newPlayers.cache().maxSize());
+        config.set(Players.CachePath.IdleTimeout, newPlayers.cache().idleTimeout());
+        config.set(Players.HistoryPath.Enabled, newPlayers.history().enabled());
+        config.set(Players.HistoryPath.BufferSize, newPlayers.history().bufferSize());
+        config.set(Players.HistoryPath.SegmentSize, newPlayers.history().segmentSize());
+        config.set(Players.HistoryPath.MaxSegments, newPlayers.history().maxSegments());
 
         plugin.saveConfig();
         return true;
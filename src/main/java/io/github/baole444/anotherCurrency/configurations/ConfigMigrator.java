@@ -20,7 +20,7 @@ public class ConfigMigrator {
     /**
      * The up-to-date config version and formatting.
      */
-    public static final int ConfigVersion = 2;
+    public static final int ConfigVersion = 10;
 
     /**
      * Config version key.
@@ -1,9 +1,10 @@
 package io.github.baole444.anotherCurrency.configurations;
 
+import io.github.baole444.anotherCurrency.metrics.Metrics;
 import net.kyori.adventure.text.Component;
-import net.kyori.adventure.text.minimessage.MiniMessage;
-import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -14,17 +15,32 @@ import java.util.List;
  * @param prefix text before the balance number
  * @param suffix text after the balance number
  * @param grouping currency balance display truncation options
+ * @param scale number of decimal digits balances of the currency are exact to
+ * @param formatter compiled display format of the currency
  */
 public record Currency(
         String canonicalName, String displayName,
         String prefix, String suffix,
-        Grouping grouping
+        Grouping grouping, int scale,
+        CurrencyFormatter formatter
 ) {
+    /**
+     * Scale used by currencies that do not define one.
+     */
+    public static final int DefaultScale = 2;
+
+    /**
+     * Largest supported scale, balances can still reach {@code 9.2 * 10^12} whole units with it.
+     */
+    public static final int MaxScale = 6;
+    private static final long[] PowersOfTen = {1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L};
+
     public static final String NameKey = "name";
     public static final String PrefixKey = "prefix";
     public static final String SuffixKey = "suffix";
     public static final String GroupingValueKey = "grouping.value";
     public static final String GroupingSymbolKey = "grouping.symbols";
+    public static final String ScaleKey = "scale";
 
     /**
      * Currency grouping format options.
@@ -59,17 +75,88 @@ public record Currency(
     }
 
     /**
-     * Compact constructor ensure new Currency's grouping is not null.
+     * Compact constructor ensure new Currency's grouping is not null, scale is supported and the format is compiled.
      * @param canonicalName unique code name of the currency
      * @param displayName user-friendly name for the currency
      * @param prefix text before the balance number
      * @param suffix text after the balance number
      * @param grouping currency balance display truncation options
+     * @param scale number of decimal digits balances of the currency are exact to
+     * @param formatter compiled display format of the currency, or null to compile it from the other components
      */
     public Currency {
         if (grouping == null) {
             grouping = new Grouping(0, new ArrayList<>());
         }
+
+        scale = Math.max(0, Math.min(scale, MaxScale));
+        if (formatter == null) formatter = new CurrencyFormatter(prefix, suffix, grouping, scale);
+    }
+
+    /**
+     * Create a new Currency and compile its display format.
+     * @param canonicalName unique code name of the currency
+     * @param displayName user-friendly name for the currency
+     * @param prefix text before the balance number
+     * @param suffix text after the balance number
+     * @param grouping currency balance display truncation options
+     * @param scale number of decimal digits balances of the currency are exact to
+     */
+    public Currency(String canonicalName, String displayName, String prefix, String suffix, Grouping grouping, int scale) {
+        this(canonicalName, displayName, prefix, suffix, grouping, scale, null);
+    }
+
+    /**
+     * Convert an amount of this currency to minor units.
+     * @param amount the amount in whole units
+     * @return the amount in minor units, rounded to the nearest unit
+     */
+    public long toUnits(double amount) {
+        return toUnits(amount, scale);
+    }
+
+    /**
+     * Convert minor units of this currency to an amount.
+     * @param units the amount in minor units
+     * @return the amount in whole units
+     */
+    public double toAmount(long units) {
+        return toAmount(units, scale);
+    }
+
+    /**
+     * Convert an amount to minor units of the given scale.
+     * @param amount the amount in whole units
+     * @param scale number of decimal digits of a minor unit
+     * @return the amount in minor units, rounded to the nearest unit
+     */
+    public static long toUnits(double amount, int scale) {
+        return Math.round(amount * PowersOfTen[scale]);
+    }
+
+    /**
+     * Convert minor units of the given scale to an amount.
+     * @param units the amount in minor units
+     * @param scale number of decimal digits of a minor unit
+     * @return the amount in whole units
+     */
+    public static double toAmount(long units, int scale) {
+        return (double) units / PowersOfTen[scale];
+    }
+
+    /**
+     * Convert minor units from one scale to another,
+     * increasing the scale is exact and decreasing it rounds half to even.
+     * @param units the amount in minor units of the old scale
+     * @param fromScale the old scale
+     * @param toScale the new scale
+     * @return the amount in minor units of the new scale
+     */
+    public static long rescale(long units, int fromScale, int toScale) {
+        if (fromScale == toScale) return units;
+        if (toScale > fromScale) return Math.multiplyExact(units, PowersOfTen[toScale - fromScale]);
+
+        return BigDecimal.valueOf(units, fromScale).setScale(toScale, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
     }
 
     /**
@@ -86,17 +173,12 @@ public record Currency(
      * @return a component of the formatted text
      */
     public Component format(double value) {
-        String formatted = hasGrouping() ? formatWithGroup(value) : String.format("%.2f", value);
+        if (!Metrics.sampleFormat()) return formatter.format(value);
 
-        Component prefixComponent = deserializeText(prefix);
-        Component valueComponent = Component.text(formatted);
-        Component suffixComponent = deserializeText(suffix);
-
-        return Component.text()
-                .append(prefixComponent)
-                .append(valueComponent)
-                .append(suffixComponent)
-                .build();
+        long startTime = System.nanoTime();
+        Component formatted = formatter.format(value);
+        Metrics.Format.recordSince(startTime);
+        return formatted;
     }
 
     /**
@@ -105,37 +187,11 @@ public record Currency(
      * @return the legacy formatting string
      */
     public String formatLegacy(double value) {
-        return LegacyComponentSerializer.legacySection().serialize(format(value));
-    }
-
-    private Component deserializeText(String text) {
-        if (text == null || text.isEmpty()) return Component.empty();
-
-        if (text.contains("<") && text.contains(">")) return MiniMessage.miniMessage().deserialize(text);
-
-        return LegacyComponentSerializer.legacyAmpersand().deserialize(text);
-    }
-
-    private String formatWithGroup(double value) {
-        double abs = Math.abs(value);
-        String sign = value < 0 ? "-" : "";
-
-        int group = 0;
-        double divisor = grouping.value;
-
-        while (group < grouping.symbols.size() - 1 && abs >= divisor * grouping().value) {
-            divisor *= grouping.value;
-            group++;
-        }
-
-        if (abs >= divisor && group < grouping.symbols.size()) {
-            double grouped = abs / divisor;
-            String symbol = grouping.symbols.get(group);
-            if (grouped % 1 == 0) return sign + String.format("%.0f", grouped) + symbol;
-            else return sign + String.format("%.2f", grouped) + symbol;
-        }
+        if (!Metrics.sampleFormat()) return formatter.formatLegacy(value);
 
-        if (value % 1 == 0) return sign + String.format("%.0f", abs);
-        return String.format("%.2f", value);
+        long startTime = System.nanoTime();
+        String formatted = formatter.formatLegacy(value);
+        Metrics.Format.recordSince(startTime);
+        return formatted;
     }
 }
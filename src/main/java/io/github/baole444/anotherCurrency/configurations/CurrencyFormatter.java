@@ -0,0 +1,162 @@
+package io.github.baole444.anotherCurrency.configurations;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Compiled display format of a {@link Currency}.
+ * The prefix and suffix are parsed once, the grouping tiers are precomputed
+ * and numbers are rendered into a reused per-thread buffer instead of {@link String#format}.
+ */
+public final class CurrencyFormatter {
+    /**
+     * Number of decimal digits shown for a grouped balance, such as {@code 1.50K}.
+     */
+    public static final int GroupedDigits = 2;
+    private static final String NumberPlaceholder = "\uE000";
+    private static final long[] PowersOfTen = {1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L};
+    private static final ThreadLocal<StringBuilder> Buffer = ThreadLocal.withInitial(() -> new StringBuilder(32));
+
+    private final Component prefix;
+    private final Component suffix;
+    private final String legacyHead;
+    private final String legacyTail;
+    private final double[] tiers;
+    private final String[] symbols;
+    private final int digits;
+
+    /**
+     * Compile the display format of a currency.
+     * @param prefix text before the balance number, in MiniMessage or legacy ampersand format
+     * @param suffix text after the balance number, in MiniMessage or legacy ampersand format
+     * @param grouping currency balance display truncation options
+     * @param digits number of decimal digits shown for a balance that is not whole
+     */
+    public CurrencyFormatter(String prefix, String suffix, Currency.Grouping grouping, int digits) {
+        this.prefix = deserializeText(prefix);
+        this.suffix = deserializeText(suffix);
+        this.digits = Math.max(0, Math.min(digits, PowersOfTen.length - 1));
+
+        // Serialize around a placeholder so the reset codes between the parts match serializing the whole component
+        String legacy = LegacyComponentSerializer.legacySection().serialize(compose(Component.text(NumberPlaceholder)));
+        int placeholder = legacy.indexOf(NumberPlaceholder);
+        legacyHead = placeholder >= 0 ? legacy.substring(0, placeholder) : legacy;
+        legacyTail = placeholder >= 0 ? legacy.substring(placeholder + NumberPlaceholder.length()) : "";
+
+        if (grouping.enabled()) {
+            symbols = grouping.symbols().toArray(new String[0]);
+            tiers = new double[symbols.length];
+            double divisor = 1;
+            for (int i = 0; i < tiers.length; i++) {
+                divisor *= grouping.value();
+                tiers[i] = divisor;
+            }
+        } else {
+            symbols = new String[0];
+            tiers = new double[0];
+        }
+    }
+
+    /**
+     * Format the balance as a component.
+     * @param value the balance amount
+     * @return a component of the prefix, formatted number and suffix
+     */
+    public Component format(double value) {
+        return compose(Component.text(formatNumber(value)));
+    }
+
+    /**
+     * Format the balance as a legacy section string.
+     * @param value the balance amount
+     * @return the legacy formatting string
+     */
+    public String formatLegacy(double value) {
+        StringBuilder builder = buffer();
+        builder.append(legacyHead);
+        appendNumber(builder, value);
+        return builder.append(legacyTail).toString();
+    }
+
+    /**
+     * Format only the number part of the balance, applying grouping.
+     * @param value the balance amount
+     * @return the formatted number
+     */
+    public String formatNumber(double value) {
+        StringBuilder builder = buffer();
+        appendNumber(builder, value);
+        return builder.toString();
+    }
+
+    private void appendNumber(StringBuilder builder, double value) {
+        if (!Double.isFinite(value)) {
+            builder.append(value);
+            return;
+        }
+
+        double abs = Math.abs(value);
+        if (value < 0) builder.append('-');
+
+        if (tiers.length == 0) {
+            appendFixed(builder, abs, digits);
+            return;
+        }
+
+        int group = tiers.length - 1;
+        while (group >= 0 && abs < tiers[group]) group--;
+
+        if (group >= 0) {
+            double grouped = abs / tiers[group];
+            appendFixed(builder, grouped, grouped % 1 == 0 ? 0 : GroupedDigits);
+            builder.append(symbols[group]);
+            return;
+        }
+
+        appendFixed(builder, abs, abs % 1 == 0 ? 0 : digits);
+    }
+
+    private static void appendFixed(StringBuilder builder, double abs, int digits) {
+        long pow = PowersOfTen[digits];
+        double scaled = abs * pow;
+        if (scaled >= Long.MAX_VALUE) {
+            builder.append(BigDecimal.valueOf(abs).setScale(digits, RoundingMode.HALF_UP).toPlainString());
+            return;
+        }
+
+        long units = Math.round(scaled);
+        builder.append(units / pow);
+        if (digits == 0) return;
+
+        builder.append('.');
+        long fraction = units % pow;
+        for (long place = pow / 10; place > 1 && fraction < place; place /= 10) builder.append('0');
+        builder.append(fraction);
+    }
+
+    private Component compose(Component number) {
+        return Component.text()
+                .append(prefix)
+                .append(number)
+                .append(suffix)
+                .build();
+    }
+
+    private static StringBuilder buffer() {
+        StringBuilder builder = Buffer.get();
+        builder.setLength(0);
+        return builder;
+    }
+
+    private static Component deserializeText(String text) {
+        if (text == null || text.isEmpty()) return Component.empty();
+
+        if (text.contains("<") && text.contains(">")) return MiniMessage.miniMessage().deserialize(text);
+
+        return LegacyComponentSerializer.legacyAmpersand().deserialize(text);
+    }
+}
@@ -0,0 +1,94 @@
+package io.github.baole444.anotherCurrency.configurations;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolved reference to a currency code name with a dense integer id,
+ * used to index per-player balance arrays without hashing the code name again.
+ * <p>
+ * Ids are assigned when {@link CurrencyManager} declares a currency and are never reused while the server runs,
+ * so a handle stays valid across reloads that add or remove currencies.
+ * Ids are not persisted, storage always refers to currencies by code name.
+ */
+public final class CurrencyHandle {
+    private static final ConcurrentHashMap<String, CurrencyHandle> handles = new ConcurrentHashMap<>();
+    private static final Object assignLock = new Object();
+    private static volatile CurrencyHandle[] byId = new CurrencyHandle[0];
+
+    private final int id;
+    private final String codeName;
+
+    private CurrencyHandle(int id, String codeName) {
+        this.id = id;
+        this.codeName = codeName;
+    }
+
+    /**
+     * Get the handle of a currency code name without assigning an id.
+     * @param codeName the canonical name of the currency
+     * @return the handle or null if no currency with the code name was declared since the server started
+     */
+    public static CurrencyHandle find(String codeName) {
+        return handles.get(codeName);
+    }
+
+    /**
+     * Get the handle of a declared currency code name, assigning the next id if it has none yet.
+     * @param codeName the canonical name of the currency
+     * @return the handle of the code name
+     */
+    static CurrencyHandle assign(String codeName) {
+        CurrencyHandle handle = handles.get(codeName);
+        if (handle != null) return handle;
+
+        synchronized (assignLock) {
+            return handles.computeIfAbsent(codeName, k -> {
+                CurrencyHandle[] assigned = Arrays.copyOf(byId, byId.length + 1);
+                CurrencyHandle created = new CurrencyHandle(byId.length, k);
+                assigned[created.id] = created;
+                byId = assigned;
+                return created;
+            });
+        }
+    }
+
+    /**
+     * Get the handle with the given id.
+     * @param id the dense id of the handle
+     * @return the handle or null if no handle has the id
+     */
+    public static CurrencyHandle byId(int id) {
+        CurrencyHandle[] assigned = byId;
+        return id >= 0 && id < assigned.length ? assigned[id] : null;
+    }
+
+    /**
+     * Get the number of handles assigned so far, every id is lower than it.
+     * @return number of handles
+     */
+    public static int count() {
+        return byId.length;
+    }
+
+    /**
+     * Get the dense id of the currency.
+     * @return the id, starting from 0
+     */
+    public int id() {
+        return id;
+    }
+
+    /**
+     * Get the canonical name of the currency.
+     * @return the code name
+     */
+    public String codeName() {
+        return codeName;
+    }
+
+    @Override
+    public String toString() {
+        return codeName + "#" + id;
+    }
+}
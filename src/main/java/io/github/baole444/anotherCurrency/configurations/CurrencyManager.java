@@ -10,10 +10,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 
 /**
  * Manager for {@code currencies.yml}
+ * <p>
+ * The declared currencies are published as an immutable {@link CurrencyRegistry} through a volatile reference,
+ * reads never lock and changes are serialized and swap in a new snapshot.
  */
 public class CurrencyManager {
     /**
@@ -22,7 +27,9 @@ public class CurrencyManager {
     public static final String currenciesYML = "currencies.yml";
 
     private final JavaPlugin plugin;
-    private final Map<String, Currency> currencies;
+    private final Map<String, Integer> retiredScales;
+    private volatile CurrencyRegistry registry;
+    private volatile Consumer<String> removalListener;
     private File currenciesFile;
     private FileConfiguration config;
 
@@ -32,7 +39,8 @@ public class CurrencyManager {
      */
     public CurrencyManager(JavaPlugin plugin) {
         this.plugin = plugin;
-        currencies = new HashMap<>();
+        retiredScales = new ConcurrentHashMap<>();
+        registry = CurrencyRegistry.Empty;
         loadCurrencies();
     }
 
@@ -42,7 +50,34 @@ public class CurrencyManager {
      * @return the {@link Currency} instance or null if there is none
      */
     public Currency currency(String codeName) {
-        return currencies.get(codeName);
+        return registry.currency(codeName);
+    }
+
+    /**
+     * Get the currency of a handle.
+     * @param handle the handle of the currency
+     * @return the {@link Currency} instance or null if it is not declared
+     */
+    public Currency currency(CurrencyHandle handle) {
+        return registry.currency(handle);
+    }
+
+    /**
+     * Get the current snapshot of the declared currencies, it never changes once taken.
+     * @return the currency registry
+     */
+    public CurrencyRegistry registry() {
+        return registry;
+    }
+
+    /**
+     * Get the handle of the currency with the given code name,
+     * the handle can be kept and stays valid across reloads.
+     * @param codeName canonical name of the currency
+     * @return the {@link CurrencyHandle} of the currency or null if there is none
+     */
+    public CurrencyHandle handle(String codeName) {
+        return registry.contains(codeName) ? CurrencyHandle.find(codeName) : null;
     }
 
     /**
@@ -50,7 +85,7 @@ public class CurrencyManager {
      * @return a new final map of the currencies.
      */
     public Map<String, Currency> currencies() {
-        return Collections.unmodifiableMap(currencies);
+        return registry.currencies();
     }
 
     /**
@@ -58,7 +93,7 @@ public class CurrencyManager {
      * @return a final set of currencies' name
      */
     public Set<String> currencyNames() {
-        return Collections.unmodifiableSet(currencies.keySet());
+        return registry.names();
     }
 
     /**
@@ -66,7 +101,41 @@ public class CurrencyManager {
      * @return number of currencies
      */
     public int currencyCount() {
-        return currencies.size();
+        return registry.size();
+    }
+
+    /**
+     * Get the scale of the currency with the given code name.
+     * A currency removed since startup keeps the scale it had, so balances of it held in memory stay valid.
+     * @param codeName canonical name of the currency
+     * @return the currency's scale or {@link Currency#DefaultScale} if there is none
+     */
+    public int scale(String codeName) {
+        Currency currency = registry.currency(codeName);
+        if (currency != null) return currency.scale();
+
+        Integer retired = retiredScales.get(codeName);
+        return retired != null ? retired : Currency.DefaultScale;
+    }
+
+    /**
+     * Get the scale of a currency by its handle, without hashing its code name when it is declared.
+     * @param handle the handle of the currency
+     * @return the currency's scale, its retired scale or {@link Currency#DefaultScale} if there is none
+     */
+    public int scale(CurrencyHandle handle) {
+        int scale = registry.scale(handle);
+        return scale != CurrencyRegistry.NoScale ? scale : scale(handle.codeName());
+    }
+
+    /**
+     * Get the scale of every declared currency and every currency removed since startup.
+     * @return a new map of code name to scale
+     */
+    public Map<String, Integer> scales() {
+        Map<String, Integer> scales = new HashMap<>(retiredScales);
+        for (Currency currency : registry.currencies().values()) scales.put(currency.canonicalName(), currency.scale());
+        return scales;
     }
 
     /**
@@ -75,13 +144,22 @@ public class CurrencyManager {
      * @return true if exist
      */
     public boolean hasCurrency(String codeName) {
-        return currencies.containsKey(codeName);
+        return registry.contains(codeName);
     }
 
     /**
-     * Load all declared currencies from disk.
+     * Load all declared currencies from disk and swap them in.
      */
     public void loadCurrencies() {
+        applyCurrencies(readCurrencies());
+    }
+
+    /**
+     * Read and validate all declared currencies from disk without swapping them in,
+     * currencies that fail to load are logged and left out.
+     * @return an unmodifiable map of the loaded currencies
+     */
+    public synchronized Map<String, Currency> readCurrencies() {
         currenciesFile = new File(plugin.getDataFolder(), currenciesYML);
         if (!currenciesFile.exists()) plugin.saveResource(currenciesYML, false);
 
@@ -93,18 +171,30 @@ public class CurrencyManager {
             config.setDefaults(defaultConfig);
         }
 
-        currencies.clear();
+        Map<String, Currency> loaded = new LinkedHashMap<>();
         Set<String> keys = config.getKeys(false);
         for (String codeName : keys) {
             try {
                 Currency currency = loadCurrency(codeName);
-                if (currency != null) currencies.put(codeName, currency);
+                if (currency == null) continue;
+
+                loaded.put(codeName, currency);
+                CurrencyHandle.assign(codeName);
             } catch (Exception e) {
                 plugin.getLogger().log(Level.WARNING, String.format("Failed to load currency: %s", codeName), e);
             }
         }
 
-        plugin.getLogger().info(String.format("Loaded %d currencies.", currencies.size()));
+        return Collections.unmodifiableMap(loaded);
+    }
+
+    /**
+     * Replace the declared currencies in one step, readers see either the old or the new currencies.
+     * @param loaded the currencies from {@link #readCurrencies()}
+     */
+    public synchronized void applyCurrencies(Map<String, Currency> loaded) {
+        publish(new CurrencyRegistry(loaded));
+        plugin.getLogger().info(String.format("Loaded %d currencies.", loaded.size()));
     }
 
     /**
@@ -117,7 +207,7 @@ public class CurrencyManager {
      * @param groupingSymbols symbol use by each tier of grouping
      * @return true if added successfully
      */
-    public boolean addCurrency(String codeName, String displayName, String prefix, String suffix, int groupingValue, String groupingSymbols) {
+    public synchronized boolean addCurrency(String codeName, String displayName, String prefix, String suffix, int groupingValue, String groupingSymbols) {
         if (hasCurrency(codeName)) return false;
 
         String canonicalPath = codeName + ".";
@@ -127,7 +217,12 @@ public class CurrencyManager {
         config.set(canonicalPath + Currency.GroupingValueKey, groupingValue);
         config.set(canonicalPath + Currency.GroupingSymbolKey, groupingSymbols);
         saveConfig();
-        loadCurrencies();
+
+        Currency currency = loadCurrency(codeName);
+        if (currency == null) return false;
+
+        CurrencyHandle.assign(codeName);
+        publish(registry.with(currency));
         return true;
     }
 
@@ -136,14 +231,39 @@ public class CurrencyManager {
      * @param codeName the canonical name of the currency
      * @return true if remove successfully
      */
-    public boolean removeCurrency(String codeName) {
+    public synchronized boolean removeCurrency(String codeName) {
         if (!hasCurrency(codeName)) return false;
         config.set(codeName, null);
         saveConfig();
-        loadCurrencies();
+
+        publish(registry.without(codeName));
+        Consumer<String> listener = removalListener;
+        if (listener != null) listener.accept(codeName);
         return true;
     }
 
+    /**
+     * Set the action run after a currency is removed by {@link #removeCurrency(String)},
+     * such as purging its balances from player data.
+     * @param listener receiver of the canonical name of each removed currency, or null for none
+     */
+    public void removalListener(Consumer<String> listener) {
+        removalListener = listener;
+    }
+
+    /**
+     * Swap in a new snapshot, currencies it drops keep their scale as retired so balances in memory stay valid.
+     * Callers hold the monitor of this manager, so snapshots are never built from a stale one.
+     */
+    private void publish(CurrencyRegistry next) {
+        for (Currency currency : registry.currencies().values()) {
+            if (!next.contains(currency.canonicalName())) retiredScales.put(currency.canonicalName(), currency.scale());
+        }
+
+        registry = next;
+        for (String codeName : next.names()) retiredScales.remove(codeName);
+    }
+
     private Currency loadCurrency(String codeName) {
         ConfigurationSection section = config.getConfigurationSection(codeName);
         if (section == null) return null;
@@ -161,7 +281,9 @@ public class CurrencyManager {
         }
 
         Currency.Grouping grouping = new Currency.Grouping(groupingValue, groupingSymbols);
-        return new Currency(codeName, displayName, prefix, suffix, grouping);
+        int scale = Math.max(0, Math.min(section.getInt(Currency.ScaleKey, Currency.DefaultScale), Currency.MaxScale));
+        CurrencyFormatter formatter = new CurrencyFormatter(prefix, suffix, grouping, scale);
+        return new Currency(codeName, displayName, prefix, suffix, grouping, scale, formatter);
     }
 
     private void saveConfig() {
@@ -0,0 +1,141 @@
+package io.github.baole444.anotherCurrency.configurations;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of the declared currencies.
+ * <p>
+ * {@link CurrencyManager} publishes the current snapshot through a single volatile reference,
+ * so readers never lock and always see one consistent set of currencies.
+ * Changes build a new snapshot with {@link #with(Currency)} or {@link #without(String)} and swap it in.
+ */
+public final class CurrencyRegistry {
+    /**
+     * Snapshot with no currency.
+     */
+    public static final CurrencyRegistry Empty = new CurrencyRegistry(Map.of());
+    /**
+     * Scale returned by {@link #scale(CurrencyHandle)} for a currency that is not declared.
+     */
+    public static final int NoScale = -1;
+
+    private final Map<String, Currency> currencies;
+    private final Currency[] byId;
+    private final int[] scalesById;
+
+    /**
+     * Create a snapshot of the given currencies, in iteration order.
+     * @param currencies the currencies by canonical name
+     */
+    public CurrencyRegistry(Map<String, Currency> currencies) {
+        this.currencies = Collections.unmodifiableMap(new LinkedHashMap<>(currencies));
+
+        // Currencies without a handle were never declared and cannot be looked up by one
+        int length = 0;
+        for (String codeName : this.currencies.keySet()) {
+            CurrencyHandle handle = CurrencyHandle.find(codeName);
+            if (handle != null) length = Math.max(length, handle.id() + 1);
+        }
+
+        byId = new Currency[length];
+        scalesById = new int[length];
+        Arrays.fill(scalesById, NoScale);
+        for (Currency currency : this.currencies.values()) {
+            CurrencyHandle handle = CurrencyHandle.find(currency.canonicalName());
+            if (handle == null) continue;
+
+            byId[handle.id()] = currency;
+            scalesById[handle.id()] = currency.scale();
+        }
+    }
+
+    /**
+     * Get the currency with the given code name.
+     * @param codeName canonical name of the currency
+     * @return the {@link Currency} or null if there is none
+     */
+    public Currency currency(String codeName) {
+        return currencies.get(codeName);
+    }
+
+    /**
+     * Get the currency of a handle without hashing its code name.
+     * @param handle the handle of the currency
+     * @return the {@link Currency} or null if it is not declared
+     */
+    public Currency currency(CurrencyHandle handle) {
+        int id = handle.id();
+        return id < byId.length ? byId[id] : null;
+    }
+
+    /**
+     * Get the scale of a currency by the id of its handle.
+     * @param handle the handle of the currency
+     * @return the currency's scale or {@link #NoScale} if it is not declared
+     */
+    public int scale(CurrencyHandle handle) {
+        int id = handle.id();
+        return id < scalesById.length ? scalesById[id] : NoScale;
+    }
+
+    /**
+     * Get every currency by canonical name.
+     * @return an unmodifiable map of the currencies
+     */
+    public Map<String, Currency> currencies() {
+        return currencies;
+    }
+
+    /**
+     * Get the canonical name of every currency.
+     * @return an unmodifiable set of names
+     */
+    public Set<String> names() {
+        return currencies.keySet();
+    }
+
+    /**
+     * Check if a currency is declared.
+     * @param codeName the canonical name to check
+     * @return true if declared
+     */
+    public boolean contains(String codeName) {
+        return currencies.containsKey(codeName);
+    }
+
+    /**
+     * Get the number of currencies.
+     * @return number of currencies
+     */
+    public int size() {
+        return currencies.size();
+    }
+
+    /**
+     * Create a snapshot with a currency added or replaced.
+     * @param currency the currency to add
+     * @return a new {@link CurrencyRegistry}
+     */
+    public CurrencyRegistry with(Currency currency) {
+        Map<String, Currency> copy = new LinkedHashMap<>(currencies);
+        copy.put(currency.canonicalName(), currency);
+        return new CurrencyRegistry(copy);
+    }
+
+    /**
+     * Create a snapshot with a currency removed.
+     * @param codeName canonical name of the currency
+     * @return a new {@link CurrencyRegistry}, or this one if the currency is not declared
+     */
+    public CurrencyRegistry without(String codeName) {
+        if (!currencies.containsKey(codeName)) return this;
+
+        Map<String, Currency> copy = new LinkedHashMap<>(currencies);
+        copy.remove(codeName);
+        return new CurrencyRegistry(copy);
+    }
+}
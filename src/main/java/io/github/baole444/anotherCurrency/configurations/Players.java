@@ -3,13 +3,39 @@ package io.github.baole444.anotherCurrency.configurations;
 /**
  * Players configuring options.
  * @param playtime playtime tracking options
+ * @param persistence player data saving options
+ * @param storage player data storage backend options
+ * @param cache player data cache options
+ * @param history transaction history options
  */
-public record Players(Playtime playtime) {
+public record Players(Playtime playtime, Persistence persistence, Storage storage, Cache cache, History history) {
     public static final String PlayersKey = "players";
     public static final String PlaytimeKey = "playtime";
     public static final String TrackPlayTimeKey = "track-playtime";
     public static final String DetectAFKKey = "detect-afk";
     public static final String AFKThresholdKey = "afk-threshold";
+    public static final String PersistenceKey = "persistence";
+    public static final String WriteBehindKey = "write-behind";
+    public static final String FlushIntervalKey = "flush-interval";
+    public static final String MaxStalenessKey = "max-staleness";
+    public static final String JournalKey = "journal";
+    public static final String CommitIntervalKey = "commit-interval";
+    public static final String CompactionIntervalKey = "compaction-interval";
+    public static final String StorageKey = "storage";
+    public static final String TypeKey = "type";
+    public static final String PoolSizeKey = "pool-size";
+    public static final String MigrateFromKey = "migrate-from";
+    public static final String UpgradeRateKey = "upgrade-rate";
+    public static final String PurgeRateKey = "purge-rate";
+    public static final String OperationRateKey = "operation-rate";
+    public static final String CacheKey = "cache";
+    public static final String MaxSizeKey = "max-size";
+    public static final String IdleTimeoutKey = "idle-timeout";
+    public static final String HistoryKey = "history";
+    public static final String EnabledKey = "enabled";
+    public static final String BufferSizeKey = "buffer-size";
+    public static final String SegmentSizeKey = "segment-size";
+    public static final String MaxSegmentsKey = "max-segments";
 
     /**
      * Players config full path.
@@ -34,6 +60,128 @@ public record Players(Playtime playtime) {
         public static final String AFKThreshold = path + AFKThresholdKey;
     }
 
+    /**
+     * Persistence config full path.
+     */
+    public static class PersistencePath {
+        private PersistencePath() {}
+        private static final String path = PlayersKey + "." + PersistenceKey + ".";
+
+        /**
+         * Path to write behind key.
+         */
+        public static final String WriteBehind = path + WriteBehindKey;
+
+        /**
+         * Path to flush interval key.
+         */
+        public static final String FlushInterval = path + FlushIntervalKey;
+
+        /**
+         * Path to max staleness key.
+         */
+        public static final String MaxStaleness = path + MaxStalenessKey;
+
+        /**
+         * Path to journal key.
+         */
+        public static final String Journal = path + JournalKey;
+
+        /**
+         * Path to commit interval key.
+         */
+        public static final String CommitInterval = path + CommitIntervalKey;
+
+        /**
+         * Path to compaction interval key.
+         */
+        public static final String CompactionInterval = path + CompactionIntervalKey;
+    }
+
+    /**
+     * Storage config full path.
+     */
+    public static class StoragePath {
+        private StoragePath() {}
+        private static final String path = PlayersKey + "." + StorageKey + ".";
+
+        /**
+         * Path to storage type key.
+         */
+        public static final String Type = path + TypeKey;
+
+        /**
+         * Path to pool size key.
+         */
+        public static final String PoolSize = path + PoolSizeKey;
+
+        /**
+         * Path to migrate from key.
+         */
+        public static final String MigrateFrom = path + MigrateFromKey;
+
+        /**
+         * Path to upgrade rate key.
+         */
+        public static final String UpgradeRate = path + UpgradeRateKey;
+
+        /**
+         * Path to purge rate key.
+         */
+        public static final String PurgeRate = path + PurgeRateKey;
+
+        /**
+         * Path to operation rate key.
+         */
+        public static final String OperationRate = path + OperationRateKey;
+    }
+
+    /**
+     * Cache config full path.
+     */
+    public static class CachePath {
+        private CachePath() {}
+        private static final String path = PlayersKey + "." + CacheKey + ".";
+
+        /**
+         * Path to max size key.
+         */
+        public static final String MaxSize = path + MaxSizeKey;
+
+        /**
+         * Path to idle timeout key.
+         */
+        public static final String IdleTimeout = path + IdleTimeoutKey;
+    }
+
+    /**
+     * History config full path.
+     */
+    public static class HistoryPath {
+        private HistoryPath() {}
+        private static final String path = PlayersKey + "." + HistoryKey + ".";
+
+        /**
+         * Path to enabled key.
+         */
+        public static final String Enabled = path + EnabledKey;
+
+        /**
+         * Path to buffer size key.
+         */
+        public static final String BufferSize = path + BufferSizeKey;
+
+        /**
+         * Path to segment size key.
+         */
+        public static final String SegmentSize = path + SegmentSizeKey;
+
+        /**
+         * Path to max segments key.
+         */
+        public static final String MaxSegments = path + MaxSegmentsKey;
+    }
+
     /**
      * Playtime configuring options.
      * @param trackPlaytime enable tracking player time or not
@@ -59,11 +207,192 @@ public record Players(Playtime playtime) {
     }
 
     /**
-     * Compact constructor ensure that playtime is not null.
+     * Persistence configuring options.
+     * @param writeBehind save changed player data in the background instead of on every change or not
+     * @param flushInterval time since the last change before the player data is saved, in seconds
+     * @param maxStaleness longest time a changed player data can wait before being saved, in seconds
+     * @param journal append every change to a crash-safe journal or not
+     * @param commitInterval time between each journal fsync, in milliseconds
+     * @param compactionInterval time between each fold of the journal into player data, in seconds
+     */
+    public record Persistence(
+            boolean writeBehind, long flushInterval, long maxStaleness,
+            boolean journal, long commitInterval, long compactionInterval
+    ) {
+        /**
+         * Compact constructor ensure the max staleness is not shorter than the flush interval
+         * and the journal intervals are positive.
+         * @param writeBehind save changed player data in the background or not
+         * @param flushInterval time since the last change before the player data is saved, in seconds
+         * @param maxStaleness longest time a changed player data can wait before being saved, in seconds
+         * @param journal append every change to a crash-safe journal or not
+         * @param commitInterval time between each journal fsync, in milliseconds
+         * @param compactionInterval time between each fold of the journal into player data, in seconds
+         */
+        public Persistence {
+            flushInterval = Math.max(1L, flushInterval);
+            maxStaleness = Math.max(flushInterval, maxStaleness);
+            commitInterval = Math.max(1L, commitInterval);
+            compactionInterval = Math.max(1L, compactionInterval);
+        }
+
+        /**
+         * Create a new {@link Persistence} configuration from other persistence config's components.
+         * @param other the other Persistence to copy from
+         */
+        public Persistence(Persistence other) {
+            this(other.writeBehind, other.flushInterval, other.maxStaleness,
+                    other.journal, other.commitInterval, other.compactionInterval);
+        }
+
+        /**
+         * Get the default Persistence configuration.
+         * @return a new {@link Persistence} config option
+         */
+        public static Persistence getDefault() {
+            return new Persistence(true, 5L, 30L, false, 50L, 300L);
+        }
+    }
+
+    /**
+     * Storage configuring options.
+     * @param type name of the storage backend
+     * @param poolSize maximum number of connections for database backends
+     * @param migrateFrom name of the storage backend to copy all player data from on startup, empty for none
+     * @param upgradeRate number of outdated player data upgraded per second in the background, 0 to only upgrade on load
+     * @param purgeRate number of player data checked per second for balances of removed currencies
+     * @param operationRate number of player data changed per second by an economy operation
+     */
+    public record Storage(String type, int poolSize, String migrateFrom, int upgradeRate, int purgeRate, int operationRate) {
+        /**
+         * Compact constructor ensure the storage names are not null, the pool has at least one connection,
+         * the upgrade rate is not negative and the purge and operation rates are positive.
+         * @param type name of the storage backend
+         * @param poolSize maximum number of connections for database backends
+         * @param migrateFrom name of the storage backend to copy all player data from on startup
+         * @param upgradeRate number of outdated player data upgraded per second in the background
+         * @param purgeRate number of player data checked per second for balances of removed currencies
+         * @param operationRate number of player data changed per second by an economy operation
+         */
+        public Storage {
+            if (type == null) type = "yaml";
+            if (migrateFrom == null) migrateFrom = "";
+            poolSize = Math.max(1, poolSize);
+            upgradeRate = Math.max(0, upgradeRate);
+            purgeRate = Math.max(1, purgeRate);
+            operationRate = Math.max(1, operationRate);
+        }
+
+        /**
+         * Create a new {@link Storage} configuration from other storage config's components.
+         * @param other the other Storage to copy from
+         */
+        public Storage(Storage other) {
+            this(other.type, other.poolSize, other.migrateFrom, other.upgradeRate, other.purgeRate, other.operationRate);
+        }
+
+        /**
+         * Check if a migration is requested.
+         * @return true if migrate from is not empty
+         */
+        public boolean hasMigrateFrom() {
+            return !migrateFrom.isBlank();
+        }
+
+        /**
+         * Get the default Storage configuration.
+         * @return a new {@link Storage} config option
+         */
+        public static Storage getDefault() {
+            return new Storage("yaml", 4, "", 20, 50, 200);
+        }
+    }
+
+    /**
+     * Cache configuring options.
+     * @param maxSize maximum number of offline player data kept in memory, online players are not counted
+     * @param idleTimeout time an offline player data is kept in memory since it was last used, in seconds
+     */
+    public record Cache(int maxSize, long idleTimeout) {
+        /**
+         * Compact constructor ensure the bounds are positive.
+         * @param maxSize maximum number of offline player data kept in memory
+         * @param idleTimeout time an offline player data is kept in memory since it was last used, in seconds
+         */
+        public Cache {
+            maxSize = Math.max(1, maxSize);
+            idleTimeout = Math.max(1L, idleTimeout);
+        }
+
+        /**
+         * Create a new {@link Cache} configuration from other cache config's components.
+         * @param other the other Cache to copy from
+         */
+        public Cache(Cache other) {
+            this(other.maxSize, other.idleTimeout);
+        }
+
+        /**
+         * Get the default Cache configuration.
+         * @return a new {@link Cache} config option
+         */
+        public static Cache getDefault() {
+            return new Cache(1000, 600L);
+        }
+    }
+
+    /**
+     * History configuring options.
+     * @param enabled record every balance change or not
+     * @param bufferSize number of changes held in memory while waiting to be written
+     * @param segmentSize compressed size of a history file before a new one is started, in kilobytes
+     * @param maxSegments number of history files kept, the oldest are deleted past it
+     */
+    public record History(boolean enabled, int bufferSize, long segmentSize, int maxSegments) {
+        /**
+         * Compact constructor ensure the sizes are positive.
+         * @param enabled record every balance change or not
+         * @param bufferSize number of changes held in memory while waiting to be written
+         * @param segmentSize compressed size of a history file before a new one is started, in kilobytes
+         * @param maxSegments number of history files kept
+         */
+        public History {
+            bufferSize = Math.max(1024, bufferSize);
+            segmentSize = Math.max(64L, segmentSize);
+            maxSegments = Math.max(1, maxSegments);
+        }
+
+        /**
+         * Create a new {@link History} configuration from other history config's components.
+         * @param other the other History to copy from
+         */
+        public History(History other) {
+            this(other.enabled, other.bufferSize, other.segmentSize, other.maxSegments);
+        }
+
+        /**
+         * Get the default History configuration.
+         * @return a new {@link History} config option
+         */
+        public static History getDefault() {
+            return new History(true, 65536, 4096L, 32);
+        }
+    }
+
+    /**
+     * Compact constructor ensure that playtime, persistence, storage, cache and history are not null.
      * @param playtime playtime tracking options
+     * @param persistence player data saving options
+     * @param storage player data storage backend options
+     * @param cache player data cache options
+     * @param history transaction history options
      */
     public Players {
         if (playtime == null) playtime = Playtime.getDefault();
+        if (persistence == null) persistence = Persistence.getDefault();
+        if (storage == null) storage = Storage.getDefault();
+        if (cache == null) cache = Cache.getDefault();
+        if (history == null) history = History.getDefault();
     }
 
     /**
@@ -71,7 +400,7 @@ public record Players(Playtime playtime) {
      * @param other the other Players to copy from
      */
     public Players(Players other) {
-        this(other.playtime);
+        this(other.playtime, other.persistence, other.storage, other.cache, other.history);
     }
 
     /**
@@ -79,6 +408,6 @@ public record Players(Playtime playtime) {
      * @return a new {@link Players} config option
      */
     public static Players getDefault() {
-        return new Players(Playtime.getDefault());
+        return new Players(Playtime.getDefault(), Persistence.getDefault(), Storage.getDefault(), Cache.getDefault(), History.getDefault());
     }
 }
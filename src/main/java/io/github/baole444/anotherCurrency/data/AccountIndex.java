@@ -0,0 +1,120 @@
+package io.github.baole444.anotherCurrency.data;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of every stored account, holding only the unique identifier and last known name.
+ * Filled by a scan of the storage at startup and kept up to date as player data is saved or deleted,
+ * so existence and name lookups never touch the disk once {@link #ready()} is true.
+ */
+public class AccountIndex {
+    private final ConcurrentHashMap<UUID, String> names;
+    private final ConcurrentHashMap<String, UUID> uuids;
+    private volatile boolean ready;
+
+    /**
+     * Initialize an empty account index.
+     */
+    public AccountIndex() {
+        names = new ConcurrentHashMap<>();
+        uuids = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Add or update an account.
+     * @param uuid the unique identifier of the player
+     * @param playerName last known name of the player, may be null
+     */
+    public void put(UUID uuid, String playerName) {
+        String name = playerName != null ? playerName : "";
+        String previous = names.put(uuid, name);
+        if (previous != null && !previous.equals(name) && !previous.isEmpty()) uuids.remove(key(previous), uuid);
+        if (!name.isEmpty()) uuids.put(key(name), uuid);
+    }
+
+    /**
+     * Add an account found by the startup scan, unless it was already added by a save since the scan started.
+     * @param uuid the unique identifier of the player
+     * @param playerName stored name of the player, may be null
+     */
+    public void seed(UUID uuid, String playerName) {
+        String name = playerName != null ? playerName : "";
+        if (names.putIfAbsent(uuid, name) == null && !name.isEmpty()) uuids.putIfAbsent(key(name), uuid);
+    }
+
+    /**
+     * Remove an account.
+     * @param uuid the unique identifier of the player
+     */
+    public void remove(UUID uuid) {
+        String previous = names.remove(uuid);
+        if (previous != null && !previous.isEmpty()) uuids.remove(key(previous), uuid);
+    }
+
+    /**
+     * Check if an account exists.
+     * @param uuid the unique identifier of the player
+     * @return true if indexed
+     */
+    public boolean exists(UUID uuid) {
+        return names.containsKey(uuid);
+    }
+
+    /**
+     * Get the unique identifier of an account by name, ignoring case.
+     * @param playerName the name of the player
+     * @return the unique identifier or null if no account has the name
+     */
+    public UUID uuid(String playerName) {
+        return playerName != null ? uuids.get(key(playerName)) : null;
+    }
+
+    /**
+     * Get the last known name of an account.
+     * @param uuid the unique identifier of the player
+     * @return the name or null if unknown
+     */
+    public String name(UUID uuid) {
+        String name = names.get(uuid);
+        return name != null && !name.isEmpty() ? name : null;
+    }
+
+    /**
+     * Get the unique identifiers of every indexed account.
+     * @return an unmodifiable live view of the indexed accounts
+     */
+    public Set<UUID> accounts() {
+        return Collections.unmodifiableSet(names.keySet());
+    }
+
+    /**
+     * Get the number of indexed accounts.
+     * @return size of the index
+     */
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * Check if the startup scan has finished, before that the index may be missing stored accounts.
+     * @return true if every stored account is indexed
+     */
+    public boolean ready() {
+        return ready;
+    }
+
+    /**
+     * Mark the startup scan as finished.
+     */
+    void markReady() {
+        ready = true;
+    }
+
+    private static String key(String playerName) {
+        return playerName.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,28 @@
+package io.github.baole444.anotherCurrency.data;
+
+import io.github.baole444.anotherCurrency.configurations.CurrencyHandle;
+
+import java.util.UUID;
+
+/**
+ * One balance change of a batch, see {@link PlayerDataManager#applyAll(java.util.List, io.github.baole444.anotherCurrency.configurations.CurrencyLimit)}.
+ * @param uuid the unique identifier of the player
+ * @param currency the handle of the currency
+ * @param delta the amount to add, negative to take
+ */
+public record BalanceOperation(UUID uuid, CurrencyHandle currency, double delta) {
+    /**
+     * Create a balance change by currency code name.
+     * @param uuid the unique identifier of the player
+     * @param currencyCode the canonical name of the currency
+     * @param delta the amount to add, negative to take
+     * @return a new {@link BalanceOperation}
+     * @throws IllegalArgumentException if no currency with the code name was declared
+     */
+    public static BalanceOperation of(UUID uuid, String currencyCode, double delta) {
+        CurrencyHandle currency = CurrencyHandle.find(currencyCode);
+        if (currency == null) throw new IllegalArgumentException(String.format("Unknown currency: %s", currencyCode));
+
+        return new BalanceOperation(uuid, currency, delta);
+    }
+}
@@ -0,0 +1,46 @@
+package io.github.baole444.anotherCurrency.data;
+
+import io.github.baole444.anotherCurrency.AnotherCurrency;
+import io.github.baole444.anotherCurrency.configurations.Players;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+
+/**
+ * Background task keeping the player data cache within its size and idle bounds.
+ */
+public class CacheEvictor {
+    private static final long CheckIntervalTick = 600L;
+
+    private final AnotherCurrency plugin;
+    private ScheduledTask task;
+
+    /**
+     * Initialize cache evictor instance.
+     * @param plugin the ANC plugin's instance
+     */
+    public CacheEvictor(AnotherCurrency plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Start the eviction task, the bounds are read on every run so reloaded config applies right away.
+     */
+    public void start() {
+        if (task != null && !task.isCancelled()) return;
+        task = plugin.scheduler().runAsyncTimer(this::evict, CheckIntervalTick, CheckIntervalTick);
+    }
+
+    /**
+     * Stop the eviction task.
+     */
+    public void stop() {
+        if (task != null && !task.isCancelled()) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    private void evict() {
+        Players.Cache config = plugin.configManager().players().cache();
+        plugin.playerDataManager().evict(config.maxSize(), config.idleTimeout() * 1000L);
+    }
+}
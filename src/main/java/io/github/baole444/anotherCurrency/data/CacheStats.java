@@ -0,0 +1,20 @@
+package io.github.baole444.anotherCurrency.data;
+
+/**
+ * Snapshot of the player data cache counters since startup.
+ * @param hits number of lookups served from memory
+ * @param misses number of lookups that had to load from storage
+ * @param evictions number of player data removed from memory by the size or idle bound
+ * @param size number of player data currently cached
+ * @param pinned number of cached player data that cannot be evicted, such as online players
+ */
+public record CacheStats(long hits, long misses, long evictions, int size, int pinned) {
+    /**
+     * Get the share of lookups served from memory.
+     * @return hit rate between 0 and 1, or 1 if there was no lookup yet
+     */
+    public double hitRate() {
+        long requests = hits + misses;
+        return requests == 0L ? 1D : (double) hits / requests;
+    }
+}
@@ -0,0 +1,270 @@
+package io.github.baole444.anotherCurrency.data;
+
+import io.github.baole444.anotherCurrency.AnotherCurrency;
+import io.github.baole444.anotherCurrency.data.storage.AtomicFileWriter;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+
+/**
+ * Background task dropping the balances of removed currencies from every stored player, a few players per run.
+ * <p>
+ * Players are visited in order of unique identifier and the last visited one is saved to {@link #StateFileName}
+ * after every run, so a restart continues where the purge stopped instead of starting over.
+ * Queuing another currency while a purge is running starts the pass over for every queued currency.
+ * <p>
+ * Runs hold a private lock on the task's thread, commands only read the last published {@link Progress}
+ * and queue currencies for the task to take over, so they never wait on storage.
+ */
+public class CurrencyPurger {
+    /**
+     * Name of the file keeping the progress of a running purge.
+     */
+    public static final String StateFileName = "purge.yml";
+    private static final String CurrenciesKey = "currencies";
+    private static final String CursorKey = "cursor";
+    private static final String CheckedKey = "checked";
+    private static final String PurgedKey = "purged";
+    private static final long IntervalTick = 20L;
+    private static final int ReportPercentStep = 10;
+    private static final Progress Idle = new Progress(Set.of(), 0, 0, 0);
+
+    private final AnotherCurrency plugin;
+    private final File stateFile;
+    private final AtomicFileWriter writer;
+    private final Set<String> currencies;
+    private final Set<String> requested;
+    private final Object runLock;
+    private final AtomicReference<Progress> progress;
+    private ScheduledTask task;
+    private List<UUID> pending;
+    private int position;
+    private UUID cursor;
+    private int checked;
+    private int purged;
+    private int total;
+    private int reported;
+
+    /**
+     * Progress of the running purge.
+     * @param currencies canonical names of the currencies being purged, empty if no purge is running
+     * @param checked number of players checked so far
+     * @param total number of players to check, 0 until the first run lists them
+     * @param purged number of players a balance was dropped from
+     */
+    public record Progress(Set<String> currencies, int checked, int total, int purged) {}
+
+    /**
+     * Initialize currency purger instance.
+     * @param plugin the ANC plugin's instance
+     */
+    public CurrencyPurger(AnotherCurrency plugin) {
+        this.plugin = plugin;
+        stateFile = new File(plugin.getDataFolder(), StateFileName);
+        writer = new AtomicFileWriter(plugin.getLogger());
+        currencies = new LinkedHashSet<>();
+        requested = ConcurrentHashMap.newKeySet();
+        runLock = new Object();
+        progress = new AtomicReference<>(Idle);
+    }
+
+    /**
+     * Continue a purge stopped by a restart, if there is one.
+     */
+    public void resume() {
+        synchronized (runLock) {
+            if (!stateFile.exists()) return;
+
+            load();
+        }
+
+        if (!progress.get().currencies().isEmpty()) start();
+    }
+
+    private void load() {
+        YamlConfiguration state = YamlConfiguration.loadConfiguration(stateFile);
+        currencies.addAll(state.getStringList(CurrenciesKey));
+        if (currencies.isEmpty()) return;
+
+        String savedCursor = state.getString(CursorKey, "");
+        try {
+            cursor = savedCursor.isEmpty() ? null : UUID.fromString(savedCursor);
+        } catch (IllegalArgumentException e) {
+            cursor = null;
+        }
+        checked = cursor != null ? state.getInt(CheckedKey, 0) : 0;
+        purged = cursor != null ? state.getInt(PurgedKey, 0) : 0;
+
+        plugin.playerDataManager().purging(currencies);
+        publish();
+        plugin.getLogger().info(String.format("Resuming purge of removed currencies %s.", String.join(", ", currencies)));
+    }
+
+    /**
+     * Queue a removed currency to have its balances dropped from every player, the task takes it over on its next run.
+     * @param codeName the canonical name of the currency
+     * @return false if the currency still exists or is already queued
+     */
+    public boolean purge(String codeName) {
+        if (plugin.currencyManager().registry().contains(codeName)) return false;
+        if (progress.get().currencies().contains(codeName) || !requested.add(codeName)) return false;
+
+        start();
+        return true;
+    }
+
+    /**
+     * Get the progress of the running purge, as published after its last run.
+     * @return a snapshot of the progress
+     */
+    public Progress progress() {
+        return progress.get();
+    }
+
+    /**
+     * Start the purge task, the rate is read on every run so reloaded config applies right away.
+     */
+    public synchronized void start() {
+        if (task != null && !task.isCancelled()) return;
+        task = plugin.scheduler().runAsyncTimer(this::run, IntervalTick, IntervalTick);
+    }
+
+    /**
+     * Stop the purge task, the progress is kept for a later start or the next startup.
+     */
+    public synchronized void stop() {
+        if (task != null && !task.isCancelled()) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    private void run() {
+        synchronized (runLock) {
+            takeRequested();
+            runPass();
+        }
+    }
+
+    /**
+     * Move queued currencies into the running purge, starting the pass over since checked players never had them dropped.
+     */
+    private void takeRequested() {
+        boolean added = false;
+        for (String codeName : requested) {
+            requested.remove(codeName);
+            if (plugin.currencyManager().registry().contains(codeName) || !currencies.add(codeName)) continue;
+
+            added = true;
+            plugin.getLogger().info(String.format("Purging balances of removed currency %s from every player in the background.", codeName));
+        }
+
+        if (!added) return;
+
+        pending = null;
+        cursor = null;
+        checked = 0;
+        purged = 0;
+        total = 0;
+        reported = 0;
+        plugin.playerDataManager().purging(currencies);
+        saveState();
+        publish();
+    }
+
+    private void runPass() {
+        PlayerDataManager playerDataManager = plugin.playerDataManager();
+        // A currency added back while being purged keeps its balances
+        if (currencies.removeIf(codeName -> plugin.currencyManager().registry().contains(codeName))) playerDataManager.purging(currencies);
+
+        if (currencies.isEmpty()) {
+            finish(playerDataManager);
+            return;
+        }
+
+        if (pending == null) {
+            pending = new ArrayList<>(playerDataManager.store().uuids());
+            pending.sort(null);
+            if (cursor != null) pending.removeIf(uuid -> uuid.compareTo(cursor) <= 0);
+            position = 0;
+            total = checked + pending.size();
+        }
+
+        int rate = plugin.configManager().players().storage().purgeRate();
+        int end = Math.min(pending.size(), position + rate);
+        for (; position < end; position++) {
+            UUID uuid = pending.get(position);
+            try {
+                if (playerDataManager.purgeBalances(uuid, currencies)) purged++;
+            } catch (RuntimeException e) {
+                plugin.getLogger().log(Level.WARNING, String.format("Failed to purge removed currencies from %s", uuid), e);
+            }
+
+            checked++;
+            cursor = uuid;
+        }
+
+        if (position < pending.size()) {
+            saveState();
+            publish();
+            report();
+            return;
+        }
+
+        plugin.getLogger().info(String.format("Purged %s from %d of %d players.", String.join(", ", currencies), purged, checked));
+        finish(playerDataManager);
+    }
+
+    private void finish(PlayerDataManager playerDataManager) {
+        currencies.clear();
+        pending = null;
+        cursor = null;
+        playerDataManager.purging(currencies);
+        if (stateFile.exists() && !stateFile.delete()) {
+            plugin.getLogger().warning(String.format("Failed to delete %s, the finished purge will run again on next startup.", StateFileName));
+        }
+
+        // Stop before going idle, and start again for currencies queued meanwhile, so none waits on a cancelled task
+        stop();
+        progress.set(Idle);
+        if (!requested.isEmpty()) start();
+    }
+
+    private void publish() {
+        progress.set(new Progress(Set.copyOf(currencies), checked, total, purged));
+    }
+
+    private void report() {
+        int percent = total > 0 ? (int) (checked * 100L / total) : 0;
+        if (percent - reported < ReportPercentStep) return;
+
+        reported = percent - percent % ReportPercentStep;
+        plugin.getLogger().info(String.format("Purging %s: %d%% (%d of %d players checked, %d purged).",
+                String.join(", ", currencies), percent, checked, total, purged));
+    }
+
+    private void saveState() {
+        YamlConfiguration state = new YamlConfiguration();
+        state.set(CurrenciesKey, new ArrayList<>(currencies));
+        state.set(CursorKey, cursor != null ? cursor.toString() : "");
+        state.set(CheckedKey, checked);
+        state.set(PurgedKey, purged);
+
+        try {
+            writer.write(stateFile.toPath(), state.saveToString());
+            writer.sync(stateFile.getParentFile().toPath());
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.WARNING, String.format("Failed to save %s, the purge may start over on next startup.", StateFileName), e);
+        }
+    }
+}
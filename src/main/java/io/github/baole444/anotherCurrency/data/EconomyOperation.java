@@ -0,0 +1,162 @@
+package io.github.baole444.anotherCurrency.data;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.List;
+
+/**
+ * A server-wide change of every balance of a currency, such as a season reset, see {@link EconomyOperator}.
+ * Only players holding a balance of the currency are changed.
+ * @param kind what the operation does
+ * @param currency the canonical name of the changed currency
+ * @param target the canonical name of the currency converted into, or null if the operation is not a conversion
+ * @param value the amount balances are reset to, the factor they are multiplied by or the conversion rate
+ */
+public record EconomyOperation(Kind kind, String currency, String target, double value) {
+    private static final BigInteger MaxUnits = BigInteger.valueOf(Long.MAX_VALUE);
+    /**
+     * Lowest balance, one above {@link Long#MIN_VALUE} which marks a missing balance.
+     */
+    private static final BigInteger MinUnits = BigInteger.valueOf(Long.MIN_VALUE + 1);
+
+    /**
+     * What an economy operation does to each balance.
+     */
+    public enum Kind {
+        /**
+         * Set the balance to an exact amount.
+         */
+        RESET,
+        /**
+         * Multiply the balance by a factor.
+         */
+        SCALE,
+        /**
+         * Move the whole balance into another currency at a rate.
+         */
+        CONVERT
+    }
+
+    /**
+     * Outcome of an economy operation on one player.
+     */
+    public enum Outcome {
+        /**
+         * The balances were changed.
+         */
+        APPLIED,
+        /**
+         * The balances were changed, and clamped into the currency limit.
+         */
+        CLAMPED,
+        /**
+         * The player holds no balance of the currency or the operation changes nothing.
+         */
+        UNCHANGED,
+        /**
+         * The balances are no longer the expected ones, they were changed since they were read.
+         */
+        CONFLICT,
+        /**
+         * The player data is no longer the cached one and should be looked up again.
+         */
+        EVICTED
+    }
+
+    /**
+     * Create an operation setting every balance of a currency to an amount.
+     * @param currency the canonical name of the currency
+     * @param amount the new balance of every player, usually 0
+     * @return a new {@link EconomyOperation}
+     */
+    public static EconomyOperation reset(String currency, double amount) {
+        return new EconomyOperation(Kind.RESET, currency, null, amount);
+    }
+
+    /**
+     * Create an operation multiplying every balance of a currency.
+     * @param currency the canonical name of the currency
+     * @param factor the factor to multiply by, such as 0.5 to halve every balance
+     * @return a new {@link EconomyOperation}
+     */
+    public static EconomyOperation scale(String currency, double factor) {
+        return new EconomyOperation(Kind.SCALE, currency, null, factor);
+    }
+
+    /**
+     * Create an operation moving every balance of a currency into another one.
+     * @param currency the canonical name of the currency to empty
+     * @param target the canonical name of the currency to add to
+     * @param rate amount of the target currency given for 1 of the emptied currency
+     * @return a new {@link EconomyOperation}
+     */
+    public static EconomyOperation convert(String currency, String target, double rate) {
+        return new EconomyOperation(Kind.CONVERT, currency, target, rate);
+    }
+
+    /**
+     * Get the currencies whose balances the operation reads and changes.
+     * @return the currency, followed by the target of a conversion
+     */
+    public List<String> currencies() {
+        return kind == Kind.CONVERT ? List.of(currency, target) : List.of(currency);
+    }
+
+    /**
+     * Read the balances the operation is based on.
+     * @param data the player data to read
+     * @return balances of {@link #currencies()} in minor units
+     */
+    public long[] balances(PlayerData data) {
+        List<String> codes = currencies();
+        long[] balances = new long[codes.size()];
+        for (int i = 0; i < balances.length; i++) balances[i] = data.balance(codes.get(i));
+        return balances;
+    }
+
+    /**
+     * Compute the balances after the operation, before any limit is applied.
+     * Results past the range of a balance are saturated.
+     * @param balances balances of {@link #currencies()} before the operation, in minor units
+     * @param scales scales of {@link #currencies()}
+     * @return the balances after the operation in the same order, in minor units
+     */
+    public long[] apply(long[] balances, int[] scales) {
+        return switch (kind) {
+            case RESET -> new long[] {units(BigDecimal.valueOf(value), scales[0])};
+            case SCALE -> new long[] {units(BigDecimal.valueOf(balances[0], scales[0]).multiply(BigDecimal.valueOf(value)), scales[0])};
+            case CONVERT -> {
+                long converted = units(BigDecimal.valueOf(balances[0], scales[0]).multiply(BigDecimal.valueOf(value)), scales[1]);
+                long sum;
+                try {
+                    sum = Math.addExact(balances[1], converted);
+                } catch (ArithmeticException e) {
+                    sum = converted < 0 ? MinUnits.longValue() : Long.MAX_VALUE;
+                }
+
+                yield new long[] {0L, sum};
+            }
+        };
+    }
+
+    /**
+     * Describe the operation for logs and messages.
+     * @return a short human readable description
+     */
+    public String describe() {
+        return switch (kind) {
+            case RESET -> String.format("reset %s to %s", currency, value);
+            case SCALE -> String.format("scale %s by %s", currency, value);
+            case CONVERT -> String.format("convert %s into %s at %s", currency, target, value);
+        };
+    }
+
+    private static long units(BigDecimal amount, int scale) {
+        BigInteger units = amount.setScale(scale, RoundingMode.HALF_EVEN).unscaledValue();
+        if (units.compareTo(MaxUnits) > 0) return Long.MAX_VALUE;
+        if (units.compareTo(MinUnits) < 0) return MinUnits.longValue();
+
+        return units.longValue();
+    }
+}
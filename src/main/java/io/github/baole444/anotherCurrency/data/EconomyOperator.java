@@ -0,0 +1,408 @@
+package io.github.baole444.anotherCurrency.data;
+
+import io.github.baole444.anotherCurrency.AnotherCurrency;
+import io.github.baole444.anotherCurrency.configurations.CurrencyLimit;
+import io.github.baole444.anotherCurrency.data.storage.AtomicFileWriter;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+
+/**
+ * Background task applying an {@link EconomyOperation} to every stored player, online or offline, one batch per run.
+ * <p>
+ * Each batch is loaded in parallel on the storage threads, then the balances every change is planned from are saved
+ * to {@link #StateFileName} before any player is changed. A player is only changed if its balances still match the plan,
+ * under its lock, so a concurrent change from gameplay is never overwritten and the player is planned again instead.
+ * The batch is saved before the plan is cleared, so after a crash a planned player whose balances moved on already
+ * has the change, and one whose balances still match does not, and no player is changed twice.
+ * <p>
+ * Batches run under a private lock on the task's thread, commands only read the last published {@link Progress}
+ * and hand new operations over to the task, so they never wait on storage.
+ */
+public class EconomyOperator {
+    /**
+     * Name of the file keeping the progress of a running operation.
+     */
+    public static final String StateFileName = "operation.yml";
+    private static final String KindKey = "kind";
+    private static final String CurrencyKey = "currency";
+    private static final String TargetKey = "target";
+    private static final String ValueKey = "value";
+    private static final String CursorKey = "cursor";
+    private static final String CheckedKey = "checked";
+    private static final String ChangedKey = "changed";
+    private static final String ClampedKey = "clamped";
+    private static final String PlannedKey = "planned";
+    private static final long IntervalTick = 20L;
+    private static final int MaxAttempts = 5;
+    private static final int ReportPercentStep = 10;
+    private static final Progress Idle = new Progress(null, 0, 0, 0, 0);
+
+    private final AnotherCurrency plugin;
+    private final File stateFile;
+    private final AtomicFileWriter writer;
+    private final Map<UUID, long[]> planned;
+    private final Set<UUID> borrowed;
+    private final Object runLock;
+    private final AtomicReference<Progress> progress;
+    private EconomyOperation operation;
+    private ScheduledTask task;
+    private List<UUID> pending;
+    private int position;
+    private UUID cursor;
+    private int checked;
+    private int changed;
+    private int clamped;
+    private int total;
+    private int reported;
+
+    /**
+     * Progress of the running operation.
+     * @param operation the running operation, null if none is running
+     * @param checked number of players checked so far
+     * @param total number of players to check, 0 until the first run lists them
+     * @param changed number of players whose balances were changed
+     * @param clamped number of changed players whose new balance was clamped into the currency limit
+     */
+    public record Progress(EconomyOperation operation, int checked, int total, int changed, int clamped) {}
+
+    /**
+     * Initialize economy operator instance.
+     * @param plugin the ANC plugin's instance
+     */
+    public EconomyOperator(AnotherCurrency plugin) {
+        this.plugin = plugin;
+        stateFile = new File(plugin.getDataFolder(), StateFileName);
+        writer = new AtomicFileWriter(plugin.getLogger());
+        planned = new LinkedHashMap<>();
+        borrowed = new HashSet<>();
+        runLock = new Object();
+        progress = new AtomicReference<>(Idle);
+    }
+
+    /**
+     * Continue an operation stopped by a restart, if there is one.
+     */
+    public void resume() {
+        synchronized (runLock) {
+            if (!stateFile.exists()) return;
+
+            load();
+        }
+
+        if (progress.get().operation() != null) start();
+    }
+
+    private void load() {
+        YamlConfiguration state = YamlConfiguration.loadConfiguration(stateFile);
+        try {
+            String target = state.getString(TargetKey, "");
+            operation = new EconomyOperation(EconomyOperation.Kind.valueOf(state.getString(KindKey, "")),
+                    state.getString(CurrencyKey, ""), target.isEmpty() ? null : target, state.getDouble(ValueKey, 0D));
+
+            String savedCursor = state.getString(CursorKey, "");
+            cursor = savedCursor.isEmpty() ? null : UUID.fromString(savedCursor);
+            for (String entry : state.getStringList(PlannedKey)) {
+                String[] parts = entry.split(":");
+                long[] balances = new long[parts.length - 1];
+                for (int i = 0; i < balances.length; i++) balances[i] = Long.parseLong(parts[i + 1]);
+                planned.put(UUID.fromString(parts[0]), balances);
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            plugin.getLogger().log(Level.SEVERE, String.format("Unreadable %s, the economy operation it holds is not resumed.", StateFileName), e);
+            operation = null;
+            cursor = null;
+            planned.clear();
+            return;
+        }
+
+        checked = state.getInt(CheckedKey, 0);
+        changed = state.getInt(ChangedKey, 0);
+        clamped = state.getInt(ClampedKey, 0);
+        publish();
+        plugin.getLogger().info(String.format("Resuming economy operation %s after %d players.", operation.describe(), checked));
+    }
+
+    /**
+     * Start applying an operation to every stored player, only one operation runs at a time.
+     * The operation is saved and started by the background task, a failure to save it is logged there.
+     * @param operation the operation to apply
+     * @return false if another operation is still running
+     */
+    public boolean submit(EconomyOperation operation) {
+        Progress current = progress.get();
+        if (current.operation() != null || !progress.compareAndSet(current, new Progress(operation, 0, 0, 0, 0))) return false;
+
+        start();
+        return true;
+    }
+
+    /**
+     * Get the progress of the running operation, as published after its last batch.
+     * @return a snapshot of the progress
+     */
+    public Progress progress() {
+        return progress.get();
+    }
+
+    /**
+     * Start the operation task, the rate is read on every run so reloaded config applies right away.
+     */
+    public synchronized void start() {
+        if (task != null && !task.isCancelled()) return;
+        task = plugin.scheduler().runAsyncTimer(this::run, IntervalTick, IntervalTick);
+    }
+
+    /**
+     * Stop the operation task, the progress is kept for a later start or the next startup.
+     */
+    public synchronized void stop() {
+        if (task != null && !task.isCancelled()) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    private void run() {
+        synchronized (runLock) {
+            if (operation == null && !begin()) return;
+
+            runBatch();
+        }
+    }
+
+    /**
+     * Take over a submitted operation and save it before any player is changed.
+     * @return false if nothing was submitted or it could not be saved
+     */
+    private boolean begin() {
+        EconomyOperation submitted = progress.get().operation();
+        if (submitted == null) return false;
+
+        operation = submitted;
+        pending = null;
+        cursor = null;
+        checked = 0;
+        changed = 0;
+        clamped = 0;
+        total = 0;
+        reported = 0;
+        if (!saveState()) {
+            operation = null;
+            stop();
+            progress.set(Idle);
+            return false;
+        }
+
+        plugin.getLogger().info(String.format("Starting economy operation %s for every player in the background.", submitted.describe()));
+        return true;
+    }
+
+    private void runBatch() {
+        for (String codeName : operation.currencies()) {
+            if (plugin.currencyManager().registry().contains(codeName)) continue;
+
+            plugin.getLogger().warning(String.format("Currency %s no longer exists, stopped economy operation %s after %d players.",
+                    codeName, operation.describe(), checked));
+            finish();
+            return;
+        }
+
+        PlayerDataManager playerDataManager = plugin.playerDataManager();
+        CurrencyLimit limit = plugin.configManager().currencyLimit();
+        if (!planned.isEmpty()) {
+            // A batch planned before a restart, its players may have been changed and saved or not
+            borrowed.addAll(planned.keySet());
+            apply(playerDataManager, limit, true);
+        }
+
+        if (pending == null) {
+            pending = new ArrayList<>(playerDataManager.store().uuids());
+            pending.sort(null);
+            if (cursor != null) pending.removeIf(uuid -> uuid.compareTo(cursor) <= 0);
+            position = 0;
+            total = checked + pending.size();
+        }
+
+        int rate = plugin.configManager().players().storage().operationRate();
+        int end = Math.min(pending.size(), position + rate);
+        if (position < end) {
+            if (!plan(playerDataManager, pending.subList(position, end))) return;
+
+            position = end;
+            apply(playerDataManager, limit, false);
+        }
+
+        publish();
+        if (position < pending.size()) {
+            report();
+            return;
+        }
+
+        plugin.getLogger().info(String.format("Finished economy operation %s, changed %d of %d players, %d clamped into the currency limit.",
+                operation.describe(), changed, checked, clamped));
+        finish();
+    }
+
+    /**
+     * Load a batch in parallel and save the balances each change is planned from, before changing anyone.
+     * @return false if the plan could not be saved, the batch is then planned again on the next run
+     */
+    private boolean plan(PlayerDataManager playerDataManager, List<UUID> batch) {
+        Map<UUID, CompletableFuture<PlayerData>> loads = new LinkedHashMap<>();
+        for (UUID uuid : batch) {
+            if (!playerDataManager.isLoaded(uuid)) borrowed.add(uuid);
+            loads.put(uuid, playerDataManager.preload(uuid, playerDataManager.accounts().name(uuid)));
+        }
+
+        for (Map.Entry<UUID, CompletableFuture<PlayerData>> entry : loads.entrySet()) {
+            try {
+                PlayerData data = entry.getValue().join();
+                if (data.hasBalance(operation.currency())) planned.put(entry.getKey(), operation.balances(data));
+            } catch (RuntimeException e) {
+                plugin.getLogger().log(Level.WARNING, String.format("Failed to load %s, economy operation %s skipped them.", entry.getKey(), operation.describe()), e);
+            }
+        }
+
+        UUID previousCursor = cursor;
+        cursor = batch.get(batch.size() - 1);
+        checked += batch.size();
+        if (saveState()) return true;
+
+        cursor = previousCursor;
+        checked -= batch.size();
+        planned.clear();
+        for (UUID uuid : borrowed) playerDataManager.evict(uuid);
+        borrowed.clear();
+        return false;
+    }
+
+    /**
+     * Change every planned player whose balances still match the plan, save them, then clear the plan.
+     * A mismatch while recovering means the change was already made before the restart,
+     * otherwise the player was changed by gameplay in between and is planned again.
+     */
+    private void apply(PlayerDataManager playerDataManager, CurrencyLimit limit, boolean recovering) {
+        Map<UUID, PlayerData> changedData = new LinkedHashMap<>();
+        for (int attempt = 1; !planned.isEmpty(); attempt++) {
+            Map<UUID, long[]> conflicts = new LinkedHashMap<>();
+            for (Map.Entry<UUID, long[]> entry : planned.entrySet()) {
+                UUID uuid = entry.getKey();
+                try {
+                    PlayerData data;
+                    EconomyOperation.Outcome outcome;
+                    do {
+                        data = playerDataManager.preload(uuid, playerDataManager.accounts().name(uuid)).join();
+                        outcome = playerDataManager.adjust(data, operation, entry.getValue(), limit);
+                    } while (outcome == EconomyOperation.Outcome.EVICTED);
+
+                    switch (outcome) {
+                        case APPLIED -> changedData.put(uuid, data);
+                        case CLAMPED -> {
+                            changedData.put(uuid, data);
+                            clamped++;
+                        }
+                        case CONFLICT -> {
+                            if (!recovering) conflicts.put(uuid, operation.balances(data));
+                        }
+                        default -> {}
+                    }
+                } catch (RuntimeException e) {
+                    plugin.getLogger().log(Level.WARNING, String.format("Failed to change %s, economy operation %s skipped them.", uuid, operation.describe()), e);
+                }
+            }
+
+            planned.clear();
+            if (conflicts.isEmpty()) break;
+            if (attempt == MaxAttempts) {
+                plugin.getLogger().warning(String.format("%d players kept changing during economy operation %s, they were skipped.", conflicts.size(), operation.describe()));
+                break;
+            }
+
+            planned.putAll(conflicts);
+            if (!saveState()) {
+                plugin.getLogger().warning(String.format("%d players changed during economy operation %s could not be planned again, they were skipped.", conflicts.size(), operation.describe()));
+                planned.clear();
+            }
+        }
+
+        changed += changedData.size();
+        if (!playerDataManager.saveNow(changedData.values())) {
+            plugin.getLogger().warning(String.format("Failed to save %d players changed by economy operation %s, they are saved later.", changedData.size(), operation.describe()));
+        }
+
+        saveState();
+        // Players loaded only for the operation should not crowd out players in use
+        for (UUID uuid : borrowed) playerDataManager.evict(uuid);
+        borrowed.clear();
+    }
+
+    private void finish() {
+        operation = null;
+        planned.clear();
+        borrowed.clear();
+        pending = null;
+        cursor = null;
+        if (stateFile.exists() && !stateFile.delete()) {
+            plugin.getLogger().warning(String.format("Failed to delete %s, the finished economy operation will run again on next startup.", StateFileName));
+        }
+
+        // Stop before going idle, so the task of an operation submitted right after is not the one cancelled
+        stop();
+        progress.set(Idle);
+    }
+
+    private void publish() {
+        progress.set(new Progress(operation, checked, total, changed, clamped));
+    }
+
+    private void report() {
+        int percent = total > 0 ? (int) (checked * 100L / total) : 0;
+        if (percent - reported < ReportPercentStep) return;
+
+        reported = percent - percent % ReportPercentStep;
+        plugin.getLogger().info(String.format("Economy operation %s: %d%% (%d of %d players checked, %d changed).",
+                operation.describe(), percent, checked, total, changed));
+    }
+
+    private boolean saveState() {
+        YamlConfiguration state = new YamlConfiguration();
+        state.set(KindKey, operation.kind().name());
+        state.set(CurrencyKey, operation.currency());
+        state.set(TargetKey, operation.target() != null ? operation.target() : "");
+        state.set(ValueKey, operation.value());
+        state.set(CursorKey, cursor != null ? cursor.toString() : "");
+        state.set(CheckedKey, checked);
+        state.set(ChangedKey, changed);
+        state.set(ClampedKey, clamped);
+
+        List<String> entries = new ArrayList<>(planned.size());
+        for (Map.Entry<UUID, long[]> entry : planned.entrySet()) {
+            StringBuilder line = new StringBuilder(entry.getKey().toString());
+            for (long units : entry.getValue()) line.append(':').append(units);
+            entries.add(line.toString());
+        }
+        state.set(PlannedKey, entries);
+
+        try {
+            writer.write(stateFile.toPath(), state.saveToString());
+            writer.sync(stateFile.getParentFile().toPath());
+            return true;
+        } catch (IOException e) {
+            plugin.getLogger().log(Level.SEVERE, String.format("Failed to save %s, the economy operation waits until its progress can be saved.", StateFileName), e);
+            return false;
+        }
+    }
+}
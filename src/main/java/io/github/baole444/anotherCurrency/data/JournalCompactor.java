@@ -0,0 +1,39 @@
+package io.github.baole444.anotherCurrency.data;
+
+import io.github.baole444.anotherCurrency.AnotherCurrency;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+
+/**
+ * Background task folding the transaction journal back into player data.
+ */
+public class JournalCompactor {
+    private final AnotherCurrency plugin;
+    private ScheduledTask task;
+
+    /**
+     * Initialize journal compactor instance.
+     * @param plugin the ANC plugin's instance
+     */
+    public JournalCompactor(AnotherCurrency plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Start the compaction task.
+     */
+    public void start() {
+        if (task != null && !task.isCancelled()) return;
+        long intervalTick = plugin.configManager().players().persistence().compactionInterval() * 20L;
+        task = plugin.scheduler().runAsyncTimer(() -> plugin.playerDataManager().compactJournal(), intervalTick, intervalTick);
+    }
+
+    /**
+     * Stop the compaction task.
+     */
+    public void stop() {
+        if (task != null && !task.isCancelled()) {
+            task.cancel();
+            task = null;
+        }
+    }
+}
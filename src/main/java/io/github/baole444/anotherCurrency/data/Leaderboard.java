@@ -0,0 +1,349 @@
+package io.github.baole444.anotherCurrency.data;
+
+import io.github.baole444.anotherCurrency.configurations.Currency;
+import io.github.baole444.anotherCurrency.configurations.CurrencyHandle;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Per-currency ranking of player balances, online and offline.
+ * <p>
+ * Each currency is ranked by an order-statistic treap ordered by balance, highest first, then by unique identifier.
+ * Updating a balance, the rank of a player and the first entry of a page all take logarithmic time.
+ * The index is seeded from storage once and kept up to date by {@link PlayerDataManager}.
+ * Balance changes only flag the changed player, the flagged balances are ranked right before the next query,
+ * so changing a balance never waits on the ranking of its currency.
+ */
+public class Leaderboard {
+    private final ConcurrentHashMap<CurrencyHandle, RankTree> trees;
+    private final Runnable refresh;
+
+    /**
+     * A ranked balance.
+     * @param rank the position in the ranking, starting from 1
+     * @param uuid the unique identifier of the player
+     * @param units the balance in minor units
+     */
+    public record Entry(int rank, UUID uuid, long units) {}
+
+    /**
+     * Initialize an empty leaderboard.
+     */
+    public Leaderboard() {
+        this(() -> {});
+    }
+
+    /**
+     * Initialize an empty leaderboard brought up to date before each query.
+     * @param refresh action ranking the balances changed since the last query
+     */
+    Leaderboard(Runnable refresh) {
+        trees = new ConcurrentHashMap<>();
+        this.refresh = refresh;
+    }
+
+    /**
+     * Set the ranked balance of a player.
+     * @param currency the handle of the currency
+     * @param uuid the unique identifier of the player
+     * @param units the balance in minor units
+     */
+    public void update(CurrencyHandle currency, UUID uuid, long units) {
+        tree(currency).put(uuid, units, true);
+    }
+
+    /**
+     * Set the ranked balance of a player only if the player is not ranked yet,
+     * used when seeding so balances changed since the seed started are not overwritten.
+     * @param currency the handle of the currency
+     * @param uuid the unique identifier of the player
+     * @param units the balance in minor units
+     */
+    public void seed(CurrencyHandle currency, UUID uuid, long units) {
+        tree(currency).put(uuid, units, false);
+    }
+
+    /**
+     * Remove a player from the ranking of a currency.
+     * @param currency the handle of the currency
+     * @param uuid the unique identifier of the player
+     */
+    public void remove(CurrencyHandle currency, UUID uuid) {
+        RankTree tree = trees.get(currency);
+        if (tree != null) tree.remove(uuid);
+    }
+
+    /**
+     * Remove a player from the ranking of every currency.
+     * @param uuid the unique identifier of the player
+     */
+    public void removeAll(UUID uuid) {
+        for (RankTree tree : trees.values()) tree.remove(uuid);
+    }
+
+    /**
+     * Convert every ranked balance of a currency to a new scale, the order of the ranking is kept.
+     * @param currency the handle of the currency
+     * @param fromScale the scale the balances are in
+     * @param toScale the new scale
+     */
+    public void rescale(CurrencyHandle currency, int fromScale, int toScale) {
+        RankTree tree = trees.get(currency);
+        if (tree != null && fromScale != toScale) tree.rescale(fromScale, toScale);
+    }
+
+    /**
+     * Remove the ranking of a currency entirely.
+     * @param currency the handle of the currency
+     */
+    public void clear(CurrencyHandle currency) {
+        trees.remove(currency);
+    }
+
+    /**
+     * Get the highest balances of a currency.
+     * @param currency the handle of the currency
+     * @param count maximum number of entries
+     * @return the entries, highest first
+     */
+    public List<Entry> top(CurrencyHandle currency, int count) {
+        return range(currency, 0, count);
+    }
+
+    /**
+     * Get a page of the ranking of a currency.
+     * @param currency the handle of the currency
+     * @param page the page number, starting from 1
+     * @param pageSize number of entries per page
+     * @return the entries of the page, highest first, empty if the page is past the end
+     */
+    public List<Entry> page(CurrencyHandle currency, int page, int pageSize) {
+        if (page < 1 || pageSize < 1) return List.of();
+        return range(currency, (int) Math.min(Integer.MAX_VALUE, (long) (page - 1) * pageSize), pageSize);
+    }
+
+    /**
+     * Get the rank of a player for a currency.
+     * @param currency the handle of the currency
+     * @param uuid the unique identifier of the player
+     * @return the rank starting from 1, or -1 if the player is not ranked
+     */
+    public int rank(CurrencyHandle currency, UUID uuid) {
+        refresh.run();
+        RankTree tree = trees.get(currency);
+        return tree != null ? tree.rank(uuid) : -1;
+    }
+
+    /**
+     * Get the number of ranked players of a currency.
+     * @param currency the handle of the currency
+     * @return number of ranked players
+     */
+    public int size(CurrencyHandle currency) {
+        refresh.run();
+        RankTree tree = trees.get(currency);
+        return tree != null ? tree.size() : 0;
+    }
+
+    private List<Entry> range(CurrencyHandle currency, int from, int count) {
+        refresh.run();
+        RankTree tree = trees.get(currency);
+        if (tree == null || count < 1) return List.of();
+        return tree.range(from, count);
+    }
+
+    private RankTree tree(CurrencyHandle currency) {
+        RankTree tree = trees.get(currency);
+        return tree != null ? tree : trees.computeIfAbsent(currency, k -> new RankTree());
+    }
+
+    /**
+     * Order-statistic treap of one currency, every node knows the size of its subtree.
+     */
+    private static final class RankTree {
+        private final Map<UUID, Long> balances = new HashMap<>();
+        private Node root;
+        private Node splitLeft;
+        private Node splitRight;
+
+        private static final class Node {
+            private final UUID uuid;
+            private final long units;
+            private final int priority;
+            private int size;
+            private Node left;
+            private Node right;
+
+            private Node(UUID uuid, long units) {
+                this.uuid = uuid;
+                this.units = units;
+                priority = ThreadLocalRandom.current().nextInt();
+                size = 1;
+            }
+
+            private void resize() {
+                size = 1 + size(left) + size(right);
+            }
+        }
+
+        private synchronized void put(UUID uuid, long units, boolean replace) {
+            Long previous = balances.get(uuid);
+            if (previous != null) {
+                if (!replace || previous == units) return;
+                root = delete(root, previous, uuid);
+            }
+
+            balances.put(uuid, units);
+            root = insert(root, new Node(uuid, units));
+        }
+
+        private synchronized void rescale(int fromScale, int toScale) {
+            root = null;
+            for (Map.Entry<UUID, Long> entry : balances.entrySet()) {
+                long units = Currency.rescale(entry.getValue(), fromScale, toScale);
+                entry.setValue(units);
+                root = insert(root, new Node(entry.getKey(), units));
+            }
+        }
+
+        private synchronized void remove(UUID uuid) {
+            Long previous = balances.remove(uuid);
+            if (previous != null) root = delete(root, previous, uuid);
+        }
+
+        private synchronized int rank(UUID uuid) {
+            Long units = balances.get(uuid);
+            if (units == null) return -1;
+
+            int before = 0;
+            Node node = root;
+            while (node != null) {
+                int compared = compare(units, uuid, node);
+                if (compared == 0) return before + size(node.left) + 1;
+
+                if (compared < 0) {
+                    node = node.left;
+                } else {
+                    before += size(node.left) + 1;
+                    node = node.right;
+                }
+            }
+
+            return -1;
+        }
+
+        private synchronized int size() {
+            return size(root);
+        }
+
+        private synchronized List<Entry> range(int from, int count) {
+            List<Node> nodes = new ArrayList<>(Math.min(count, Math.max(0, size(root) - from)));
+            collect(root, from, count, nodes);
+
+            List<Entry> entries = new ArrayList<>(nodes.size());
+            for (int i = 0; i < nodes.size(); i++) {
+                Node node = nodes.get(i);
+                entries.add(new Entry(from + i + 1, node.uuid, node.units));
+            }
+
+            return entries;
+        }
+
+        private void collect(Node node, int skip, int count, List<Node> out) {
+            if (node == null || out.size() >= count) return;
+
+            int leftSize = size(node.left);
+            if (skip < leftSize) collect(node.left, skip, count, out);
+            if (out.size() >= count) return;
+
+            if (skip <= leftSize) out.add(node);
+            collect(node.right, Math.max(0, skip - leftSize - 1), count, out);
+        }
+
+        private Node insert(Node node, Node inserted) {
+            if (node == null) return inserted;
+
+            if (inserted.priority > node.priority) {
+                split(node, inserted.units, inserted.uuid);
+                inserted.left = splitLeft;
+                inserted.right = splitRight;
+                inserted.resize();
+                return inserted;
+            }
+
+            if (compare(inserted.units, inserted.uuid, node) < 0) node.left = insert(node.left, inserted);
+            else node.right = insert(node.right, inserted);
+            node.resize();
+            return node;
+        }
+
+        private Node delete(Node node, long units, UUID uuid) {
+            if (node == null) return null;
+
+            int compared = compare(units, uuid, node);
+            if (compared == 0) return merge(node.left, node.right);
+
+            if (compared < 0) node.left = delete(node.left, units, uuid);
+            else node.right = delete(node.right, units, uuid);
+            node.resize();
+            return node;
+        }
+
+        /**
+         * Split a subtree into nodes ranked before the key, kept in {@link #splitLeft},
+         * and the rest, kept in {@link #splitRight}.
+         */
+        private void split(Node node, long units, UUID uuid) {
+            if (node == null) {
+                splitLeft = null;
+                splitRight = null;
+                return;
+            }
+
+            if (compare(units, uuid, node) > 0) {
+                split(node.right, units, uuid);
+                node.right = splitLeft;
+                node.resize();
+                splitLeft = node;
+            } else {
+                split(node.left, units, uuid);
+                node.left = splitRight;
+                node.resize();
+                splitRight = node;
+            }
+        }
+
+        private Node merge(Node left, Node right) {
+            if (left == null) return right;
+            if (right == null) return left;
+
+            if (left.priority > right.priority) {
+                left.right = merge(left.right, right);
+                left.resize();
+                return left;
+            }
+
+            right.left = merge(left, right.left);
+            right.resize();
+            return right;
+        }
+
+        /**
+         * Compare a key with a node, a negative result means the key ranks before the node.
+         */
+        private static int compare(long units, UUID uuid, Node node) {
+            int compared = Long.compare(node.units, units);
+            return compared != 0 ? compared : uuid.compareTo(node.uuid);
+        }
+
+        private static int size(Node node) {
+            return node != null ? node.size : 0;
+        }
+    }
+}
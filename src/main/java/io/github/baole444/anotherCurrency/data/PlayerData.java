@@ -1,58 +1,174 @@
 package io.github.baole444.anotherCurrency.data;
 
+import io.github.baole444.anotherCurrency.configurations.Currency;
+import io.github.baole444.anotherCurrency.configurations.CurrencyHandle;
+
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.ObjLongConsumer;
+import java.util.function.ToIntFunction;
 
 /**
  * Player data for currency balances and playtime.
- * @param uuid the unique identifier of the player
- * @param playerName last known name of the player
- * @param balances map of currency code name and balance amount
- * @param playtime tracked playtime in seconds
+ * Balances are kept in minor units of each currency, see {@link Currency#scale()},
+ * in an array indexed by {@link CurrencyHandle#id()}.
+ * Stored balances of currencies not declared since the server started have no handle,
+ * they are kept by code name in the scale they were stored in, so they are saved again unchanged instead of being lost,
+ * and converted to the scale of their currency once it is declared.
+ * <p>
+ * Instances are mutable and compared by identity, the cache relies on telling a replaced instance from the current one.
  */
-public record PlayerData(UUID uuid, String playerName, Map<String, Double> balances, long playtime) {
-    public static final int DataVersion = 1;
+public final class PlayerData {
+    /**
+     * Version 1 stored balances as decimal amounts,
+     * version 2 stores them as minor units together with the scale they were written in.
+     */
+    public static final int DataVersion = 2;
     public static final String DataVersionKey = "data-version";
     public static final String PlayerNameKey = "player-name";
     public static final String BalancesKey = "balances";
+    public static final String ScalesKey = "scales";
     public static final String PlaytimeKey = "playtime";
 
     /**
-     * Compact constructor ensure new player data's balance map is not null.
+     * Marker of a currency the player has no balance of, distinct from a balance of 0.
+     */
+    private static final long NoBalance = Long.MIN_VALUE;
+    private static final long NanosPerSecond = 1_000_000_000L;
+
+    /**
+     * Balance of a currency without a handle.
+     * @param units the balance in minor units
+     * @param scale the scale the balance is in
+     */
+    private record Retained(long units, int scale) {}
+
+    private final UUID uuid;
+    private final String playerName;
+    private volatile AtomicLongArray balances;
+    /**
+     * Balances of currencies without a handle, replaced as a whole on change.
+     */
+    private volatile Map<String, Retained> retained = Map.of();
+    private volatile long playtime;
+    private volatile long playtimeNanos;
+    private volatile long lastAccess;
+    private volatile boolean unranked;
+
+    /**
+     * Create a new {@link PlayerData} with no balance.
      * @param uuid the unique identifier of the player
      * @param playerName last known name of the player
-     * @param balances map of currency code name and balance amount
+     * @param playtime tracked playtime in seconds
      */
-    public PlayerData {
-        if (balances == null) balances = new HashMap<>();
+    public PlayerData(UUID uuid, String playerName, long playtime) {
+        this.uuid = uuid;
+        this.playerName = playerName;
+        this.playtime = playtime;
+        balances = emptyBalances(CurrencyHandle.count());
+        lastAccess = System.nanoTime();
     }
 
     /**
-     * Create a new {@link PlayerData} with empty balance map.
+     * Create a new {@link PlayerData} with no balance and playtime.
      * @param uuid the unique identifier of the player
      * @param playerName last known name of the player
      */
     public PlayerData(UUID uuid, String playerName) {
-        this(uuid, playerName, new HashMap<>(), 0L);
+        this(uuid, playerName, 0L);
+    }
+
+    /**
+     * Get the unique identifier of the player.
+     * @return the player's uuid
+     */
+    public UUID uuid() {
+        return uuid;
+    }
+
+    /**
+     * Get the last known name of the player.
+     * @return the player's name, may be null
+     */
+    public String playerName() {
+        return playerName;
+    }
+
+    /**
+     * Get the balance for a specific currency.
+     * @param currency the handle of the currency
+     * @return the balance in minor units
+     */
+    public long balance(CurrencyHandle currency) {
+        AtomicLongArray current = balances;
+        int id = currency.id();
+        long units = id < current.length() ? current.get(id) : NoBalance;
+        if (units != NoBalance) return units;
+
+        Retained kept = retained.get(currency.codeName());
+        return kept != null ? kept.units() : 0L;
     }
 
     /**
      * Get the balance for a specific currency.
      * @param currencyCode the canonical name of the currency
-     * @return the amount of currency unit
+     * @return the balance in minor units
+     */
+    public long balance(String currencyCode) {
+        CurrencyHandle currency = CurrencyHandle.find(currencyCode);
+        if (currency != null) return balance(currency);
+
+        Retained kept = retained.get(currencyCode);
+        return kept != null ? kept.units() : 0L;
+    }
+
+    /**
+     * Set the balance for a specific currency.
+     * @param currency the handle of the currency
+     * @param units the new balance in minor units
      */
-    public double balance(String currencyCode) {
-        return balances.getOrDefault(currencyCode, 0.0);
+    public void balance(CurrencyHandle currency, long units) {
+        store(currency.id(), units);
     }
 
     /**
      * Set the balance for a specific currency.
      * @param currencyCode the canonical name of the currency
-     * @param amount the new balance amount
+     * @param units the new balance in minor units, in {@link Currency#DefaultScale}
+     * if the currency was not declared since the server started
+     */
+    public void balance(String currencyCode, long units) {
+        CurrencyHandle currency = CurrencyHandle.find(currencyCode);
+        if (currency != null) balance(currency, units);
+        else retain(currencyCode, units, Currency.DefaultScale);
+    }
+
+    /**
+     * Set a balance read from storage, converted to the current scale of its currency.
+     * A currency not declared since the server started has no known scale, its balance is kept in the stored scale.
+     * @param currencyCode the canonical name of the currency
+     * @param units the balance in minor units of the stored scale
+     * @param storedScale the scale the balance was stored in
+     * @param scales lookup of the current scale of a currency by its code name
+     */
+    public void restoreBalance(String currencyCode, long units, int storedScale, ToIntFunction<String> scales) {
+        CurrencyHandle currency = CurrencyHandle.find(currencyCode);
+        if (currency != null) balance(currency, Currency.rescale(units, storedScale, scales.applyAsInt(currencyCode)));
+        else retain(currencyCode, units, storedScale);
+    }
+
+    /**
+     * Get the scale to store a balance in, balances of currencies without a handle keep the scale they were read in.
+     * @param currencyCode the canonical name of the currency
+     * @param scales lookup of the current scale of a currency by its code name
+     * @return the scale of the balance
      */
-    public void balance(String currencyCode, double amount) {
-        balances.put(currencyCode, amount);
+    public int storedScale(String currencyCode, ToIntFunction<String> scales) {
+        Retained kept = retained.get(currencyCode);
+        return kept != null ? kept.scale() : scales.applyAsInt(currencyCode);
     }
 
     /**
@@ -61,7 +177,31 @@ public record PlayerData(UUID uuid, String playerName, Map<String, Double> balan
      * @return true if removed successfully
      */
     public boolean removeBalance(String currencyCode) {
-        return balances.remove(currencyCode) != null;
+        CurrencyHandle currency = CurrencyHandle.find(currencyCode);
+        if (currency != null) {
+            if (!hasBalance(currency)) return false;
+
+            store(currency.id(), NoBalance);
+            return true;
+        }
+
+        if (!retained.containsKey(currencyCode)) return false;
+
+        retain(currencyCode, NoBalance, 0);
+        return true;
+    }
+
+    /**
+     * Check if the player has balance data for a currency or not.
+     * @param currency the handle of the currency
+     * @return true if balance exists
+     */
+    public boolean hasBalance(CurrencyHandle currency) {
+        AtomicLongArray current = balances;
+        int id = currency.id();
+        if (id < current.length() && current.get(id) != NoBalance) return true;
+
+        return retained.containsKey(currency.codeName());
     }
 
     /**
@@ -70,24 +210,170 @@ public record PlayerData(UUID uuid, String playerName, Map<String, Double> balan
      * @return true if balance exists
      */
     public boolean hasBalance(String currencyCode) {
-        return balances.containsKey(currencyCode);
+        CurrencyHandle currency = CurrencyHandle.find(currencyCode);
+        return currency != null ? hasBalance(currency) : retained.containsKey(currencyCode);
     }
 
     /**
-     * Set the playtime for the play data.
+     * Visit every balance the player has, by currency code name.
+     * @param action the action receiving each code name and balance in minor units
+     */
+    public void forEachBalance(ObjLongConsumer<String> action) {
+        AtomicLongArray current = balances;
+        for (int id = 0; id < current.length(); id++) {
+            long units = current.get(id);
+            if (units == NoBalance) continue;
+
+            CurrencyHandle handle = CurrencyHandle.byId(id);
+            if (handle != null) action.accept(handle.codeName(), units);
+        }
+
+        for (Map.Entry<String, Retained> entry : retained.entrySet()) action.accept(entry.getKey(), entry.getValue().units());
+    }
+
+    /**
+     * Get a snapshot of every balance the player has.
+     * @return a new map of currency code name and balance in minor units, see {@link #storedScale(String, ToIntFunction)}
+     */
+    public Map<String, Long> balances() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        forEachBalance(snapshot::put);
+        return snapshot;
+    }
+
+    /**
+     * Get the tracked playtime of the player, including whole seconds accrued but not folded yet.
+     * @return playtime in seconds
+     */
+    public synchronized long playtime() {
+        return playtime + playtimeNanos / NanosPerSecond;
+    }
+
+    /**
+     * Set the playtime for the play data, discarding accrued time not folded yet.
      * @param seconds playtime to set, in second
-     * @return a new {@link PlayerData} of current data with updated playtime
      */
-    public PlayerData playtime(long seconds) {
-        return new PlayerData(uuid, playerName, balances, seconds);
+    public synchronized void playtime(long seconds) {
+        playtime = seconds;
+        playtimeNanos = 0L;
     }
 
     /**
      * Add playtime to the play data
      * @param additionalSeconds playtime to add, in second
-     * @return a new {@link PlayerData} of current data with updated playtime
+     * @return the playtime after adding
+     */
+    public synchronized long addPlaytime(long additionalSeconds) {
+        playtime += additionalSeconds;
+        return playtime();
+    }
+
+    /**
+     * Accrue tracked playtime without rounding, the fraction of a second carries over to the next accrual.
+     * @param nanos elapsed time in nanoseconds
      */
-    public PlayerData addPlaytime(long additionalSeconds) {
-        return new PlayerData(uuid, playerName, balances, playtime + additionalSeconds);
+    public synchronized void accruePlaytime(long nanos) {
+        playtimeNanos += nanos;
+    }
+
+    /**
+     * Move the whole seconds of accrued playtime into the playtime, keeping the remaining fraction of a second.
+     * Called before the data is saved.
+     */
+    public synchronized void foldPlaytime() {
+        long seconds = playtimeNanos / NanosPerSecond;
+        if (seconds == 0L) return;
+
+        playtime += seconds;
+        playtimeNanos -= seconds * NanosPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PlayerData[uuid=%s, playerName=%s, balances=%s, playtime=%d]", uuid, playerName, balances(), playtime());
+    }
+
+    /**
+     * Get the time the data was last read from the cache, used to pick which data to evict.
+     * @return {@link System#nanoTime()} of the last access
+     */
+    long lastAccess() {
+        return lastAccess;
+    }
+
+    /**
+     * Record an access from the cache.
+     */
+    void touch() {
+        lastAccess = System.nanoTime();
+    }
+
+    /**
+     * Flag a balance change the leaderboard has not seen yet, only written if not already flagged.
+     */
+    void markUnranked() {
+        if (!unranked) unranked = true;
+    }
+
+    /**
+     * Clear the flag of a balance change the leaderboard has not seen yet.
+     * @return true if the flag was set
+     */
+    boolean takeUnranked() {
+        if (!unranked) return false;
+
+        unranked = false;
+        return true;
+    }
+
+    /**
+     * Write a slot, growing the array when a currency was registered after this data was created.
+     * Writes are serialized so none is lost to a concurrent grow, reads do not lock.
+     * A balance kept by code name before the currency was declared moves into the slot.
+     */
+    private synchronized void store(int id, long units) {
+        AtomicLongArray current = balances;
+        if (id >= current.length()) {
+            AtomicLongArray grown = emptyBalances(Math.max(id + 1, CurrencyHandle.count()));
+            for (int i = 0; i < current.length(); i++) grown.set(i, current.get(i));
+            balances = grown;
+            current = grown;
+        }
+
+        current.set(id, units);
+        if (!retained.isEmpty()) retain(CurrencyHandle.byId(id).codeName(), NoBalance, 0);
+    }
+
+    /**
+     * Move balances kept without a handle into their slots once their currency is declared, converted to its scale.
+     * @param scales lookup of the current scale of a currency by its code name
+     */
+    synchronized void promoteRetained(ToIntFunction<String> scales) {
+        for (Map.Entry<String, Retained> entry : retained.entrySet()) {
+            CurrencyHandle currency = CurrencyHandle.find(entry.getKey());
+            if (currency == null) continue;
+
+            Retained kept = entry.getValue();
+            store(currency.id(), Currency.rescale(kept.units(), kept.scale(), scales.applyAsInt(entry.getKey())));
+        }
+    }
+
+    /**
+     * Write a balance of a currency without a handle, or remove it with {@link #NoBalance}.
+     */
+    private synchronized void retain(String currencyCode, long units, int scale) {
+        Map<String, Retained> current = retained;
+        if (units == NoBalance && !current.containsKey(currencyCode)) return;
+
+        Map<String, Retained> next = new HashMap<>(current);
+        if (units == NoBalance) next.remove(currencyCode);
+        else next.put(currencyCode, new Retained(units, scale));
+        retained = Map.copyOf(next);
+    }
+
+    private static AtomicLongArray emptyBalances(int length) {
+        AtomicLongArray empty = new AtomicLongArray(length);
+        for (int i = 0; i < length; i++) empty.set(i, NoBalance);
+        return empty;
     }
 }
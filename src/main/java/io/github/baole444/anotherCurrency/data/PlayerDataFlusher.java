@@ -0,0 +1,50 @@
+package io.github.baole444.anotherCurrency.data;
+
+import io.github.baole444.anotherCurrency.AnotherCurrency;
+import io.github.baole444.anotherCurrency.configurations.Players;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+
+/**
+ * Background saving task for write-behind player data.
+ */
+public class PlayerDataFlusher {
+    private static final long CheckIntervalTick = 20L;
+
+    private final AnotherCurrency plugin;
+    private ScheduledTask task;
+
+    /**
+     * Initialize player data flusher instance.
+     * @param plugin the ANC plugin's instance
+     */
+    public PlayerDataFlusher(AnotherCurrency plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Enable write-behind and start the flushing task.
+     */
+    public void start() {
+        if (task != null && !task.isCancelled()) return;
+        plugin.playerDataManager().writeBehind(true);
+        task = plugin.scheduler().runAsyncTimer(this::flush, CheckIntervalTick, CheckIntervalTick);
+    }
+
+    /**
+     * Stop the flushing task, disable write-behind and save all pending player data.
+     */
+    public void stop() {
+        if (task != null && !task.isCancelled()) {
+            task.cancel();
+            task = null;
+        }
+
+        plugin.playerDataManager().writeBehind(false);
+        plugin.playerDataManager().flushDirty(0L, 0L);
+    }
+
+    private void flush() {
+        Players.Persistence config = plugin.configManager().players().persistence();
+        plugin.playerDataManager().flushDirty(config.flushInterval() * 1000L, config.maxStaleness() * 1000L);
+    }
+}
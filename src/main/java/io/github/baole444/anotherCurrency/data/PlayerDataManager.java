@@ -1,86 +1,583 @@
 package io.github.baole444.anotherCurrency.data;
 
+import io.github.baole444.anotherCurrency.configurations.Currency;
+import io.github.baole444.anotherCurrency.configurations.CurrencyHandle;
+import io.github.baole444.anotherCurrency.configurations.CurrencyLimit;
+import io.github.baole444.anotherCurrency.data.history.TransactionEvent;
+import io.github.baole444.anotherCurrency.data.history.TransactionHistory;
+import io.github.baole444.anotherCurrency.data.storage.PlayerDataStore;
+import io.github.baole444.anotherCurrency.data.storage.YamlPlayerDataStore;
+import io.github.baole444.anotherCurrency.metrics.Metrics;
 import org.bukkit.OfflinePlayer;
-import org.bukkit.configuration.ConfigurationSection;
-import org.bukkit.configuration.file.FileConfiguration;
-import org.bukkit.configuration.file.YamlConfiguration;
-import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.Plugin;
 
-import java.io.File;
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.logging.Level;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
 
 /**
- * Manager for player data files.
+ * Manager for cached player data and their storage.
  */
 public class PlayerDataManager {
     /**
      * Name of the directory that store player data.
+     * @deprecated player files belong to the YAML storage, use {@link YamlPlayerDataStore#PlayerDataDirName}
      */
-    public static final String PlayerDataDirName = "players";
+    @Deprecated
+    public static final String PlayerDataDirName = YamlPlayerDataStore.PlayerDataDirName;
 
     /**
      * Format for the name of each player data file, which is {@code {uuid}.yml}.
+     * @deprecated player files belong to the YAML storage and are kept in shard directories,
+     * use {@link YamlPlayerDataStore#PlayerFileNameFormat}
      */
-    public static final String PlayerFileNameFormat = "%s.yml";
-    private final JavaPlugin plugin;
-    private final File playersDir;
+    @Deprecated
+    public static final String PlayerFileNameFormat = YamlPlayerDataStore.PlayerFileNameFormat;
+
+    /**
+     * Number of threads used for loading player data in the background.
+     */
+    public static final int IOThreads = 2;
+
+    /**
+     * Number of locks balance changes are spread over, players on different locks never wait on each other.
+     */
+    public static final int LockStripes = 64;
+
+    /**
+     * Number of threads reading stored player data at once during the startup scan.
+     */
+    public static final int ScanThreads = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+    private final Logger logger;
+    private final PlayerDataStore store;
+    private final TransactionJournal journal;
+    private final ToIntFunction<String> scales;
+    private final Function<String, CurrencyHandle> handles;
+    private final ToIntFunction<CurrencyHandle> handleScales;
+    private final Leaderboard leaderboard;
+    private final AccountIndex accounts;
     private final ConcurrentHashMap<UUID, PlayerData> cache;
+    private final ConcurrentHashMap<UUID, DirtyMark> dirty;
+    private final ConcurrentHashMap<UUID, CompletableFuture<PlayerData>> loading;
+    private final ConcurrentHashMap<UUID, PlayerData> evicting;
+    private final Set<UUID> pinned;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private final ExecutorService ioExecutor;
+    private final ExecutorService scanExecutor;
+    private final Object[] locks;
+    private final Object rankLock;
+    private volatile boolean rankPending;
+    private volatile boolean writeBehind;
+    private volatile TransactionHistory history;
+    private volatile Set<String> purging = Set.of();
+
+    /**
+     * Time a player data was first and last changed since its last save, in nanoseconds.
+     */
+    private static final class DirtyMark {
+        private final long since;
+        private volatile long last;
+
+        private DirtyMark(long now) {
+            since = now;
+            last = now;
+        }
+    }
 
     /**
-     * Initial8ize player data manager instance.
+     * Initialize player data manager instance.
      * @param plugin the ANC plugin's instance
+     * @param store the storage backend of player data
+     * @param scales lookup of the current scale of a currency by its code name
+     * @param handles lookup of the handle of a declared currency by its code name, null if it is not declared
      */
-    public PlayerDataManager(JavaPlugin plugin) {
-        this.plugin = plugin;
-        playersDir = new File(plugin.getDataFolder(), PlayerDataDirName);
+    public PlayerDataManager(Plugin plugin, PlayerDataStore store, ToIntFunction<String> scales, Function<String, CurrencyHandle> handles) {
+        this(plugin, store, null, scales, handles);
+    }
+
+    /**
+     * Initialize player data manager instance with a journal of changes.
+     * @param plugin the ANC plugin's instance
+     * @param store the storage backend of player data
+     * @param journal the opened journal to append changes to, or null to disable journaling
+     * @param scales lookup of the current scale of a currency by its code name
+     * @param handles lookup of the handle of a declared currency by its code name, null if it is not declared
+     */
+    public PlayerDataManager(Plugin plugin, PlayerDataStore store, TransactionJournal journal, ToIntFunction<String> scales, Function<String, CurrencyHandle> handles) {
+        this(plugin, store, journal, scales, handles, currency -> scales.applyAsInt(currency.codeName()));
+    }
+
+    /**
+     * Initialize player data manager instance with a journal of changes and a scale lookup by handle.
+     * @param plugin the ANC plugin's instance
+     * @param store the storage backend of player data
+     * @param journal the opened journal to append changes to, or null to disable journaling
+     * @param scales lookup of the current scale of a currency by its code name
+     * @param handles lookup of the handle of a declared currency by its code name, null if it is not declared
+     * @param handleScales lookup of the current scale of a currency by its handle, used by balance changes
+     */
+    public PlayerDataManager(Plugin plugin, PlayerDataStore store, TransactionJournal journal, ToIntFunction<String> scales, Function<String, CurrencyHandle> handles, ToIntFunction<CurrencyHandle> handleScales) {
+        logger = plugin.getLogger();
+        this.store = store;
+        this.journal = journal;
+        this.scales = scales;
+        this.handles = handles;
+        this.handleScales = handleScales;
+        leaderboard = new Leaderboard(this::rankChanged);
+        accounts = new AccountIndex();
         cache = new ConcurrentHashMap<>();
+        dirty = new ConcurrentHashMap<>();
+        loading = new ConcurrentHashMap<>();
+        evicting = new ConcurrentHashMap<>();
+        pinned = ConcurrentHashMap.newKeySet();
+        hits = new LongAdder();
+        misses = new LongAdder();
+        evictions = new LongAdder();
 
-        if (!playersDir.exists() && !playersDir.mkdirs()) {
-            plugin.getLogger().warning(String.format("Failed to create %s directory, player data might not able to be saved correctly.", PlayerDataDirName));
-        }
+        AtomicInteger threadCount = new AtomicInteger();
+        ioExecutor = Executors.newFixedThreadPool(IOThreads, runnable -> {
+            Thread thread = new Thread(runnable, String.format("AnotherCurrency-IO-%d", threadCount.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Full scans run apart from the I/O threads, so joining players are not loaded behind a scan
+        scanExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "AnotherCurrency-Scan");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        locks = new Object[LockStripes];
+        for (int i = 0; i < LockStripes; i++) locks[i] = new Object();
+        rankLock = new Object();
     }
 
     /**
-     * Get player data, this will load from disk if dat is not cached.
+     * Get player data, this will load from disk if data is not cached.
+     * If a background load of the player is still running, wait for it instead of reading the file again,
+     * and if the player was just evicted and is still being written back, take it back instead.
      * @param player the player to get data from
      * @return the player data, or empty data if not found
      */
     public PlayerData playerData(OfflinePlayer player) {
         UUID uuid = player.getUniqueId();
-        return cache.computeIfAbsent(uuid, k -> {
-           PlayerData loaded = loadPlayerData(player);
-           if (loaded == null) return new PlayerData(uuid, player.getName());
+        PlayerData cached = cache.get(uuid);
+        if (cached != null) {
+            hits.increment();
+            cached.touch();
+            return cached;
+        }
 
-           return loaded;
+        misses.increment();
+        PlayerData evicted = evicting.get(uuid);
+        if (evicted != null) return restore(evicted);
+
+        CompletableFuture<PlayerData> pending = loading.get(uuid);
+        if (pending != null) return pending.join();
+
+        return admit(loadOrCreate(uuid, player.getName()));
+    }
+
+    /**
+     * Load player data into cache on the I/O threads, the disk is not touched on the calling thread.
+     * Loading the same player twice returns the running load.
+     * @param uuid the unique identifier of the player
+     * @param playerName the name to use if the player has no data yet
+     * @return a future completed with the cached player data
+     */
+    public CompletableFuture<PlayerData> preload(UUID uuid, String playerName) {
+        PlayerData cached = cache.get(uuid);
+        if (cached != null) {
+            hits.increment();
+            cached.touch();
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        misses.increment();
+        PlayerData evicted = evicting.get(uuid);
+        if (evicted != null) return CompletableFuture.completedFuture(restore(evicted));
+
+        CompletableFuture<PlayerData> created = new CompletableFuture<>();
+        CompletableFuture<PlayerData> pending = loading.putIfAbsent(uuid, created);
+        if (pending != null) return pending;
+
+        ioExecutor.execute(() -> {
+            try {
+                PlayerData loaded = loadOrCreate(uuid, playerName);
+                if (!loading.remove(uuid, created)) {
+                    created.complete(loaded);
+                    return;
+                }
+
+                created.complete(admit(loaded));
+            } catch (RuntimeException e) {
+                loading.remove(uuid, created);
+                created.completeExceptionally(e);
+            }
         });
+
+        return created;
+    }
+
+    /**
+     * Check if the player data is in the cache.
+     * @param uuid the unique identifier of the player
+     * @return true if cached
+     */
+    public boolean isLoaded(UUID uuid) {
+        return cache.containsKey(uuid);
     }
 
     /**
      * Get the balance of a specific currency from the player.
      * @param player the player to check
      * @param currencyCode the canonical name of the currency
-     * @return the balance amount
+     * @return the balance amount, 0 if the currency is not declared
      */
     public double balance(OfflinePlayer player, String currencyCode) {
-        return playerData(player).balance(currencyCode);
+        CurrencyHandle currency = handles.apply(currencyCode);
+        return currency != null ? balance(player, currency) : 0D;
+    }
+
+    /**
+     * Get the balance of a specific currency from the player.
+     * @param player the player to check
+     * @param currency the handle of the currency
+     * @return the balance amount
+     */
+    public double balance(OfflinePlayer player, CurrencyHandle currency) {
+        return Currency.toAmount(units(player, currency), handleScales.applyAsInt(currency));
     }
 
     /**
      * Set the balance of a specific currency for the player.
      * @param player the player to set
      * @param currencyCode the canonical name of the currency
-     * @param amount the balance amount
-     * @return true if save data successfully
+     * @param amount the balance amount, rounded to the currency's scale
+     * @return true if save data successfully, or if the save is queued when write-behind or journal is enabled,
+     * false if the currency is not declared
      */
     public boolean balance(OfflinePlayer player, String currencyCode, double amount) {
-        PlayerData data = playerData(player);
-        data.balance(currencyCode, amount);
-        return savePlayerData(data);
+        CurrencyHandle currency = handles.apply(currencyCode);
+        if (currency == null) return false;
+
+        return units(player, currency, Currency.toUnits(amount, handleScales.applyAsInt(currency)));
+    }
+
+    /**
+     * Get the exact balance of a specific currency from the player.
+     * @param player the player to check
+     * @param currencyCode the canonical name of the currency
+     * @return the balance in minor units, 0 if the currency is not declared
+     */
+    public long units(OfflinePlayer player, String currencyCode) {
+        CurrencyHandle currency = handles.apply(currencyCode);
+        return currency != null ? units(player, currency) : 0L;
+    }
+
+    /**
+     * Get the exact balance of a specific currency from the player.
+     * @param player the player to check
+     * @param currency the handle of the currency
+     * @return the balance in minor units
+     */
+    public long units(OfflinePlayer player, CurrencyHandle currency) {
+        return playerData(player).balance(currency);
+    }
+
+    /**
+     * Set the exact balance of a specific currency for the player.
+     * @param player the player to set
+     * @param currencyCode the canonical name of the currency
+     * @param units the balance in minor units
+     * @return true if save data successfully, or if the save is queued when write-behind or journal is enabled,
+     * false if the currency is not declared
+     */
+    public boolean units(OfflinePlayer player, String currencyCode, long units) {
+        CurrencyHandle currency = handles.apply(currencyCode);
+        if (currency == null) return false;
+
+        return units(player, currency, units);
+    }
+
+    /**
+     * Set the exact balance of a specific currency for the player.
+     * @param player the player to set
+     * @param currency the handle of the currency
+     * @param units the balance in minor units
+     * @return true if save data successfully, or if the save is queued when write-behind or journal is enabled
+     */
+    public boolean units(OfflinePlayer player, CurrencyHandle currency, long units) {
+        while (true) {
+            PlayerData data = playerData(player);
+            synchronized (lock(data.uuid())) {
+                if (!isCurrent(data)) continue;
+                long previous = data.balance(currency);
+                setBalance(data, currency, units);
+                record(data.uuid(), null, currency, units - previous, units, handleScales.applyAsInt(currency), TransactionEvent.Kind.SET, null);
+            }
+
+            return persist(data);
+        }
+    }
+
+    /**
+     * Add to the balance of a specific currency for the player,
+     * the check against the limit and the change happen atomically.
+     * @param player the player to deposit to
+     * @param currencyCode the canonical name of the currency
+     * @param amount the amount to add, must not be negative
+     * @param limit the limit the new balance must respect
+     * @return the result of the deposit
+     */
+    public TransactionResult deposit(OfflinePlayer player, String currencyCode, double amount, CurrencyLimit limit) {
+        CurrencyHandle currency = handles.apply(currencyCode);
+        if (currency == null) return new TransactionResult(TransactionResult.Status.UNKNOWN_CURRENCY, amount, 0D);
+
+        return deposit(player, currency, amount, limit);
+    }
+
+    /**
+     * Add to the balance of a specific currency for the player,
+     * the check against the limit and the change happen atomically.
+     * @param player the player to deposit to
+     * @param currency the handle of the currency
+     * @param amount the amount to add, must not be negative
+     * @param limit the limit the new balance must respect
+     * @return the result of the deposit
+     */
+    public TransactionResult deposit(OfflinePlayer player, CurrencyHandle currency, double amount, CurrencyLimit limit) {
+        return deposit(player, currency, amount, limit, null);
+    }
+
+    /**
+     * Add to the balance of a specific currency for the player on behalf of another plugin,
+     * the check against the limit and the change happen atomically.
+     * @param player the player to deposit to
+     * @param currency the handle of the currency
+     * @param amount the amount to add, must not be negative
+     * @param limit the limit the new balance must respect
+     * @param requester name of the plugin asking for the deposit, recorded in the history, or null if unknown
+     * @return the result of the deposit
+     */
+    public TransactionResult deposit(OfflinePlayer player, CurrencyHandle currency, double amount, CurrencyLimit limit, String requester) {
+        return change(player, currency, amount, false, limit, requester);
+    }
+
+    /**
+     * Take from the balance of a specific currency of the player,
+     * the check against the limit and the change happen atomically.
+     * @param player the player to withdraw from
+     * @param currencyCode the canonical name of the currency
+     * @param amount the amount to take, must not be negative
+     * @param limit the limit the new balance must respect
+     * @return the result of the withdrawal
+     */
+    public TransactionResult withdraw(OfflinePlayer player, String currencyCode, double amount, CurrencyLimit limit) {
+        CurrencyHandle currency = handles.apply(currencyCode);
+        if (currency == null) return new TransactionResult(TransactionResult.Status.UNKNOWN_CURRENCY, amount, 0D);
+
+        return withdraw(player, currency, amount, limit);
+    }
+
+    /**
+     * Take from the balance of a specific currency of the player,
+     * the check against the limit and the change happen atomically.
+     * @param player the player to withdraw from
+     * @param currency the handle of the currency
+     * @param amount the amount to take, must not be negative
+     * @param limit the limit the new balance must respect
+     * @return the result of the withdrawal
+     */
+    public TransactionResult withdraw(OfflinePlayer player, CurrencyHandle currency, double amount, CurrencyLimit limit) {
+        return withdraw(player, currency, amount, limit, null);
+    }
+
+    /**
+     * Take from the balance of a specific currency of the player on behalf of another plugin,
+     * the check against the limit and the change happen atomically.
+     * @param player the player to withdraw from
+     * @param currency the handle of the currency
+     * @param amount the amount to take, must not be negative
+     * @param limit the limit the new balance must respect
+     * @param requester name of the plugin asking for the withdrawal, recorded in the history, or null if unknown
+     * @return the result of the withdrawal
+     */
+    public TransactionResult withdraw(OfflinePlayer player, CurrencyHandle currency, double amount, CurrencyLimit limit, String requester) {
+        return change(player, currency, amount, true, limit, requester);
+    }
+
+    /**
+     * Move an amount of a currency from one player to another as one atomic change.
+     * @param from the player to take from
+     * @param to the player to give to
+     * @param currencyCode the canonical name of the currency
+     * @param amount the amount to move, must be at least the limit's minimum trade
+     * @param limit the limit both new balances must respect
+     * @return the result of the transfer, with the sender's balance
+     */
+    public TransactionResult transfer(OfflinePlayer from, OfflinePlayer to, String currencyCode, double amount, CurrencyLimit limit) {
+        CurrencyHandle currency = handles.apply(currencyCode);
+        if (currency == null) return new TransactionResult(TransactionResult.Status.UNKNOWN_CURRENCY, amount, 0D);
+
+        return transfer(from, to, currency, amount, limit);
+    }
+
+    /**
+     * Move an amount of a currency from one player to another as one atomic change.
+     * Both players are locked in a fixed order so opposite transfers between the same players cannot deadlock,
+     * and both balances are persisted by a single save or journal record.
+     * If either player is evicted before the locks are taken, the transfer is retried on the reloaded data.
+     * @param from the player to take from
+     * @param to the player to give to
+     * @param currency the handle of the currency
+     * @param amount the amount to move, must be at least the limit's minimum trade
+     * @param limit the limit both new balances must respect
+     * @return the result of the transfer, with the sender's balance
+     */
+    public TransactionResult transfer(OfflinePlayer from, OfflinePlayer to, CurrencyHandle currency, double amount, CurrencyLimit limit) {
+        return transfer(from, to, currency, amount, limit, null);
+    }
+
+    /**
+     * Move an amount of a currency from one player to another as one atomic change on behalf of another plugin.
+     * @param from the player to take from
+     * @param to the player to give to
+     * @param currency the handle of the currency
+     * @param amount the amount to move, must be at least the limit's minimum trade
+     * @param limit the limit both new balances must respect
+     * @param requester name of the plugin asking for the transfer, recorded in the history, or null if unknown
+     * @return the result of the transfer, with the sender's balance
+     * @see #transfer(OfflinePlayer, OfflinePlayer, CurrencyHandle, double, CurrencyLimit)
+     */
+    public TransactionResult transfer(OfflinePlayer from, OfflinePlayer to, CurrencyHandle currency, double amount, CurrencyLimit limit, String requester) {
+        int scale = handleScales.applyAsInt(currency);
+        PlayerData source = playerData(from);
+        if (!Double.isFinite(amount) || amount <= 0) {
+            return new TransactionResult(TransactionResult.Status.INVALID_AMOUNT, amount, Currency.toAmount(source.balance(currency), scale));
+        }
+
+        if (amount < limit.minTrade()) {
+            return new TransactionResult(TransactionResult.Status.BELOW_MIN_TRADE, amount, Currency.toAmount(source.balance(currency), scale));
+        }
+
+        if (source.uuid().equals(to.getUniqueId())) {
+            return new TransactionResult(TransactionResult.Status.SAME_ACCOUNT, amount, Currency.toAmount(source.balance(currency), scale));
+        }
+
+        long units = Currency.toUnits(amount, scale);
+        int sourceStripe = stripe(source.uuid());
+        int targetStripe = stripe(to.getUniqueId());
+        while (true) {
+            if (!isCurrent(source)) source = playerData(from);
+            PlayerData target = playerData(to);
+            long sourceBalance;
+            synchronized (locks[Math.min(sourceStripe, targetStripe)]) {
+                synchronized (locks[Math.max(sourceStripe, targetStripe)]) {
+                    if (!isCurrent(source) || !isCurrent(target)) continue;
+
+                    long sourceCurrent = source.balance(currency);
+                    long targetCurrent = target.balance(currency);
+                    long targetBalance;
+                    try {
+                        sourceBalance = Math.subtractExact(sourceCurrent, units);
+                        targetBalance = Math.addExact(targetCurrent, units);
+                    } catch (ArithmeticException e) {
+                        return new TransactionResult(TransactionResult.Status.EXCEEDS_MAX, amount, Currency.toAmount(sourceCurrent, scale));
+                    }
+
+                    TransactionResult.Status status = checkLimit(sourceBalance, -units, limit, scale);
+                    if (status == TransactionResult.Status.SUCCESS) status = checkLimit(targetBalance, units, limit, scale);
+                    if (status != TransactionResult.Status.SUCCESS) return new TransactionResult(status, amount, Currency.toAmount(sourceCurrent, scale));
+
+                    source.balance(currency, sourceBalance);
+                    target.balance(currency, targetBalance);
+                    markUnranked(source);
+                    markUnranked(target);
+                    markDirty(source.uuid());
+                    markDirty(target.uuid());
+                    if (journal != null) journal.transfer(source.uuid(), target.uuid(), currency.codeName(), sourceBalance, targetBalance, scale);
+                    record(source.uuid(), target.uuid(), currency, -units, sourceBalance, scale, TransactionEvent.Kind.TRANSFER, requester);
+                    record(target.uuid(), source.uuid(), currency, units, targetBalance, scale, TransactionEvent.Kind.TRANSFER, requester);
+                }
+            }
+
+            persist(source, target);
+            return new TransactionResult(TransactionResult.Status.SUCCESS, amount, Currency.toAmount(sourceBalance, scale));
+        }
+    }
+
+    /**
+     * Apply many balance changes as one batch, such as a payroll.
+     * Every player of the batch is locked at once so no other change interleaves with the batch,
+     * each change is checked against the limit on its own and applied in order, and every changed player is saved by one batched write.
+     * Players not cached are loaded in parallel on the I/O threads first.
+     * @param operations the changes to apply, a player may appear more than once
+     * @param limit the limit every new balance must respect
+     * @return the result of each change in the order of the operations, the amount is the operation's delta
+     */
+    public List<TransactionResult> applyAll(List<BalanceOperation> operations, CurrencyLimit limit) {
+        if (operations.isEmpty()) return List.of();
+
+        Map<UUID, CompletableFuture<PlayerData>> pending = new LinkedHashMap<>();
+        for (BalanceOperation operation : operations) {
+            pending.computeIfAbsent(operation.uuid(), uuid -> preload(uuid, accounts.name(uuid)));
+        }
+
+        while (true) {
+            Map<UUID, PlayerData> players = new HashMap<>();
+            for (Map.Entry<UUID, CompletableFuture<PlayerData>> entry : pending.entrySet()) players.put(entry.getKey(), entry.getValue().join());
+
+            int[] stripes = players.keySet().stream().mapToInt(this::stripe).distinct().sorted().toArray();
+            Set<PlayerData> changed = new HashSet<>();
+            List<TransactionResult> results = withLocks(stripes, 0, () -> applyLocked(operations, players, limit, changed));
+            if (results != null) {
+                persistAll(changed);
+                return results;
+            }
+
+            // A player was evicted before the locks were taken, look every player up again
+            pending.replaceAll((uuid, future) -> preload(uuid, accounts.name(uuid)));
+        }
+    }
+
+    /**
+     * Add the same amount of a currency to many players as one batch, such as an event reward for every online player.
+     * @param players the players to change
+     * @param currency the handle of the currency
+     * @param delta the amount to add, negative to take
+     * @param limit the limit every new balance must respect
+     * @return the result of each player in iteration order
+     * @see #applyAll(List, CurrencyLimit)
+     */
+    public List<TransactionResult> applyAll(Collection<? extends OfflinePlayer> players, CurrencyHandle currency, double delta, CurrencyLimit limit) {
+        List<BalanceOperation> operations = new ArrayList<>(players.size());
+        for (OfflinePlayer player : players) operations.add(new BalanceOperation(player.getUniqueId(), currency, delta));
+        return applyAll(operations, limit);
     }
 
     /**
@@ -88,10 +585,13 @@ public class PlayerDataManager {
      * @param player the player to check
      * @param currencyCode the canonical name of the currency
      * @param amount the amount of balance required
-     * @return true if there is enough
+     * @return true if there is enough, false if the currency is not declared
      */
     public boolean hasBalance(OfflinePlayer player, String currencyCode, double amount) {
-        return balance(player, currencyCode) >= amount;
+        CurrencyHandle currency = handles.apply(currencyCode);
+        if (currency == null) return false;
+
+        return units(player, currency) >= Currency.toUnits(amount, handleScales.applyAsInt(currency));
     }
 
     /**
@@ -110,10 +610,17 @@ public class PlayerDataManager {
      * @return true if set successfully
      */
     public boolean playtime(OfflinePlayer player, long seconds) {
-        UUID uuid = player.getUniqueId();
-        PlayerData data = playerData(player).addPlaytime(seconds);
-        cache.put(uuid, data);
-        return true;
+        while (true) {
+            PlayerData data = playerData(player);
+            synchronized (lock(data.uuid())) {
+                if (!isCurrent(data)) continue;
+                data.playtime(seconds);
+                markDirty(data.uuid());
+                if (journal != null) journal.playtime(data.uuid(), seconds);
+            }
+
+            return true;
+        }
     }
 
     /**
@@ -123,10 +630,37 @@ public class PlayerDataManager {
      * @return true if added successfully
      */
     public boolean addPlaytime(OfflinePlayer player, long seconds) {
-        UUID uuid = player.getUniqueId();
-        PlayerData data = playerData(player).addPlaytime(seconds);
-        cache.put(uuid, data);
-        return true;
+        while (true) {
+            PlayerData data = playerData(player);
+            synchronized (lock(data.uuid())) {
+                if (!isCurrent(data)) continue;
+                long playtime = data.addPlaytime(seconds);
+                // Online players are pinned and saved when they quit, only offline changes need a write-back
+                if (!pinned.contains(data.uuid())) markDirty(data.uuid());
+                if (journal != null) journal.playtime(data.uuid(), playtime);
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Credit tracked playtime to a player, kept in memory without rounding and folded into the playtime when the data is saved.
+     * Unlike {@link #addPlaytime(OfflinePlayer, long)} nothing is journaled, online players are saved when they quit.
+     * @param player the player to credit
+     * @param nanos elapsed time in nanoseconds
+     */
+    public void accruePlaytime(OfflinePlayer player, long nanos) {
+        while (true) {
+            PlayerData data = playerData(player);
+            synchronized (lock(data.uuid())) {
+                if (!isCurrent(data)) continue;
+                data.accruePlaytime(nanos);
+                if (!pinned.contains(data.uuid())) markDirty(data.uuid());
+            }
+
+            return;
+        }
     }
 
     /**
@@ -135,21 +669,11 @@ public class PlayerDataManager {
      * @return true if save successfully
      */
     public boolean savePlayerData(PlayerData data) {
-        File playerFile = getPlayerFile(data.uuid());
-        FileConfiguration config = new YamlConfiguration();
-        config.set(PlayerData.DataVersionKey, PlayerData.DataVersion);
-        config.set(PlayerData.PlayerNameKey, data.playerName());
-        config.set(PlayerData.PlaytimeKey, data.playtime());
-        config.createSection(PlayerData.BalancesKey, data.balances());
+        dirty.remove(data.uuid());
+        if (!writePlayerData(data)) return false;
 
-        try {
-            config.save(playerFile);
-            cache.put(data.uuid(), data);
-            return true;
-        } catch (IOException e) {
-            plugin.getLogger().log(Level.SEVERE, String.format("Failed to save player data for %s", data.uuid()), e);
-            return false;
-        }
+        cache.put(data.uuid(), data);
+        return true;
     }
 
     /**
@@ -158,24 +682,24 @@ public class PlayerDataManager {
      * @return the loaded player data or null if the file does not exist
      */
     public PlayerData loadPlayerData(OfflinePlayer player) {
-        UUID uuid = player.getUniqueId();
-        File playerFile = getPlayerFile(uuid);
-
-        if (!playerFile.exists()) return null;
-
-        FileConfiguration config = YamlConfiguration.loadConfiguration(playerFile);
-        String playerName = config.getString(PlayerData.PlayerNameKey, player.getName());
-        long playtime = config.getLong(PlayerData.PlaytimeKey, 0L);
-        Map<String, Double> balances = new HashMap<>();
-        ConfigurationSection balanceSection = config.getConfigurationSection(PlayerData.BalancesKey);
+        return loadPlayerData(player.getUniqueId(), player.getName());
+    }
 
-        if (balanceSection != null) {
-            for (String key : balanceSection.getKeys(false)) {
-                balances.put(key, balanceSection.getDouble(key, 0.0));
-            }
+    /**
+     * Load player data from disk.
+     * @param uuid the unique identifier of the player
+     * @param fallbackName the name to use if the stored data does not have one
+     * @return the loaded player data or null if there is none
+     */
+    public PlayerData loadPlayerData(UUID uuid, String fallbackName) {
+        long startTime = System.nanoTime();
+        PlayerData loaded = store.load(uuid, fallbackName);
+        Metrics.Load.recordSince(startTime);
+        if (loaded != null) {
+            for (String codeName : purging) loaded.removeBalance(codeName);
         }
 
-        return new PlayerData(uuid, playerName, balances, playtime);
+        return loaded;
     }
 
     /**
@@ -184,9 +708,38 @@ public class PlayerDataManager {
      */
     public void unloadPlayerData(OfflinePlayer player) {
         UUID uuid = player.getUniqueId();
+        loading.remove(uuid);
         PlayerData data = cache.remove(uuid);
+        dirty.remove(uuid);
+        if (data == null) return;
+
+        rankRemoved(data);
+        writePlayerData(data);
+    }
+
+    /**
+     * Keep the player data of a player in the cache regardless of the size and idle bounds, such as while they are online.
+     * @param uuid the unique identifier of the player
+     */
+    public void pin(UUID uuid) {
+        pinned.add(uuid);
+    }
 
-        if (data != null) savePlayerData(data);
+    /**
+     * Save the player data of a player and let it be evicted again once it is no longer used.
+     * @param player the player to release
+     */
+    public void release(OfflinePlayer player) {
+        UUID uuid = player.getUniqueId();
+        pinned.remove(uuid);
+        loading.remove(uuid);
+
+        PlayerData data = cache.get(uuid);
+        if (data == null) return;
+
+        dirty.remove(uuid);
+        // Keep the change pending so a later flush retries it and an eviction writes it back
+        if (!writePlayerData(data)) markDirty(uuid);
     }
 
     /**
@@ -195,7 +748,10 @@ public class PlayerDataManager {
      * @return true if data file exists
      */
     public boolean hasPlayerData(OfflinePlayer player) {
-        return getPlayerFile(player.getUniqueId()).exists();
+        UUID uuid = player.getUniqueId();
+        if (accounts.ready()) return accounts.exists(uuid);
+
+        return store.exists(uuid);
     }
 
     /**
@@ -206,26 +762,357 @@ public class PlayerDataManager {
     public boolean deletePlayerData(OfflinePlayer player) {
         UUID uuid = player.getUniqueId();
         cache.remove(uuid);
-        File playerFile = getPlayerFile(uuid);
-        if (playerFile.exists()) return playerFile.delete();
+        evicting.remove(uuid);
+        dirty.remove(uuid);
+        leaderboard.removeAll(uuid);
+        accounts.remove(uuid);
+        if (journal != null) journal.deleted(uuid);
+        return store.delete(uuid);
+    }
 
+    /**
+     * Save all cached player data to disk, the data stays dirty if the save fails.
+     * @return true if saved successfully
+     */
+    public boolean saveAll() {
+        List<PlayerData> snapshot = new ArrayList<>(cache.values());
+        for (PlayerData data : snapshot) dirty.remove(data.uuid());
+
+        if (!writeAll(snapshot)) {
+            for (PlayerData data : snapshot) markDirty(data.uuid());
+            logger.severe(String.format("Failed to save %d player data.", snapshot.size()));
+            return false;
+        }
+
+        logger.info(String.format("Saved %d player data.", snapshot.size()));
         return true;
     }
 
     /**
-     * Save all cached player data to disk.
+     * Save all cached player data to disk and clear cache, the cache is kept if the save fails.
      */
-    public void saveAll() {
-        for (PlayerData data : cache.values()) savePlayerData(data);
-        plugin.getLogger().info(String.format("Saved %d player data.", cache.size()));
+    public void clearCache() {
+        if (saveAll()) cache.clear();
     }
 
     /**
-     * Save all cached player data to disk and clear cache.
+     * Stop the I/O threads waiting for running loads to finish,
+     * then save evicted data still waiting to be written back, save and clear the cache and close the storage.
      */
-    public void clearCache() {
-        saveAll();
-        cache.clear();
+    public void shutdown() {
+        scanExecutor.shutdownNow();
+        ioExecutor.shutdown();
+        try {
+            if (!ioExecutor.awaitTermination(5L, TimeUnit.SECONDS)) ioExecutor.shutdownNow();
+        } catch (InterruptedException e) {
+            ioExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        compactJournal();
+        // Write-backs still queued were dropped with the I/O threads, write the evicted data here instead
+        List<PlayerData> evicted = new ArrayList<>(evicting.values());
+        if (!evicted.isEmpty() && !writeAll(evicted)) {
+            logger.severe(String.format("Failed to save %d evicted player data on shutdown.", evicted.size()));
+        }
+        evicting.clear();
+        clearCache();
+        if (journal != null) journal.close();
+        if (history != null) history.close();
+        store.close();
+    }
+
+    /**
+     * Fold the journal into player data, every cached player changed since the last compaction is saved
+     * and the journal segments holding their changes are deleted.
+     * @return true if compacted successfully or the journal is disabled
+     */
+    public boolean compactJournal() {
+        if (journal == null) return true;
+
+        List<TransactionJournal.Segment> segments = journal.rotate();
+        Map<UUID, PlayerData> snapshot = new LinkedHashMap<>();
+        for (TransactionJournal.Segment segment : segments) {
+            for (UUID uuid : segment.touched()) {
+                PlayerData data = cached(uuid);
+                if (data != null) snapshot.put(uuid, data);
+            }
+        }
+
+        for (UUID uuid : snapshot.keySet()) dirty.remove(uuid);
+        if (!writeAll(snapshot.values())) {
+            // Keep the players dirty so the flusher retries and an eviction writes them back instead of dropping them
+            for (UUID uuid : snapshot.keySet()) markDirty(uuid);
+            logger.warning("Failed to compact the journal, it will be retried on the next compaction.");
+            return false;
+        }
+
+        journal.compacted(segments);
+        return true;
+    }
+
+    /**
+     * Scan every stored player in parallel into the account index and the leaderboard, without filling the cache.
+     * The scan runs on its own thread, loads and write-backs of single players on the I/O threads do not wait for it.
+     * Accounts saved and balances changed since the scan started are kept as they are.
+     * @return a future completed with the number of players read
+     */
+    public CompletableFuture<Integer> indexAccounts() {
+        return CompletableFuture.supplyAsync(() -> {
+            int scanned = store.scan(ScanThreads, stored -> {
+                UUID uuid = stored.uuid();
+                PlayerData cached = cached(uuid);
+                PlayerData data = cached != null ? cached : stored;
+
+                accounts.seed(uuid, data.playerName());
+                Set<String> removed = purging;
+                data.forEachBalance((code, units) -> {
+                    CurrencyHandle currency = handles.apply(code);
+                    if (currency != null && !removed.contains(code)) leaderboard.seed(currency, uuid, units);
+                });
+            });
+
+            accounts.markReady();
+            return scanned;
+        }, scanExecutor);
+    }
+
+    /**
+     * Swap in new currency definitions while keeping the cache warm.
+     * Every lock is held while the definitions are swapped, so no balance change sees the swap half done,
+     * and balances held in memory of currencies whose scale changed are converted to the new scale.
+     * @param swap the action replacing the currency definitions, it should not touch the disk
+     * @param previousScales the scale of every known currency before the swap
+     * @return code names of the currencies whose scale changed
+     */
+    public Set<String> swapCurrencies(Runnable swap, Map<String, Integer> previousScales) {
+        int[] stripes = IntStream.range(0, LockStripes).toArray();
+        return withLocks(stripes, 0, () -> {
+            swap.run();
+            for (PlayerData data : cache.values()) data.promoteRetained(scales);
+            for (PlayerData data : evicting.values()) data.promoteRetained(scales);
+
+            // Rank pending changes first, the ranking is rescaled as a whole below
+            rankChanged();
+            Set<String> rescaled = new HashSet<>();
+            for (Map.Entry<String, Integer> entry : previousScales.entrySet()) {
+                int fromScale = entry.getValue();
+                int toScale = scales.applyAsInt(entry.getKey());
+                if (fromScale == toScale) continue;
+
+                CurrencyHandle currency = CurrencyHandle.find(entry.getKey());
+                if (currency == null) continue;
+
+                for (PlayerData data : cache.values()) rescale(data, currency, fromScale, toScale);
+                for (PlayerData data : evicting.values()) rescale(data, currency, fromScale, toScale);
+                leaderboard.rescale(currency, fromScale, toScale);
+                rescaled.add(entry.getKey());
+            }
+
+            return rescaled;
+        });
+    }
+
+    /**
+     * Bring the leaderboard in line with currencies removed or added by a reload, on the scan thread.
+     * Rankings of removed currencies are dropped, and stored players are scanned again to rank added currencies.
+     * Balances of removed currencies are kept in player data.
+     * @param removed code names of the currencies no longer declared
+     * @param added code names of the currencies newly declared
+     * @return a future completed once reconciled
+     */
+    public CompletableFuture<Void> reconcileCurrencies(Collection<String> removed, Collection<String> added) {
+        return CompletableFuture.runAsync(() -> {
+            for (String codeName : removed) {
+                CurrencyHandle currency = CurrencyHandle.find(codeName);
+                if (currency != null) leaderboard.clear(currency);
+            }
+            if (added.isEmpty()) return;
+
+            Set<String> codes = Set.copyOf(added);
+            store.scan(ScanThreads, stored -> {
+                UUID uuid = stored.uuid();
+                PlayerData cached = cached(uuid);
+                PlayerData data = cached != null ? cached : stored;
+
+                data.forEachBalance((code, units) -> {
+                    CurrencyHandle currency = handles.apply(code);
+                    if (currency != null && codes.contains(code)) leaderboard.seed(currency, uuid, units);
+                });
+            });
+        }, scanExecutor);
+    }
+
+    /**
+     * Get the index of every stored account.
+     * @return the account index
+     */
+    public AccountIndex accounts() {
+        return accounts;
+    }
+
+    /**
+     * Get the balance ranking of every currency.
+     * @return the leaderboard
+     */
+    public Leaderboard leaderboard() {
+        return leaderboard;
+    }
+
+    /**
+     * Get the storage backend of player data.
+     * @return the player data store
+     */
+    public PlayerDataStore store() {
+        return store;
+    }
+
+    /**
+     * Rewrite the stored data of a player in the current data version,
+     * cached players are skipped since their next save writes the current version anyway.
+     * @param uuid the unique identifier of the player
+     * @return true if the stored data was rewritten
+     */
+    public boolean upgradeStored(UUID uuid) {
+        if (cached(uuid) != null) return false;
+        return store.upgrade(uuid);
+    }
+
+    /**
+     * Set the removed currencies being purged, their rankings are cleared and their balances are dropped from player data as it is loaded.
+     * @param codeNames canonical names of the removed currencies
+     */
+    public void purging(Collection<String> codeNames) {
+        purging = Set.copyOf(codeNames);
+        for (String codeName : codeNames) {
+            // A currency declared again keeps its ranking, it is taken out of the purge on its next run
+            if (handles.apply(codeName) != null) continue;
+
+            CurrencyHandle currency = CurrencyHandle.find(codeName);
+            if (currency != null) leaderboard.clear(currency);
+        }
+    }
+
+    /**
+     * Get the removed currencies being purged.
+     * @return canonical names of the removed currencies
+     */
+    public Set<String> purging() {
+        return purging;
+    }
+
+    /**
+     * Drop the balances of removed currencies from a player, in memory and in storage.
+     * A cached player is purged in memory only, balances its stored copy still holds were dropped and marked dirty when it was cached.
+     * An uncached player holding none of them is only read. Otherwise the player is brought through the cache,
+     * so the rewrite never races a concurrent load or save, and is evicted again afterward unless it was already cached.
+     * @param uuid the unique identifier of the player
+     * @param codeNames canonical names of the removed currencies
+     * @return true if the player held a balance of any of them
+     */
+    public boolean purgeBalances(UUID uuid, Collection<String> codeNames) {
+        boolean wasCached = cache.containsKey(uuid);
+        boolean storedHeld = false;
+        if (cached(uuid) == null) {
+            PlayerData stored = loadStored(uuid, null);
+            storedHeld = stored != null && codeNames.stream().anyMatch(stored::hasBalance);
+            if (!storedHeld && cached(uuid) == null) return false;
+        }
+
+        while (true) {
+            PlayerData data = preload(uuid, accounts.name(uuid)).join();
+            boolean held = storedHeld;
+            synchronized (lock(uuid)) {
+                if (!isCurrent(data)) continue;
+
+                for (String codeName : codeNames) {
+                    if (!data.removeBalance(codeName)) continue;
+
+                    held = true;
+                    if (journal != null) journal.removeBalance(uuid, codeName);
+                }
+
+                // The copy in storage still holds the balances even if loading dropped them from memory
+                if (held) markDirty(uuid);
+            }
+
+            if (!held) return false;
+            if (!wasCached && evict(data)) return true;
+
+            persist(data);
+            return true;
+        }
+    }
+
+    /**
+     * Apply an economy operation to one player, only if its balances are still the ones the change was planned from.
+     * The check and the change happen under the player's lock, so a concurrent change of the player is never overwritten,
+     * it is reported as a conflict instead. New balances are clamped into the limit.
+     * @param data the cached player data, such as from {@link #preload(UUID, String)}
+     * @param operation the operation to apply
+     * @param expected balances of the operation's currencies the change is planned from, in minor units
+     * @param limit the limit new balances are clamped into
+     * @return the outcome of the change, {@link EconomyOperation.Outcome#UNCHANGED} if a currency is no longer declared
+     */
+    public EconomyOperation.Outcome adjust(PlayerData data, EconomyOperation operation, long[] expected, CurrencyLimit limit) {
+        List<String> codes = operation.currencies();
+        CurrencyHandle[] currencies = new CurrencyHandle[codes.size()];
+        for (int i = 0; i < currencies.length; i++) {
+            currencies[i] = handles.apply(codes.get(i));
+            if (currencies[i] == null) return EconomyOperation.Outcome.UNCHANGED;
+        }
+
+        UUID uuid = data.uuid();
+        synchronized (lock(uuid)) {
+            if (!isCurrent(data)) return EconomyOperation.Outcome.EVICTED;
+            if (!data.hasBalance(operation.currency())) return EconomyOperation.Outcome.UNCHANGED;
+
+            long[] current = operation.balances(data);
+            if (!Arrays.equals(current, expected)) return EconomyOperation.Outcome.CONFLICT;
+
+            int[] currencyScales = new int[currencies.length];
+            for (int i = 0; i < currencies.length; i++) currencyScales[i] = handleScales.applyAsInt(currencies[i]);
+            long[] after = operation.apply(current, currencyScales);
+            boolean clamped = false;
+            boolean changed = false;
+            for (int i = 0; i < after.length; i++) {
+                long bounded = clamp(after[i], limit, currencyScales[i]);
+                clamped |= bounded != after[i];
+                if (bounded == current[i]) continue;
+
+                setBalance(data, currencies[i], bounded);
+                record(uuid, null, currencies[i], bounded - current[i], bounded, currencyScales[i], TransactionEvent.Kind.ADJUST, null);
+                changed = true;
+            }
+
+            if (!changed) return EconomyOperation.Outcome.UNCHANGED;
+            return clamped ? EconomyOperation.Outcome.CLAMPED : EconomyOperation.Outcome.APPLIED;
+        }
+    }
+
+    /**
+     * Save player data now even if write-behind or the journal is enabled, and commit the journal,
+     * such as to make a batch of changes durable before recording it as done.
+     * @param data the player data to save
+     * @return true if saved successfully, otherwise the data is left dirty for a later save
+     */
+    public boolean saveNow(Collection<PlayerData> data) {
+        if (journal != null) journal.commit();
+        for (PlayerData entry : data) dirty.remove(entry.uuid());
+        if (writeAll(data)) return true;
+
+        for (PlayerData entry : data) markDirty(entry.uuid());
+        return false;
+    }
+
+    /**
+     * Drop a player from the cache unless they are pinned, writing their data back first if it changed.
+     * @param uuid the unique identifier of the player
+     * @return true if the player is no longer cached
+     */
+    public boolean evict(UUID uuid) {
+        PlayerData data = cache.get(uuid);
+        return data == null || evict(data);
     }
 
     /**
@@ -236,7 +1123,460 @@ public class PlayerDataManager {
         return cache.size();
     }
 
-    private File getPlayerFile(UUID uuid) {
-        return new File(playersDir, String.format(PlayerFileNameFormat, uuid.toString()));
+    /**
+     * Get the hit, miss and eviction counters of the cache.
+     * @return a snapshot of the cache statistics
+     */
+    public CacheStats cacheStats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), cache.size(), pinned.size());
+    }
+
+    /**
+     * Evict unpinned player data idle for longer than the idle timeout,
+     * then the least recently used ones until at most the max size of them are left.
+     * Evicted data with unsaved changes is written back on the I/O threads and stays reachable until it is saved.
+     * @param maxSize maximum number of unpinned player data to keep
+     * @param idleTimeoutMillis time since the last access before evicting, in milliseconds
+     * @return number of player data evicted
+     */
+    public synchronized int evict(int maxSize, long idleTimeoutMillis) {
+        long now = System.nanoTime();
+        long idleTimeout = idleTimeoutMillis * 1_000_000L;
+        List<PlayerData> candidates = new ArrayList<>();
+        int evicted = 0;
+
+        for (PlayerData data : cache.values()) {
+            if (pinned.contains(data.uuid())) continue;
+
+            if (now - data.lastAccess() < idleTimeout) candidates.add(data);
+            else if (evict(data)) evicted++;
+        }
+
+        int excess = candidates.size() - maxSize;
+        if (excess <= 0) return evicted;
+
+        candidates.sort(Comparator.comparingLong(PlayerData::lastAccess));
+        for (int i = 0; i < excess; i++) {
+            if (evict(candidates.get(i))) evicted++;
+        }
+
+        return evicted;
+    }
+
+    /**
+     * Enable or disable write-behind, while enabled balance changes only mark the player data as dirty
+     * and are saved later by {@link #flushDirty(long, long)}.
+     * @param enabled true to enable write-behind
+     */
+    public void writeBehind(boolean enabled) {
+        writeBehind = enabled;
+    }
+
+    /**
+     * Check if write-behind is enabled.
+     * @return true if balance changes are saved in the background
+     */
+    public boolean writeBehind() {
+        return writeBehind;
+    }
+
+    /**
+     * Set the history every balance change is recorded to.
+     * @param history the opened history, or null to stop recording
+     */
+    public void history(TransactionHistory history) {
+        this.history = history;
+    }
+
+    /**
+     * Get the history balance changes are recorded to.
+     * @return the history, or null if recording is disabled
+     */
+    public TransactionHistory history() {
+        return history;
+    }
+
+    /**
+     * Mark a cached player data as changed so it will be saved on the next flush.
+     * @param uuid the unique identifier of the player
+     */
+    public void markDirty(UUID uuid) {
+        long now = System.nanoTime();
+        dirty.compute(uuid, (k, mark) -> {
+            if (mark == null) return new DirtyMark(now);
+
+            mark.last = now;
+            return mark;
+        });
+    }
+
+    /**
+     * Save dirty player data that has been quiet for the flush interval
+     * or has waited longer than the max staleness, repeated changes of the same player are saved once.
+     * The due players are saved as one batch, so the store syncs each directory once per flush rather than once per player.
+     * @param flushIntervalMillis time since the last change before saving, in milliseconds
+     * @param maxStalenessMillis longest time since the first unsaved change before saving, in milliseconds
+     * @return number of player data saved
+     */
+    public synchronized int flushDirty(long flushIntervalMillis, long maxStalenessMillis) {
+        long now = System.nanoTime();
+        long flushInterval = flushIntervalMillis * 1_000_000L;
+        long maxStaleness = maxStalenessMillis * 1_000_000L;
+        List<PlayerData> due = new ArrayList<>();
+
+        for (Map.Entry<UUID, DirtyMark> entry : dirty.entrySet()) {
+            DirtyMark mark = entry.getValue();
+            if (now - mark.last < flushInterval && now - mark.since < maxStaleness) continue;
+
+            // Read the data before taking the mark, an eviction in between then either takes the mark or leaves the data to us
+            PlayerData data = cache.get(entry.getKey());
+            if (!dirty.remove(entry.getKey(), mark)) continue;
+            if (data != null) due.add(data);
+        }
+
+        if (writeAll(due)) return due.size();
+
+        // Keep the changes pending so a later flush retries them and an eviction writes them back
+        for (PlayerData data : due) markDirty(data.uuid());
+        return 0;
+    }
+
+    /**
+     * Get the number of player data waiting to be saved.
+     * @return size of dirty set
+     */
+    public int pendingWrites() {
+        return dirty.size();
+    }
+
+    private TransactionResult change(OfflinePlayer player, CurrencyHandle currency, double amount, boolean withdraw, CurrencyLimit limit, String requester) {
+        int scale = handleScales.applyAsInt(currency);
+        if (!Double.isFinite(amount) || amount < 0) {
+            return new TransactionResult(TransactionResult.Status.INVALID_AMOUNT, amount, Currency.toAmount(playerData(player).balance(currency), scale));
+        }
+
+        long delta = withdraw ? -Currency.toUnits(amount, scale) : Currency.toUnits(amount, scale);
+        while (true) {
+            PlayerData data = playerData(player);
+            long balance;
+            synchronized (lock(data.uuid())) {
+                if (!isCurrent(data)) continue;
+
+                long current = data.balance(currency);
+                try {
+                    balance = Math.addExact(current, delta);
+                } catch (ArithmeticException e) {
+                    TransactionResult.Status status = withdraw ? TransactionResult.Status.INSUFFICIENT_FUNDS : TransactionResult.Status.EXCEEDS_MAX;
+                    return new TransactionResult(status, amount, Currency.toAmount(current, scale));
+                }
+
+                TransactionResult.Status status = checkLimit(balance, delta, limit, scale);
+                if (status != TransactionResult.Status.SUCCESS) return new TransactionResult(status, amount, Currency.toAmount(current, scale));
+
+                setBalance(data, currency, balance);
+                record(data.uuid(), null, currency, delta, balance, scale, withdraw ? TransactionEvent.Kind.WITHDRAW : TransactionEvent.Kind.DEPOSIT, requester);
+            }
+
+            persist(data);
+            return new TransactionResult(TransactionResult.Status.SUCCESS, amount, Currency.toAmount(balance, scale));
+        }
+    }
+
+    /**
+     * Apply a batch while holding the locks of every player in it.
+     * @return the results, or null if a player is no longer the cached one
+     */
+    private List<TransactionResult> applyLocked(List<BalanceOperation> operations, Map<UUID, PlayerData> players, CurrencyLimit limit, Set<PlayerData> changed) {
+        for (PlayerData data : players.values()) {
+            if (!isCurrent(data)) return null;
+        }
+
+        List<TransactionResult> results = new ArrayList<>(operations.size());
+        for (BalanceOperation operation : operations) {
+            PlayerData data = players.get(operation.uuid());
+            CurrencyHandle currency = operation.currency();
+            int scale = handleScales.applyAsInt(currency);
+            long current = data.balance(currency);
+            if (!Double.isFinite(operation.delta())) {
+                results.add(new TransactionResult(TransactionResult.Status.INVALID_AMOUNT, operation.delta(), Currency.toAmount(current, scale)));
+                continue;
+            }
+
+            long delta = Currency.toUnits(operation.delta(), scale);
+            long balance;
+            try {
+                balance = Math.addExact(current, delta);
+            } catch (ArithmeticException e) {
+                TransactionResult.Status status = delta < 0 ? TransactionResult.Status.INSUFFICIENT_FUNDS : TransactionResult.Status.EXCEEDS_MAX;
+                results.add(new TransactionResult(status, operation.delta(), Currency.toAmount(current, scale)));
+                continue;
+            }
+
+            TransactionResult.Status status = checkLimit(balance, delta, limit, scale);
+            if (status != TransactionResult.Status.SUCCESS) {
+                results.add(new TransactionResult(status, operation.delta(), Currency.toAmount(current, scale)));
+                continue;
+            }
+
+            if (delta != 0L) {
+                setBalance(data, currency, balance);
+                record(data.uuid(), null, currency, delta, balance, scale, TransactionEvent.Kind.BATCH, null);
+                changed.add(data);
+            }
+
+            results.add(new TransactionResult(TransactionResult.Status.SUCCESS, operation.delta(), Currency.toAmount(balance, scale)));
+        }
+
+        return results;
+    }
+
+    /**
+     * Run an action holding the given lock stripes, taken in ascending order like every other multi-player change.
+     */
+    private <T> T withLocks(int[] stripes, int index, Supplier<T> action) {
+        if (index == stripes.length) return action.get();
+
+        synchronized (locks[stripes[index]]) {
+            return withLocks(stripes, index + 1, action);
+        }
+    }
+
+    private TransactionResult.Status checkLimit(long balance, long delta, CurrencyLimit limit, int scale) {
+        // Without an enforced minimum a debit can only spend what the player has, it never overdraws the balance
+        if (delta < 0 && balance < 0 && (limit.hasNoLimit() || !limit.enableMin())) return TransactionResult.Status.INSUFFICIENT_FUNDS;
+        if (limit.hasNoLimit()) return TransactionResult.Status.SUCCESS;
+        if (delta < 0 && limit.enableMin() && balance < Currency.toUnits(limit.minValue(), scale)) return TransactionResult.Status.INSUFFICIENT_FUNDS;
+        if (delta > 0 && limit.enableMax() && balance > Currency.toUnits(limit.maxValue(), scale)) return TransactionResult.Status.EXCEEDS_MAX;
+
+        return TransactionResult.Status.SUCCESS;
+    }
+
+    private static long clamp(long units, CurrencyLimit limit, int scale) {
+        if (limit.hasNoLimit()) return units;
+        if (limit.enableMin()) units = Math.max(units, Currency.toUnits(limit.minValue(), scale));
+        if (limit.enableMax()) units = Math.min(units, Currency.toUnits(limit.maxValue(), scale));
+
+        return units;
+    }
+
+    private void setBalance(PlayerData data, CurrencyHandle currency, long units) {
+        data.balance(currency, units);
+        markUnranked(data);
+        markDirty(data.uuid());
+        if (journal != null) journal.balance(data.uuid(), currency.codeName(), units, handleScales.applyAsInt(currency));
+    }
+
+    /**
+     * Flag a changed player for the leaderboard, the shared pending flag is only written if not already set.
+     */
+    private void markUnranked(PlayerData data) {
+        data.markUnranked();
+        if (!rankPending) rankPending = true;
+    }
+
+    /**
+     * Rank the balances of every player changed since the last call, run before each leaderboard query.
+     */
+    private void rankChanged() {
+        if (!rankPending) return;
+
+        synchronized (rankLock) {
+            rankPending = false;
+            for (PlayerData data : cache.values()) rank(data);
+            for (PlayerData data : evicting.values()) rank(data);
+        }
+    }
+
+    /**
+     * Rank the pending changes of a player data leaving the cache, no balance change reaches it afterward.
+     */
+    private void rankRemoved(PlayerData data) {
+        synchronized (rankLock) {
+            rank(data);
+        }
+    }
+
+    private void rank(PlayerData data) {
+        if (!data.takeUnranked()) return;
+
+        UUID uuid = data.uuid();
+        data.forEachBalance((code, units) -> {
+            CurrencyHandle currency = handles.apply(code);
+            if (currency != null) leaderboard.update(currency, uuid, units);
+        });
+    }
+
+    /**
+     * Record a balance change to the history if enabled, called under the player's lock so events of a player keep their order.
+     */
+    private void record(UUID account, UUID counterparty, CurrencyHandle currency, long delta, long balance, int scale, TransactionEvent.Kind kind, String requester) {
+        TransactionHistory history = this.history;
+        if (history == null) return;
+
+        history.record(new TransactionEvent(System.currentTimeMillis(), account, counterparty, currency.codeName(), delta, balance, scale, kind, requester));
+    }
+
+    /**
+     * Save changed player data now unless write-behind or the journal is enabled,
+     * the data was already marked dirty under its lock so an eviction in between writes it back.
+     */
+    private boolean persist(PlayerData data) {
+        if (!writeBehind && journal == null) {
+            dirty.remove(data.uuid());
+            return writePlayerData(data);
+        }
+
+        return true;
+    }
+
+    private boolean persist(PlayerData first, PlayerData second) {
+        if (!writeBehind && journal == null) {
+            dirty.remove(first.uuid());
+            dirty.remove(second.uuid());
+            return writeAll(List.of(first, second));
+        }
+
+        return true;
+    }
+
+    private static void rescale(PlayerData data, CurrencyHandle currency, int fromScale, int toScale) {
+        if (data.hasBalance(currency)) data.balance(currency, Currency.rescale(data.balance(currency), fromScale, toScale));
+    }
+
+    private boolean persistAll(Collection<PlayerData> data) {
+        if (data.isEmpty() || writeBehind || journal != null) return true;
+
+        for (PlayerData entry : data) dirty.remove(entry.uuid());
+        return writeAll(data);
+    }
+
+    /**
+     * Check under the player's lock that the data is still the cached one and was not evicted since it was read.
+     */
+    private boolean isCurrent(PlayerData data) {
+        return cache.get(data.uuid()) == data;
+    }
+
+    private PlayerData cached(UUID uuid) {
+        PlayerData data = cache.get(uuid);
+        return data != null ? data : evicting.get(uuid);
+    }
+
+    /**
+     * Put evicted data that is still being written back into the cache again,
+     * it is marked dirty since the write-back may not have finished.
+     */
+    /**
+     * Put loaded data into the cache unless another load got there first,
+     * balances read before their currency was declared are converted under the same lock {@link #swapCurrencies} holds.
+     */
+    private PlayerData admit(PlayerData loaded) {
+        UUID uuid = loaded.uuid();
+        synchronized (lock(uuid)) {
+            loaded.promoteRetained(scales);
+            PlayerData existing = cache.putIfAbsent(uuid, loaded);
+            if (existing != null) return existing;
+
+            // The stored copy still holds balances of purged currencies, save the player without them
+            boolean purged = false;
+            for (String codeName : purging) purged |= loaded.removeBalance(codeName);
+            if (purged) markDirty(uuid);
+            return loaded;
+        }
+    }
+
+    private PlayerData restore(PlayerData evicted) {
+        UUID uuid = evicted.uuid();
+        synchronized (lock(uuid)) {
+            PlayerData existing = cache.putIfAbsent(uuid, evicted);
+            if (existing != null) return existing;
+
+            evicted.touch();
+            markDirty(uuid);
+            return evicted;
+        }
+    }
+
+    private boolean evict(PlayerData data) {
+        UUID uuid = data.uuid();
+        boolean changed;
+        synchronized (lock(uuid)) {
+            if (pinned.contains(uuid) || !isCurrent(data)) return false;
+
+            // Publish the data as evicting before removing it, so a lookup always finds it in one of the two
+            changed = dirty.remove(uuid) != null;
+            if (changed) evicting.put(uuid, data);
+            cache.remove(uuid, data);
+        }
+
+        rankRemoved(data);
+        evictions.increment();
+        if (!changed) return true;
+
+        try {
+            ioExecutor.execute(() -> writeBack(data));
+        } catch (RejectedExecutionException e) {
+            writeBack(data);
+        }
+
+        return true;
+    }
+
+    private void writeBack(PlayerData data) {
+        UUID uuid = data.uuid();
+        boolean saved = writePlayerData(data);
+        synchronized (lock(uuid)) {
+            if (!evicting.remove(uuid, data) || saved) return;
+
+            logger.warning(String.format("Failed to save evicted player data of %s, it is kept in memory.", uuid));
+            if (cache.putIfAbsent(uuid, data) == null) markDirty(uuid);
+        }
+    }
+
+    private Object lock(UUID uuid) {
+        return locks[stripe(uuid)];
+    }
+
+    private int stripe(UUID uuid) {
+        return Math.floorMod(uuid.hashCode(), LockStripes);
+    }
+
+    /**
+     * Load a player to be cached, balances of purged currencies are dropped by {@link #admit(PlayerData)}.
+     */
+    private PlayerData loadOrCreate(UUID uuid, String playerName) {
+        PlayerData loaded = loadStored(uuid, playerName);
+        return loaded != null ? loaded : new PlayerData(uuid, playerName);
+    }
+
+    private PlayerData loadStored(UUID uuid, String fallbackName) {
+        long startTime = System.nanoTime();
+        PlayerData stored = store.load(uuid, fallbackName);
+        Metrics.Load.recordSince(startTime);
+        return stored;
+    }
+
+    private boolean writePlayerData(PlayerData data) {
+        data.foldPlaytime();
+        long startTime = System.nanoTime();
+        boolean saved = store.save(data);
+        Metrics.Save.recordSince(startTime);
+        if (!saved) return false;
+
+        accounts.put(data.uuid(), data.playerName());
+        return true;
+    }
+
+    private boolean writeAll(Collection<PlayerData> data) {
+        if (data.isEmpty()) return true;
+
+        for (PlayerData entry : data) entry.foldPlaytime();
+        long startTime = System.nanoTime();
+        boolean saved = store.saveAll(data);
+        Metrics.SaveBatch.recordSince(startTime);
+        if (!saved) return false;
+
+        for (PlayerData entry : data) accounts.put(entry.uuid(), entry.playerName());
+        return true;
     }
 }
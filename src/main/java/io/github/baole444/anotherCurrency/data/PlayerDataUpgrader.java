@@ -0,0 +1,72 @@
+package io.github.baole444.anotherCurrency.data;
+
+import io.github.baole444.anotherCurrency.AnotherCurrency;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Level;
+
+/**
+ * Background task rewriting outdated stored player data in the current data version,
+ * a few players per run so the upgrade never competes with gameplay for disk I/O.
+ */
+public class PlayerDataUpgrader {
+    private static final long IntervalTick = 20L;
+
+    private final AnotherCurrency plugin;
+    private ScheduledTask task;
+    private List<UUID> pending;
+    private int position;
+    private int upgraded;
+
+    /**
+     * Initialize player data upgrader instance.
+     * @param plugin the ANC plugin's instance
+     */
+    public PlayerDataUpgrader(AnotherCurrency plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Start the upgrade task, the rate is read on every run so reloaded config applies right away.
+     */
+    public void start() {
+        if (task != null && !task.isCancelled()) return;
+        task = plugin.scheduler().runAsyncTimer(this::upgrade, IntervalTick, IntervalTick);
+    }
+
+    /**
+     * Stop the upgrade task, a later start continues where it stopped.
+     */
+    public void stop() {
+        if (task != null && !task.isCancelled()) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    private synchronized void upgrade() {
+        PlayerDataManager playerDataManager = plugin.playerDataManager();
+        if (pending == null) pending = new ArrayList<>(playerDataManager.store().outdated());
+
+        int rate = plugin.configManager().players().storage().upgradeRate();
+        int end = Math.min(pending.size(), position + rate);
+        for (; position < end; position++) {
+            try {
+                if (playerDataManager.upgradeStored(pending.get(position))) upgraded++;
+            } catch (RuntimeException e) {
+                plugin.getLogger().log(Level.WARNING, String.format("Failed to upgrade player data for %s", pending.get(position)), e);
+            }
+        }
+
+        if (position < pending.size()) return;
+
+        playerDataManager.store().markUpgraded();
+        if (upgraded > 0) {
+            plugin.getLogger().info(String.format("Upgraded %d player data files to version %d.", upgraded, PlayerData.DataVersion));
+        }
+        stop();
+    }
+}
@@ -2,8 +2,9 @@ package io.github.baole444.anotherCurrency.data;
 
 import io.github.baole444.anotherCurrency.AnotherCurrency;
 import io.github.baole444.anotherCurrency.configurations.Players;
+import io.github.baole444.anotherCurrency.metrics.Metrics;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
 import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitRunnable;
 
 import java.time.Duration;
 import java.util.UUID;
@@ -11,14 +12,43 @@ import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Playtime tracking manager.
+ * Every online player has their own repeating task on their entity scheduler,
+ * so on region-threaded servers playtime is credited by the region thread owning the player.
  */
 public class PlaytimeTracker {
     private static final long UpdateInterval = 60L;
     private static final long UpdateIntervalTick = UpdateInterval * 20L;
 
     private final AnotherCurrency plugin;
-    private final ConcurrentHashMap<UUID, Long> lastUpdateTime;
-    private BukkitRunnable task;
+    private final ConcurrentHashMap<UUID, Session> sessions;
+    private volatile boolean running;
+
+    /**
+     * Monotonic clock of one online player, updated in place so a tick does not allocate.
+     */
+    private static final class Session {
+        private long lastUpdate;
+        private volatile ScheduledTask task;
+
+        private Session(long now) {
+            lastUpdate = now;
+        }
+
+        /**
+         * Move the clock to now.
+         * @return nanoseconds since the last update
+         */
+        private synchronized long advance(long now) {
+            long elapsed = now - lastUpdate;
+            lastUpdate = now;
+            return elapsed;
+        }
+
+        private void cancel() {
+            ScheduledTask current = task;
+            if (current != null && !current.isCancelled()) current.cancel();
+        }
+    }
 
     /**
      * Initialize playtime tracker instance.
@@ -26,59 +56,72 @@ public class PlaytimeTracker {
      */
     public PlaytimeTracker(AnotherCurrency plugin) {
         this.plugin = plugin;
-        lastUpdateTime = new ConcurrentHashMap<>();
+        sessions = new ConcurrentHashMap<>();
     }
 
     /**
-     * Start the playtime tracking task.
+     * Start tracking every online player.
      */
     public void start() {
-        if (task != null && !task.isCancelled()) return;
-        task = new BukkitRunnable() {
-            @Override
-            public void run() {
-                updatePlaytime();
-            }
-        };
-
-        task.runTaskTimer(plugin, 20L, UpdateIntervalTick);
+        if (running) return;
+        running = true;
+        for (Player player : plugin.getServer().getOnlinePlayers()) track(player);
     }
 
     /**
-     * Stop the playtime tracking task
+     * Stop tracking every player.
      */
     public void stop() {
-        if (task != null && !task.isCancelled()) {
-            task.cancel();
-            task = null;
-        }
-
-        lastUpdateTime.clear();
+        running = false;
+        for (Session session : sessions.values()) session.cancel();
+        sessions.clear();
     }
 
     /**
-     * Add player to playtime tracker on join event.
+     * Start tracking a player on join event.
      * @param player the player that joined
      */
     public void onPlayerJoin(Player player) {
-        lastUpdateTime.put(player.getUniqueId(), System.currentTimeMillis());
+        if (running) track(player);
     }
 
     /**
-     * Save player playtime on quit event.
+     * Credit the remaining playtime on quit event.
      * @param player the player that quit
      */
     public void onPlayerQuit(Player player) {
+        Session session = sessions.remove(player.getUniqueId());
+        if (session == null) return;
+
+        session.cancel();
+        if (shouldExcludeAFK(player, plugin.configManager().players().playtime())) return;
+
+        long elapsed = session.advance(System.nanoTime());
+        if (elapsed > 0L) plugin.playerDataManager().accruePlaytime(player, elapsed);
+    }
+
+    private void track(Player player) {
         UUID uuid = player.getUniqueId();
-        if (shouldExcludeAFK(player)) lastUpdateTime.remove(uuid);
+        Session session = new Session(System.nanoTime());
+        Session previous = sessions.put(uuid, session);
+        if (previous != null) previous.cancel();
 
-        long elapsed = getElapsedSecond(uuid);
-        if (elapsed > 0) plugin.playerDataManager().addPlaytime(player, elapsed);
-        lastUpdateTime.remove(uuid);
+        session.task = plugin.scheduler().runEntityTimer(player, () -> tick(player, session),
+                () -> sessions.remove(uuid, session), UpdateIntervalTick, UpdateIntervalTick);
+        if (session.task == null) sessions.remove(uuid, session);
     }
 
-    private boolean shouldExcludeAFK(Player player) {
-        Players.Playtime config = plugin.configManager().players().playtime();
+    private void tick(Player player, Session session) {
+        long startTime = System.nanoTime();
+        long elapsed = session.advance(startTime);
+        if (elapsed > 0L && !shouldExcludeAFK(player, plugin.configManager().players().playtime())) {
+            plugin.playerDataManager().accruePlaytime(player, elapsed);
+        }
+
+        Metrics.PlaytimeTick.recordSince(startTime);
+    }
+
+    private boolean shouldExcludeAFK(Player player, Players.Playtime config) {
         if (!config.detectAFK()) return false;
         return isAFK(player, config.afkThreshold());
     }
@@ -87,33 +130,4 @@ public class PlaytimeTracker {
         Duration idleDuration = player.getIdleDuration();
         return idleDuration.getSeconds() >= threshold;
     }
-
-    private void updatePlaytime() {
-        Players.Playtime config = plugin.configManager().players().playtime();
-        if (!config.trackPlaytime()) return;
-
-        for (Player player : plugin.getServer().getOnlinePlayers()) {
-            UUID uuid = player.getUniqueId();
-            if (!lastUpdateTime.containsKey(uuid)) {
-                lastUpdateTime.put(uuid, System.currentTimeMillis());
-                continue;
-            }
-
-            if (!shouldExcludeAFK(player)) {
-                long elapsed = getElapsedSecond(uuid);
-                if (elapsed > 0) plugin.playerDataManager().addPlaytime(player, elapsed);
-            }
-
-            lastUpdateTime.put(uuid, System.currentTimeMillis());
-        }
-    }
-
-    private long getElapsedSecond(UUID uuid) {
-        Long lastUpdate = lastUpdateTime.get(uuid);
-        if (lastUpdate == null) return 0L;
-
-        long currentTime = System.currentTimeMillis();
-        long elapsed = currentTime - lastUpdate;
-        return elapsed / 1000L;
-    }
 }
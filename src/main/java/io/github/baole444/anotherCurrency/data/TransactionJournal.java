@@ -0,0 +1,514 @@
+package io.github.baole444.anotherCurrency.data;
+
+import io.github.baole444.anotherCurrency.configurations.Currency;
+import io.github.baole444.anotherCurrency.data.storage.PlayerDataStore;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary journal of player data changes.
+ * <p>
+ * Each record holds the value after the change rather than the difference,
+ * so replaying a record over a snapshot that already has it does not apply it twice.
+ * Appends are queued without locking and written with one fsync per commit interval (group commit).
+ * The journal is split into segments, a sealed segment is deleted once every player it touched is snapshot.
+ */
+public class TransactionJournal implements AutoCloseable {
+    /**
+     * Name of the directory that store journal segments.
+     */
+    public static final String JournalDirName = "journal";
+
+    /**
+     * Format for the name of each journal segment, which is {@code segment-{id}.log}.
+     */
+    public static final String SegmentFileNameFormat = "segment-%010d.log";
+    private static final String SegmentFilePrefix = "segment-";
+    private static final String SegmentFileExtension = ".log";
+
+    /**
+     * Balance as a decimal amount, only written by older versions and converted on replay.
+     */
+    private static final byte LegacyBalanceRecord = 1;
+    private static final byte BalanceRemovedRecord = 2;
+    private static final byte PlaytimeRecord = 3;
+    private static final byte DeletedRecord = 4;
+    private static final byte BalanceRecord = 5;
+    private static final byte TransferRecord = 6;
+    private static final int MaxRecordSize = 1 << 16;
+
+    private final File journalDir;
+    private final Logger logger;
+    private final long commitIntervalMillis;
+    private final ToIntFunction<String> scales;
+    private final ConcurrentLinkedQueue<Pending> pending;
+    private final ReentrantLock ioLock;
+    private final List<Segment> sealed;
+    private Set<UUID> touched;
+    private FileChannel channel;
+    private long segmentId;
+    private Thread committer;
+    private volatile boolean running;
+
+    /**
+     * A sealed journal segment and the players it has records of.
+     * @param file the segment file
+     * @param touched unique identifiers of players changed in the segment
+     */
+    public record Segment(File file, Set<UUID> touched) {}
+
+    /**
+     * An encoded record waiting for the next commit.
+     * @param bytes the framed record, with its length and checksum
+     * @param players unique identifiers of players changed by the record
+     */
+    private record Pending(byte[] bytes, UUID[] players) {}
+
+    /**
+     * Initialize the journal, {@link #replay(PlayerDataStore)} should be called before {@link #open()}.
+     * @param journalDir the directory to store segments in
+     * @param logger the logger to report errors to
+     * @param commitIntervalMillis time between each group commit, in milliseconds
+     * @param scales lookup of the current scale of a currency by its code name
+     */
+    public TransactionJournal(File journalDir, Logger logger, long commitIntervalMillis, ToIntFunction<String> scales) {
+        this.journalDir = journalDir;
+        this.logger = logger;
+        this.commitIntervalMillis = Math.max(1L, commitIntervalMillis);
+        this.scales = scales;
+        pending = new ConcurrentLinkedQueue<>();
+        ioLock = new ReentrantLock();
+        sealed = new ArrayList<>();
+        touched = new HashSet<>();
+
+        if (!journalDir.exists() && !journalDir.mkdirs()) {
+            logger.warning(String.format("Failed to create %s directory, changes might not be journaled.", JournalDirName));
+        }
+    }
+
+    /**
+     * Apply every existing segment to the store and delete them,
+     * a torn record at the end of a segment, left by a crash mid-write, is skipped.
+     * @param store the store holding player snapshots
+     * @return number of players updated from the journal
+     */
+    public int replay(PlayerDataStore store) {
+        List<File> segments = segmentFiles();
+        if (segments.isEmpty()) return 0;
+
+        logger.info(String.format("Replaying %d journal segments...", segments.size()));
+        long startTime = System.currentTimeMillis();
+        Map<UUID, PlayerData> replayed = new LinkedHashMap<>();
+        Set<UUID> deleted = new HashSet<>();
+        Set<UUID> failed = new HashSet<>();
+        for (File segment : segments) readSegment(segment, store, replayed, deleted, failed);
+
+        boolean success = true;
+        for (UUID uuid : deleted) success &= store.delete(uuid);
+        success &= store.saveAll(replayed.values());
+        if (!failed.isEmpty()) {
+            logger.severe(String.format("Failed to read stored data of %d players, their journaled changes are not replayed and journal segments are kept for next startup.", failed.size()));
+        } else if (success) {
+            for (File segment : segments) deleteSegment(segment);
+        } else {
+            logger.severe("Failed to save replayed player data, journal segments are kept for next startup.");
+        }
+
+        segmentId = lastSegmentId(segments);
+        long finishTime = System.currentTimeMillis();
+        logger.info(String.format("Replayed journal for %d players. Took %dms.", replayed.size() + deleted.size(), finishTime - startTime));
+        return replayed.size() + deleted.size();
+    }
+
+    /**
+     * Open a new segment and start the group commit thread.
+     * @throws IOException if the segment cannot be created
+     */
+    public void open() throws IOException {
+        ioLock.lock();
+        try {
+            channel = openSegment(++segmentId);
+        } finally {
+            ioLock.unlock();
+        }
+
+        running = true;
+        committer = new Thread(this::runCommitter, "AnotherCurrency-Journal");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    /**
+     * Journal a new balance of a player.
+     * @param uuid the unique identifier of the player
+     * @param currencyCode the canonical name of the currency
+     * @param units the balance after the change, in minor units
+     * @param scale the scale the units are in
+     */
+    public void balance(UUID uuid, String currencyCode, long units, int scale) {
+        byte[] code = currencyCode.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = header(BalanceRecord, uuid, Short.BYTES + code.length + Long.BYTES + Byte.BYTES);
+        payload.putShort((short) code.length).put(code).putLong(units).put((byte) scale);
+        append(payload, uuid);
+    }
+
+    /**
+     * Journal the new balances of both sides of a transfer in one record,
+     * so a crash cannot leave only one side replayed.
+     * @param from the unique identifier of the sender
+     * @param to the unique identifier of the receiver
+     * @param currencyCode the canonical name of the currency
+     * @param fromUnits the sender's balance after the transfer, in minor units
+     * @param toUnits the receiver's balance after the transfer, in minor units
+     * @param scale the scale the units are in
+     */
+    public void transfer(UUID from, UUID to, String currencyCode, long fromUnits, long toUnits, int scale) {
+        byte[] code = currencyCode.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = header(TransferRecord, from, Short.BYTES + code.length + Long.BYTES * 4 + Byte.BYTES);
+        payload.putShort((short) code.length).put(code).putLong(fromUnits)
+                .putLong(to.getMostSignificantBits()).putLong(to.getLeastSignificantBits()).putLong(toUnits)
+                .put((byte) scale);
+        append(payload, from, to);
+    }
+
+    /**
+     * Journal the removal of a balance of a player.
+     * @param uuid the unique identifier of the player
+     * @param currencyCode the canonical name of the currency
+     */
+    public void removeBalance(UUID uuid, String currencyCode) {
+        byte[] code = currencyCode.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = header(BalanceRemovedRecord, uuid, Short.BYTES + code.length);
+        payload.putShort((short) code.length).put(code);
+        append(payload, uuid);
+    }
+
+    /**
+     * Journal a new playtime of a player.
+     * @param uuid the unique identifier of the player
+     * @param seconds the playtime after the change, in seconds
+     */
+    public void playtime(UUID uuid, long seconds) {
+        ByteBuffer payload = header(PlaytimeRecord, uuid, Long.BYTES);
+        payload.putLong(seconds);
+        append(payload, uuid);
+    }
+
+    /**
+     * Journal the deletion of a player data.
+     * @param uuid the unique identifier of the player
+     */
+    public void deleted(UUID uuid) {
+        append(header(DeletedRecord, uuid, 0), uuid);
+    }
+
+    /**
+     * Write and fsync every buffered record now.
+     */
+    public void commit() {
+        ioLock.lock();
+        try {
+            writeBuffered(channel);
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    /**
+     * Seal the current segment and continue appending to a new one.
+     * The sealed segment and every earlier segment not yet compacted are returned.
+     * @return the sealed segments, oldest first
+     */
+    public List<Segment> rotate() {
+        ioLock.lock();
+        try {
+            long previousId = segmentId;
+            // Every record taken here goes to the sealed segment, and taking it adds its players to the touched set
+            writeBuffered(channel);
+            Set<UUID> previousTouched = touched;
+            touched = new HashSet<>();
+            try {
+                if (channel != null) channel.close();
+                channel = openSegment(previousId + 1);
+                segmentId = previousId + 1;
+            } catch (IOException e) {
+                channel = null;
+                logger.log(Level.SEVERE, "Failed to rotate journal segment", e);
+            }
+
+            sealed.add(new Segment(segmentFile(previousId), previousTouched));
+            return List.copyOf(sealed);
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    /**
+     * Delete sealed segments after every player they touched has been snapshot.
+     * @param segments the segments returned by {@link #rotate()}
+     */
+    public void compacted(List<Segment> segments) {
+        ioLock.lock();
+        try {
+            for (Segment segment : segments) {
+                deleteSegment(segment.file());
+                sealed.remove(segment);
+            }
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    /**
+     * Stop the group commit thread and write every buffered record.
+     */
+    @Override
+    public void close() {
+        running = false;
+        if (committer != null) {
+            LockSupport.unpark(committer);
+            try {
+                committer.join(commitIntervalMillis * 10L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        ioLock.lock();
+        try {
+            if (channel == null) return;
+            writeBuffered(channel);
+            channel.close();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to close journal segment", e);
+        } finally {
+            channel = null;
+            ioLock.unlock();
+        }
+    }
+
+    /**
+     * Start a record framed by its length and room for its checksum, filled in by {@link #append(ByteBuffer, UUID...)}.
+     */
+    private ByteBuffer header(byte type, UUID uuid, int bodySize) {
+        int length = Byte.BYTES + Long.BYTES * 2 + bodySize;
+        ByteBuffer payload = ByteBuffer.allocate(Integer.BYTES + length + Integer.BYTES);
+        return payload.putInt(length).put(type).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+    }
+
+    private void append(ByteBuffer payload, UUID... players) {
+        CRC32 crc = new CRC32();
+        crc.update(payload.array(), Integer.BYTES, payload.capacity() - Integer.BYTES * 2);
+        payload.putInt((int) crc.getValue());
+        pending.offer(new Pending(payload.array(), players));
+    }
+
+    private void runCommitter() {
+        while (running) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(commitIntervalMillis));
+            if (Thread.interrupted()) return;
+
+            commit();
+        }
+    }
+
+    /**
+     * Write every queued record, must be called holding the I/O lock.
+     */
+    private void writeBuffered(FileChannel target) {
+        writePending(target, takeBuffered());
+    }
+
+    /**
+     * Take every queued record and add the players they changed to the current segment's touched set,
+     * must be called holding the I/O lock.
+     * @return the queued records, or null if there are none
+     */
+    private ByteArrayOutputStream takeBuffered() {
+        Pending record = pending.poll();
+        if (record == null) return null;
+
+        ByteArrayOutputStream taken = new ByteArrayOutputStream();
+        do {
+            taken.writeBytes(record.bytes());
+            touched.addAll(Arrays.asList(record.players()));
+        } while ((record = pending.poll()) != null);
+        return taken;
+    }
+
+    private void writePending(FileChannel target, ByteArrayOutputStream taken) {
+        if (taken == null) return;
+        if (target == null) {
+            logger.severe(String.format("Journal is not open, %d bytes of changes are not journaled.", taken.size()));
+            return;
+        }
+
+        try {
+            ByteBuffer bytes = ByteBuffer.wrap(taken.toByteArray());
+            while (bytes.hasRemaining()) target.write(bytes);
+            target.force(false);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to write journal segment", e);
+        }
+    }
+
+    private void readSegment(File segment, PlayerDataStore store, Map<UUID, PlayerData> replayed, Set<UUID> deleted, Set<UUID> failed) {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(segment)))) {
+            while (input.available() > 0) {
+                byte[] bytes;
+                try {
+                    int length = input.readInt();
+                    if (length <= 0 || length > MaxRecordSize) throw new EOFException();
+                    bytes = new byte[length];
+                    input.readFully(bytes);
+
+                    CRC32 crc = new CRC32();
+                    crc.update(bytes);
+                    if (input.readInt() != (int) crc.getValue()) throw new EOFException();
+                } catch (EOFException e) {
+                    logger.warning(String.format("Journal segment %s has a torn record, the rest of it is skipped.", segment.getName()));
+                    return;
+                }
+
+                applyRecord(ByteBuffer.wrap(bytes), store, replayed, deleted, failed);
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, String.format("Failed to read journal segment %s", segment.getName()), e);
+        }
+    }
+
+    private void applyRecord(ByteBuffer record, PlayerDataStore store, Map<UUID, PlayerData> replayed, Set<UUID> deleted, Set<UUID> failed) {
+        byte type = record.get();
+        UUID uuid = new UUID(record.getLong(), record.getLong());
+        if (type == DeletedRecord) {
+            replayed.remove(uuid);
+            failed.remove(uuid);
+            deleted.add(uuid);
+            return;
+        }
+
+        deleted.remove(uuid);
+        PlayerData data = replayedData(uuid, store, replayed, failed);
+        if (data == null && type != TransferRecord) return;
+
+        switch (type) {
+            case BalanceRecord -> {
+                String code = readCode(record);
+                long units = record.getLong();
+                data.restoreBalance(code, units, record.get(), scales);
+            }
+            case TransferRecord -> {
+                String code = readCode(record);
+                long fromUnits = record.getLong();
+                UUID to = new UUID(record.getLong(), record.getLong());
+                long toUnits = record.getLong();
+                int scale = record.get();
+                deleted.remove(to);
+                if (data != null) data.restoreBalance(code, fromUnits, scale, scales);
+
+                PlayerData receiver = replayedData(to, store, replayed, failed);
+                if (receiver != null) receiver.restoreBalance(code, toUnits, scale, scales);
+            }
+            case LegacyBalanceRecord -> {
+                String code = readCode(record);
+                int scale = scales.applyAsInt(code);
+                data.restoreBalance(code, Currency.toUnits(record.getDouble(), scale), scale, scales);
+            }
+            case BalanceRemovedRecord -> data.removeBalance(readCode(record));
+            case PlaytimeRecord -> data.playtime(record.getLong());
+            default -> logger.warning(String.format("Unknown journal record type %d, skipping.", type));
+        }
+    }
+
+    /**
+     * Get the player data records are replayed onto, loaded from the store on first use.
+     * A player whose stored data cannot be read is skipped rather than replayed onto an empty data,
+     * which would overwrite their stored balances on save.
+     * @return the player data, or null if the player's stored data failed to load
+     */
+    private PlayerData replayedData(UUID uuid, PlayerDataStore store, Map<UUID, PlayerData> replayed, Set<UUID> failed) {
+        PlayerData data = replayed.get(uuid);
+        if (data != null || failed.contains(uuid)) return data;
+
+        try {
+            PlayerData loaded = store.read(uuid, null);
+            data = loaded != null ? loaded : new PlayerData(uuid, null);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, String.format("Failed to load player data for %s, their journaled changes are skipped", uuid), e);
+            failed.add(uuid);
+            return null;
+        }
+
+        replayed.put(uuid, data);
+        return data;
+    }
+
+    private String readCode(ByteBuffer record) {
+        byte[] code = new byte[record.getShort()];
+        record.get(code);
+        return new String(code, StandardCharsets.UTF_8);
+    }
+
+    private FileChannel openSegment(long id) throws IOException {
+        return FileChannel.open(segmentFile(id).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private File segmentFile(long id) {
+        return new File(journalDir, String.format(SegmentFileNameFormat, id));
+    }
+
+    private List<File> segmentFiles() {
+        File[] files = journalDir.listFiles((dir, name) -> name.startsWith(SegmentFilePrefix) && name.endsWith(SegmentFileExtension));
+        if (files == null) return List.of();
+
+        List<File> segments = new ArrayList<>(Arrays.asList(files));
+        segments.sort(Comparator.comparingLong(TransactionJournal::segmentId));
+        return segments;
+    }
+
+    private long lastSegmentId(List<File> segments) {
+        return segments.isEmpty() ? 0L : segmentId(segments.get(segments.size() - 1));
+    }
+
+    private static long segmentId(File segment) {
+        String name = segment.getName();
+        try {
+            return Long.parseLong(name.substring(SegmentFilePrefix.length(), name.length() - SegmentFileExtension.length()));
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    private void deleteSegment(File segment) {
+        if (segment.exists() && !segment.delete()) {
+            logger.warning(String.format("Failed to delete journal segment %s", segment.getName()));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package io.github.baole444.anotherCurrency.data;
+
+/**
+ * Result of a balance change.
+ * @param status outcome of the change
+ * @param amount the amount requested to change
+ * @param balance the balance after the change, or the unchanged balance if it failed, for transfers this is the sender's balance
+ */
+public record TransactionResult(Status status, double amount, double balance) {
+    /**
+     * Outcome of a balance change.
+     */
+    public enum Status {
+        /**
+         * The balance was changed.
+         */
+        SUCCESS,
+
+        /**
+         * The amount is negative or not a number.
+         */
+        INVALID_AMOUNT,
+
+        /**
+         * The change would bring the balance under the minimum limit.
+         */
+        INSUFFICIENT_FUNDS,
+
+        /**
+         * The change would bring the balance over the maximum limit.
+         */
+        EXCEEDS_MAX,
+
+        /**
+         * The transferred amount is under the minimum trade value.
+         */
+        BELOW_MIN_TRADE,
+
+        /**
+         * The transfer is from a player to themselves.
+         */
+        SAME_ACCOUNT,
+
+        /**
+         * No currency with the requested code name is declared.
+         */
+        UNKNOWN_CURRENCY
+    }
+
+    /**
+     * Check if the balance was changed.
+     * @return true if status is {@link Status#SUCCESS}
+     */
+    public boolean success() {
+        return status == Status.SUCCESS;
+    }
+}
@@ -0,0 +1,92 @@
+package io.github.baole444.anotherCurrency.data.history;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free queue of many producers and a single consumer.
+ * <p>
+ * Producers claim a slot by advancing the tail with a compare-and-set and publish the element into it,
+ * the consumer takes published elements in claim order and clears their slots before moving the head past them.
+ * A producer never waits, {@link #offer(Object)} fails right away when every slot is taken.
+ * @param <E> type of the elements
+ */
+public class EventRingBuffer<E> {
+    private final AtomicReferenceArray<E> slots;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong tail;
+    private final AtomicLong head;
+
+    /**
+     * Initialize an empty ring buffer.
+     * @param capacity minimum number of elements held at once, rounded up to a power of two
+     */
+    public EventRingBuffer(int capacity) {
+        int bounded = Math.max(2, Math.min(capacity, 1 << 30));
+        this.capacity = Integer.highestOneBit(bounded - 1) << 1;
+        mask = this.capacity - 1;
+        slots = new AtomicReferenceArray<>(this.capacity);
+        tail = new AtomicLong();
+        head = new AtomicLong();
+    }
+
+    /**
+     * Add an element, safe to call from any thread.
+     * @param element the element to add, not null
+     * @return false if the buffer is full and the element was not added
+     */
+    public boolean offer(E element) {
+        while (true) {
+            long claimed = tail.get();
+            if (claimed - head.get() >= capacity) return false;
+
+            if (tail.compareAndSet(claimed, claimed + 1)) {
+                slots.setRelease((int) (claimed & mask), element);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Take published elements in order, must only be called by the single consumer thread.
+     * Stops early at an element claimed but not published yet, it is taken by a later call.
+     * @param consumer receiver of each element
+     * @param max maximum number of elements to take
+     * @return number of elements taken
+     */
+    public int drain(Consumer<? super E> consumer, int max) {
+        long next = head.get();
+        int drained = 0;
+        while (drained < max) {
+            int slot = (int) (next & mask);
+            E element = slots.getAcquire(slot);
+            if (element == null) break;
+
+            slots.setPlain(slot, null);
+            consumer.accept(element);
+            next++;
+            drained++;
+        }
+
+        if (drained > 0) head.setRelease(next);
+        return drained;
+    }
+
+    /**
+     * Get the number of elements claimed but not taken yet.
+     * @return size of the buffer
+     */
+    public int size() {
+        return (int) Math.max(0L, tail.get() - head.get());
+    }
+
+    /**
+     * Get the number of elements held at once.
+     * @return capacity of the buffer
+     */
+    public int capacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,348 @@
+package io.github.baole444.anotherCurrency.data.history;
+
+import io.github.baole444.anotherCurrency.data.storage.AtomicFileWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * One segment file of the transaction history, a sequence of independently compressed blocks of events.
+ * <p>
+ * Each block is written as its compressed length, raw length and CRC32 followed by the deflated events.
+ * The segment keeps a sparse index of which blocks hold events of each player,
+ * so reading the history of a player only decompresses the blocks it appears in.
+ * The index is written next to the segment when it is sealed, and rebuilt by scanning the blocks if it is missing.
+ */
+class HistorySegment {
+    /**
+     * Format for the name of each history segment, which is {@code segment-{id}.dat}.
+     */
+    static final String SegmentFileNameFormat = "segment-%010d.dat";
+    static final String SegmentFilePrefix = "segment-";
+    static final String SegmentFileExtension = ".dat";
+    private static final String IndexFileExtension = ".idx";
+    private static final int BlockHeaderSize = Integer.BYTES * 3;
+    private static final int MaxBlockSize = 1 << 24;
+
+    private final long id;
+    private final File file;
+    private final File indexFile;
+    private final Map<UUID, Offsets> index;
+    private FileChannel channel;
+    private long size;
+
+    private HistorySegment(File dir, long id) {
+        this.id = id;
+        file = new File(dir, String.format(SegmentFileNameFormat, id));
+        indexFile = new File(dir, String.format(SegmentFileNameFormat, id).replace(SegmentFileExtension, IndexFileExtension));
+        index = new HashMap<>();
+    }
+
+    /**
+     * Create a new empty segment open for appending.
+     * @param dir the history directory
+     * @param id the id of the segment, higher is newer
+     * @return the segment
+     * @throws IOException if the file cannot be created
+     */
+    static HistorySegment create(File dir, long id) throws IOException {
+        HistorySegment segment = new HistorySegment(dir, id);
+        segment.channel = FileChannel.open(segment.file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return segment;
+    }
+
+    /**
+     * Open an existing sealed segment, reading its index or rebuilding it if it is missing or unreadable.
+     * A torn block at the end, left by a crash mid-write, is cut off.
+     * @param dir the history directory
+     * @param id the id of the segment
+     * @param writer the writer to save a rebuilt index with
+     * @param logger the logger to report to
+     * @return the segment
+     * @throws IOException if the segment cannot be read
+     */
+    static HistorySegment open(File dir, long id, AtomicFileWriter writer, Logger logger) throws IOException {
+        HistorySegment segment = new HistorySegment(dir, id);
+        segment.size = segment.file.length();
+        if (segment.indexFile.exists()) {
+            try {
+                segment.readIndex();
+                return segment;
+            } catch (IOException e) {
+                logger.warning(String.format("Unreadable history index %s, rebuilding it.", segment.indexFile.getName()));
+                segment.index.clear();
+            }
+        }
+
+        segment.rebuild(logger);
+        segment.writeIndex(writer);
+        return segment;
+    }
+
+    /**
+     * Get the id of the segment.
+     * @return the id, higher is newer
+     */
+    long id() {
+        return id;
+    }
+
+    /**
+     * Get the size of the segment file.
+     * @return size in bytes
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Compress and append a block of events, then index it for every account in it.
+     * @param raw the events in their binary form
+     * @param accounts unique identifiers of the accounts with events in the block
+     * @param deflater the compressor to use, reset before use
+     * @throws IOException if the block cannot be written
+     */
+    void append(byte[] raw, Set<UUID> accounts, Deflater deflater) throws IOException {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 2 + 64);
+        byte[] chunk = new byte[8192];
+        while (!deflater.finished()) compressed.write(chunk, 0, deflater.deflate(chunk));
+
+        byte[] payload = compressed.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer block = ByteBuffer.allocate(BlockHeaderSize + payload.length);
+        block.putInt(payload.length).putInt(raw.length).putInt((int) crc.getValue()).put(payload).flip();
+
+        long offset = size;
+        while (block.hasRemaining()) channel.write(block);
+        size += BlockHeaderSize + payload.length;
+        for (UUID account : accounts) index(account, offset);
+    }
+
+    /**
+     * Get the offsets of every block holding events of an account.
+     * @param account the unique identifier of the player
+     * @return the offsets in file order, empty if the account has no events in this segment
+     */
+    long[] offsets(UUID account) {
+        Offsets offsets = index.get(account);
+        return offsets != null ? Arrays.copyOf(offsets.values, offsets.size) : new long[0];
+    }
+
+    /**
+     * Read and decompress a block.
+     * @param offset the offset of the block in the file
+     * @return the events of the block in the order they were recorded
+     * @throws IOException if the block cannot be read or is corrupted
+     */
+    List<TransactionEvent> read(long offset) throws IOException {
+        try (FileChannel reader = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            byte[] raw = readBlock(reader, offset);
+            if (raw == null) throw new IOException(String.format("Corrupted history block at %d in %s", offset, file.getName()));
+
+            return decode(raw);
+        }
+    }
+
+    /**
+     * Force the segment to disk, stop appending to it and save its index.
+     * @param writer the writer to save the index with
+     * @throws IOException if the segment or its index cannot be written
+     */
+    void seal(AtomicFileWriter writer) throws IOException {
+        if (channel == null) return;
+
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
+            channel = null;
+        }
+
+        writeIndex(writer);
+    }
+
+    /**
+     * Delete the segment and its index.
+     * @return true if both are gone
+     */
+    boolean delete() {
+        boolean deleted = !file.exists() || file.delete();
+        return (!indexFile.exists() || indexFile.delete()) && deleted;
+    }
+
+    private void index(UUID account, long offset) {
+        index.computeIfAbsent(account, k -> new Offsets(2)).add(offset);
+    }
+
+    private void rebuild(Logger logger) throws IOException {
+        try (FileChannel reader = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long offset = 0L;
+            long length = reader.size();
+            while (offset < length) {
+                byte[] raw = readBlock(reader, offset);
+                if (raw == null) break;
+
+                for (TransactionEvent event : decode(raw)) index(event.account(), offset);
+                offset += BlockHeaderSize + blockLength(reader, offset);
+            }
+
+            if (offset < length) {
+                logger.warning(String.format("Cut off a torn block at the end of history segment %s.", file.getName()));
+                reader.truncate(offset);
+            }
+            size = offset;
+        }
+    }
+
+    private void readIndex() throws IOException {
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(indexFile.toPath())))) {
+            int accounts = input.readInt();
+            for (int i = 0; i < accounts; i++) {
+                UUID account = new UUID(input.readLong(), input.readLong());
+                int count = input.readInt();
+                if (count < 1 || count > MaxBlockSize) throw new IOException("Corrupted history index");
+
+                Offsets offsets = new Offsets(count);
+                for (int j = 0; j < count; j++) offsets.add(input.readLong());
+                index.put(account, offsets);
+            }
+        }
+    }
+
+    private void writeIndex(AtomicFileWriter writer) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(buffer);
+        output.writeInt(index.size());
+        for (Map.Entry<UUID, Offsets> entry : index.entrySet()) {
+            Offsets offsets = entry.getValue();
+            output.writeLong(entry.getKey().getMostSignificantBits());
+            output.writeLong(entry.getKey().getLeastSignificantBits());
+            output.writeInt(offsets.size);
+            for (int i = 0; i < offsets.size; i++) output.writeLong(offsets.values[i]);
+        }
+
+        writer.write(indexFile.toPath(), buffer.toByteArray());
+    }
+
+    /**
+     * Read a block, returning null if it is torn or corrupted.
+     */
+    private static byte[] readBlock(FileChannel reader, long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(BlockHeaderSize);
+        if (readFully(reader, header, offset) < BlockHeaderSize) return null;
+
+        header.flip();
+        int compressedLength = header.getInt();
+        int rawLength = header.getInt();
+        int checksum = header.getInt();
+        if (compressedLength < 0 || compressedLength > MaxBlockSize || rawLength < 0 || rawLength > MaxBlockSize) return null;
+
+        ByteBuffer payload = ByteBuffer.allocate(compressedLength);
+        if (readFully(reader, payload, offset + BlockHeaderSize) < compressedLength) return null;
+
+        CRC32 crc = new CRC32();
+        crc.update(payload.array());
+        if ((int) crc.getValue() != checksum) return null;
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(payload.array());
+            byte[] raw = new byte[rawLength];
+            int inflated = 0;
+            while (inflated < rawLength && !inflater.finished()) {
+                int read = inflater.inflate(raw, inflated, rawLength - inflated);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) return null;
+                inflated += read;
+            }
+
+            return inflated == rawLength ? raw : null;
+        } catch (DataFormatException e) {
+            return null;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static int blockLength(FileChannel reader, long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+        readFully(reader, header, offset);
+        return header.flip().getInt();
+    }
+
+    private static int readFully(FileChannel reader, ByteBuffer buffer, long offset) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = reader.read(buffer, offset + total);
+            if (read < 0) break;
+            total += read;
+        }
+
+        return total;
+    }
+
+    private static List<TransactionEvent> decode(byte[] raw) throws IOException {
+        List<TransactionEvent> events = new ArrayList<>();
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(raw))) {
+            while (input.available() > 0) events.add(TransactionEvent.read(input));
+        }
+
+        return events;
+    }
+
+    /**
+     * Parse the id of a segment from its file name.
+     * @param name the file name
+     * @return the id, or -1 if the name is not a segment's
+     */
+    static long parseId(String name) {
+        if (!name.startsWith(SegmentFilePrefix) || !name.endsWith(SegmentFileExtension)) return -1L;
+
+        try {
+            return Long.parseLong(name.substring(SegmentFilePrefix.length(), name.length() - SegmentFileExtension.length()));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * Growable list of block offsets of one account, in file order without repeats.
+     */
+    private static final class Offsets {
+        private long[] values;
+        private int size;
+
+        private Offsets(int capacity) {
+            values = new long[Math.max(1, capacity)];
+        }
+
+        private void add(long offset) {
+            if (size > 0 && values[size - 1] == offset) return;
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = offset;
+        }
+    }
+}
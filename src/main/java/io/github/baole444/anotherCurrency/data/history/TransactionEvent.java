@@ -0,0 +1,99 @@
+package io.github.baole444.anotherCurrency.data.history;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * A recorded balance change of one account.
+ * A transfer is recorded as one event for each side, each naming the other side as counterparty.
+ * @param time time of the change, in milliseconds since the epoch
+ * @param account the unique identifier of the changed player
+ * @param counterparty the unique identifier of the other side of a transfer, or null
+ * @param currency the canonical name of the currency
+ * @param delta the change of the balance, in minor units
+ * @param balance the balance after the change, in minor units
+ * @param scale the scale the units are in
+ * @param kind the operation that made the change
+ * @param source name of the plugin that asked for the change, or null if unknown
+ */
+public record TransactionEvent(
+        long time, UUID account, UUID counterparty, String currency,
+        long delta, long balance, int scale, Kind kind, String source
+) {
+    /**
+     * Operation that made a balance change.
+     */
+    public enum Kind {
+        /**
+         * The balance was set to an exact value.
+         */
+        SET,
+        /**
+         * An amount was added.
+         */
+        DEPOSIT,
+        /**
+         * An amount was taken.
+         */
+        WITHDRAW,
+        /**
+         * An amount was moved between two players.
+         */
+        TRANSFER,
+        /**
+         * An amount was added or taken as part of a batch.
+         */
+        BATCH,
+        /**
+         * The balance was changed by a server-wide economy operation.
+         */
+        ADJUST;
+
+        private static final Kind[] Values = values();
+    }
+
+    /**
+     * Write the event in its binary form.
+     * @param output the stream to write to
+     * @throws IOException if the stream fails
+     */
+    void write(DataOutput output) throws IOException {
+        output.writeLong(time);
+        output.writeLong(account.getMostSignificantBits());
+        output.writeLong(account.getLeastSignificantBits());
+        output.writeBoolean(counterparty != null);
+        if (counterparty != null) {
+            output.writeLong(counterparty.getMostSignificantBits());
+            output.writeLong(counterparty.getLeastSignificantBits());
+        }
+        output.writeUTF(currency);
+        output.writeLong(delta);
+        output.writeLong(balance);
+        output.writeByte(scale);
+        output.writeByte(kind.ordinal());
+        output.writeUTF(source != null ? source : "");
+    }
+
+    /**
+     * Read an event written by {@link #write(DataOutput)}.
+     * @param input the stream to read from
+     * @return the event
+     * @throws IOException if the stream fails or ends early
+     */
+    static TransactionEvent read(DataInput input) throws IOException {
+        long time = input.readLong();
+        UUID account = new UUID(input.readLong(), input.readLong());
+        UUID counterparty = input.readBoolean() ? new UUID(input.readLong(), input.readLong()) : null;
+        String currency = input.readUTF();
+        long delta = input.readLong();
+        long balance = input.readLong();
+        int scale = input.readByte();
+        int kind = input.readByte();
+        String source = input.readUTF();
+        if (kind < 0 || kind >= Kind.Values.length) throw new IOException(String.format("Unknown transaction kind %d", kind));
+
+        return new TransactionEvent(time, account, counterparty, currency, delta, balance, scale, Kind.Values[kind], source.isEmpty() ? null : source);
+    }
+}
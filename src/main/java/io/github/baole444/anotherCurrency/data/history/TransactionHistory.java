@@ -0,0 +1,316 @@
+package io.github.baole444.anotherCurrency.data.history;
+
+import io.github.baole444.anotherCurrency.data.storage.AtomicFileWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+
+/**
+ * Log of every balance change, kept in rotating compressed segment files.
+ * <p>
+ * Recording an event only puts it into a lock-free ring buffer, so balance changes never wait on disk.
+ * A single writer thread drains the buffer into blocks of events, compresses each block into the active segment
+ * and starts a new segment once the active one is large enough, deleting the oldest past the retention.
+ * If the writer falls behind and the buffer is full, new events are dropped and counted rather than blocking.
+ */
+public class TransactionHistory implements AutoCloseable {
+    /**
+     * Name of the directory that store history segments.
+     */
+    public static final String HistoryDirName = "history";
+    private static final int BlockEvents = 256;
+    private static final long BlockIntervalNanos = 1_000_000_000L;
+    private static final long IdleParkNanos = 10_000_000L;
+
+    private final File historyDir;
+    private final Logger logger;
+    private final long segmentBytes;
+    private final int maxSegments;
+    private final EventRingBuffer<TransactionEvent> buffer;
+    private final AtomicFileWriter writer;
+    private final Deflater deflater;
+    private final List<HistorySegment> segments;
+    private final List<TransactionEvent> drained;
+    private final ByteArrayOutputStream block;
+    private final DataOutputStream blockOutput;
+    private final Set<UUID> blockAccounts;
+    private final LongAdder recorded;
+    private final LongAdder dropped;
+    private HistorySegment active;
+    private int blockCount;
+    private long blockStart;
+    private Thread appender;
+    private volatile boolean running;
+
+    /**
+     * Initialize the history, {@link #open()} should be called before recording.
+     * @param historyDir the directory to store segments in
+     * @param logger the logger to report errors to
+     * @param bufferSize number of events the ring buffer holds before dropping
+     * @param segmentBytes compressed size a segment grows to before a new one is started, in bytes
+     * @param maxSegments number of segments kept, the oldest are deleted past it
+     */
+    public TransactionHistory(File historyDir, Logger logger, int bufferSize, long segmentBytes, int maxSegments) {
+        this.historyDir = historyDir;
+        this.logger = logger;
+        this.segmentBytes = Math.max(1L, segmentBytes);
+        this.maxSegments = Math.max(1, maxSegments);
+        buffer = new EventRingBuffer<>(bufferSize);
+        writer = new AtomicFileWriter(logger);
+        deflater = new Deflater(Deflater.BEST_SPEED);
+        segments = new ArrayList<>();
+        drained = new ArrayList<>();
+        block = new ByteArrayOutputStream();
+        blockOutput = new DataOutputStream(block);
+        blockAccounts = new HashSet<>();
+        recorded = new LongAdder();
+        dropped = new LongAdder();
+
+        if (!historyDir.exists() && !historyDir.mkdirs()) {
+            logger.warning(String.format("Failed to create %s directory, transactions might not be recorded.", HistoryDirName));
+        }
+    }
+
+    /**
+     * Load the existing segments, start a new active segment and start the writer thread.
+     * @throws IOException if the new segment cannot be created
+     */
+    public void open() throws IOException {
+        writer.clean(historyDir.toPath());
+        List<Long> ids = new ArrayList<>();
+        String[] names = historyDir.list();
+        if (names != null) {
+            for (String name : names) {
+                long id = HistorySegment.parseId(name);
+                if (id >= 0) ids.add(id);
+            }
+        }
+        ids.sort(null);
+
+        synchronized (this) {
+            for (long id : ids) {
+                try {
+                    segments.add(HistorySegment.open(historyDir, id, writer, logger));
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, String.format("Skipping unreadable history segment %d", id), e);
+                }
+            }
+
+            long nextId = ids.isEmpty() ? 1L : ids.get(ids.size() - 1) + 1L;
+            active = HistorySegment.create(historyDir, nextId);
+            segments.add(active);
+            retain();
+        }
+
+        running = true;
+        appender = new Thread(this::runAppender, "AnotherCurrency-History");
+        appender.setDaemon(true);
+        appender.start();
+    }
+
+    /**
+     * Record a balance change, never blocks.
+     * @param event the change to record
+     * @return false if the buffer was full and the event was dropped
+     */
+    public boolean record(TransactionEvent event) {
+        if (buffer.offer(event)) {
+            recorded.increment();
+            return true;
+        }
+
+        dropped.increment();
+        return false;
+    }
+
+    /**
+     * Get a page of the recent balance changes of a player, newest first.
+     * Only the blocks indexed for the player are read, events still waiting in the ring buffer are not included.
+     * The index is copied under the writer's lock and the blocks are read after releasing it,
+     * so a slow read never holds up the writer thread.
+     * @param account the unique identifier of the player
+     * @param page the page number, starting from 1
+     * @param pageSize number of events per page
+     * @return the events of the page, empty if the page is past the end
+     */
+    public List<TransactionEvent> history(UUID account, int page, int pageSize) {
+        if (page < 1 || pageSize < 1) return List.of();
+
+        List<HistorySegment> snapshot;
+        List<long[]> snapshotOffsets;
+        synchronized (this) {
+            flushBlock();
+            snapshot = new ArrayList<>(segments);
+            snapshotOffsets = new ArrayList<>(snapshot.size());
+            for (HistorySegment segment : snapshot) snapshotOffsets.add(segment.offsets(account));
+        }
+
+        long skip = (long) (page - 1) * pageSize;
+        List<TransactionEvent> events = new ArrayList<>(pageSize);
+        for (int i = snapshot.size() - 1; i >= 0; i--) {
+            HistorySegment segment = snapshot.get(i);
+            long[] offsets = snapshotOffsets.get(i);
+            for (int j = offsets.length - 1; j >= 0; j--) {
+                List<TransactionEvent> blockEvents;
+                try {
+                    blockEvents = segment.read(offsets[j]);
+                } catch (NoSuchFileException e) {
+                    // Deleted past the retention since the snapshot, so is every older segment
+                    return events;
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, String.format("Failed to read history of %s", account), e);
+                    continue;
+                }
+
+                for (int k = blockEvents.size() - 1; k >= 0; k--) {
+                    TransactionEvent event = blockEvents.get(k);
+                    if (!event.account().equals(account)) continue;
+                    if (skip > 0) {
+                        skip--;
+                        continue;
+                    }
+
+                    events.add(event);
+                    if (events.size() == pageSize) return events;
+                }
+            }
+        }
+
+        return events;
+    }
+
+    /**
+     * Get the number of events recorded since startup.
+     * @return number of recorded events
+     */
+    public long recorded() {
+        return recorded.sum();
+    }
+
+    /**
+     * Get the number of events dropped because the ring buffer was full.
+     * @return number of dropped events
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Get the number of events waiting in the ring buffer.
+     * @return size of the ring buffer
+     */
+    public int pending() {
+        return buffer.size();
+    }
+
+    /**
+     * Stop the writer thread, write every buffered event and seal the active segment.
+     */
+    @Override
+    public void close() {
+        running = false;
+        if (appender != null) {
+            LockSupport.unpark(appender);
+            try {
+                appender.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized (this) {
+            while (buffer.drain(drained::add, BlockEvents) > 0) appendDrained();
+            flushBlock();
+            if (active != null) {
+                try {
+                    active.seal(writer);
+                } catch (IOException e) {
+                    logger.log(Level.SEVERE, "Failed to seal the transaction history segment", e);
+                }
+                active = null;
+            }
+        }
+
+        deflater.end();
+    }
+
+    private void runAppender() {
+        while (running) {
+            int count = buffer.drain(drained::add, BlockEvents);
+            synchronized (this) {
+                if (count > 0) appendDrained();
+                else if (blockCount > 0 && System.nanoTime() - blockStart >= BlockIntervalNanos) flushBlock();
+            }
+
+            if (count == 0) LockSupport.parkNanos(IdleParkNanos);
+        }
+    }
+
+    /**
+     * Move drained events into the current block, flushing it every {@link #BlockEvents} events.
+     */
+    private void appendDrained() {
+        for (TransactionEvent event : drained) {
+            try {
+                event.write(blockOutput);
+            } catch (IOException e) {
+                // Writing into memory never fails
+                throw new IllegalStateException(e);
+            }
+
+            if (blockCount++ == 0) blockStart = System.nanoTime();
+            blockAccounts.add(event.account());
+            if (blockCount >= BlockEvents) flushBlock();
+        }
+
+        drained.clear();
+    }
+
+    private void flushBlock() {
+        if (blockCount == 0 || active == null) return;
+
+        try {
+            active.append(block.toByteArray(), blockAccounts, deflater);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, String.format("Failed to write %d transactions to history, they are lost.", blockCount), e);
+        }
+
+        block.reset();
+        blockAccounts.clear();
+        blockCount = 0;
+        if (active.size() >= segmentBytes) rotate();
+    }
+
+    private void rotate() {
+        try {
+            active.seal(writer);
+            active = HistorySegment.create(historyDir, active.id() + 1L);
+            segments.add(active);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Failed to start a new transaction history segment, transactions are not recorded.", e);
+            active = null;
+        }
+
+        retain();
+    }
+
+    private void retain() {
+        while (segments.size() > maxSegments) {
+            HistorySegment oldest = segments.remove(0);
+            if (!oldest.delete()) logger.warning(String.format("Failed to delete old history segment %d", oldest.id()));
+        }
+    }
+}
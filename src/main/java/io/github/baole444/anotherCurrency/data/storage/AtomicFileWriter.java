@@ -0,0 +1,138 @@
+package io.github.baole444.anotherCurrency.data.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Crash-safe writer replacing whole files, a reader only ever sees the previous or the new content.
+ * <p>
+ * Content goes to a temporary file next to the target, which is forced to disk and renamed over the target.
+ * The rename is only durable once the directory is synced, {@link #sync(Path)} groups those syncs
+ * so concurrent writers to the same directory share one sync instead of paying one each.
+ */
+public class AtomicFileWriter {
+    /**
+     * Extension appended to the name of the target for its temporary file.
+     */
+    public static final String TempFileExtension = ".tmp";
+
+    private final Logger logger;
+    private final ConcurrentHashMap<Path, DirectorySync> directories;
+
+    /**
+     * Initialize atomic file writer instance.
+     * @param logger the logger to report to
+     */
+    public AtomicFileWriter(Logger logger) {
+        this.logger = logger;
+        directories = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Replace the content of a file, without syncing its directory.
+     * Call {@link #sync(Path)} on the parent directory before relying on the rename surviving a crash.
+     * @param target the file to replace
+     * @param content the new content
+     * @throws IOException if the temporary file could not be written or moved, the target is left untouched
+     */
+    public void write(Path target, String content) throws IOException {
+        write(target, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Replace the content of a file with raw bytes, without syncing its directory.
+     * @param target the file to replace
+     * @param content the new content
+     * @throws IOException if the temporary file could not be written or moved, the target is left untouched
+     * @see #write(Path, String)
+     */
+    public void write(Path target, byte[] content) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + TempFileExtension);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) channel.write(buffer);
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Make every rename into a directory that finished before this call durable.
+     * If another thread is already syncing, this waits for the sync after it, which covers this call and every other waiting one.
+     * @param directory the directory to sync
+     */
+    public void sync(Path directory) {
+        directories.computeIfAbsent(directory, DirectorySync::new).sync();
+    }
+
+    /**
+     * Delete temporary files left behind by writes interrupted by a crash, their targets still hold the previous content.
+     * @param directory the directory to clean
+     * @return number of files deleted
+     */
+    public int clean(Path directory) {
+        int deleted = 0;
+        try (DirectoryStream<Path> temps = Files.newDirectoryStream(directory, "*" + TempFileExtension)) {
+            for (Path temp : temps) {
+                if (Files.deleteIfExists(temp)) deleted++;
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, String.format("Failed to clean temporary files in %s", directory), e);
+        }
+
+        return deleted;
+    }
+
+    /**
+     * Group commit of directory syncs, every call takes a ticket and returns once a sync started after it has finished.
+     */
+    private final class DirectorySync {
+        private final Path directory;
+        private final AtomicLong requested = new AtomicLong();
+        private long synced;
+        // Platforms that cannot open a directory for syncing, such as Windows, rely on the rename alone
+        private volatile boolean supported = true;
+
+        private DirectorySync(Path directory) {
+            this.directory = directory;
+        }
+
+        private void sync() {
+            long ticket = requested.incrementAndGet();
+            synchronized (this) {
+                if (synced >= ticket || !supported) return;
+
+                long covered = requested.get();
+                try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+                    channel.force(true);
+                } catch (AccessDeniedException e) {
+                    supported = false;
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, String.format("Failed to sync directory %s", directory), e);
+                }
+                synced = covered;
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package io.github.baole444.anotherCurrency.data.storage;
+
+import io.github.baole444.anotherCurrency.configurations.Currency;
+import io.github.baole444.anotherCurrency.data.PlayerData;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+import java.util.logging.Logger;
+
+/**
+ * Upgrader of stored player data documents to {@link PlayerData#DataVersion}, one version at a time.
+ * <p>
+ * Documents are upgraded in memory when they are loaded, so a format change never needs every file rewritten at once.
+ * Each step takes a document of version {@code n} to version {@code n + 1}, add a case to {@link #upgrade(ConfigurationSection, int)}
+ * when bumping {@link PlayerData#DataVersion}.
+ */
+public class PlayerDataMigrator {
+    /**
+     * Version of documents written before the data version was stored.
+     */
+    public static final int UnversionedDataVersion = 1;
+    private final Logger logger;
+    private final ToIntFunction<String> scales;
+
+    /**
+     * Initialize player data migrator instance.
+     * @param logger the logger to report to
+     * @param scales lookup of the current scale of a currency by its code name
+     */
+    public PlayerDataMigrator(Logger logger, ToIntFunction<String> scales) {
+        this.logger = logger;
+        this.scales = scales;
+    }
+
+    /**
+     * Get the version a document was written with.
+     * @param document the stored player data
+     * @return the data version
+     */
+    public static int version(ConfigurationSection document) {
+        return document.getInt(PlayerData.DataVersionKey, UnversionedDataVersion);
+    }
+
+    /**
+     * Upgrade a document to the current version in place.
+     * A document of a newer version than this plugin knows is left as it is.
+     * @param document the stored player data
+     * @return true if the document was changed
+     */
+    public boolean migrate(ConfigurationSection document) {
+        int version = version(document);
+        if (version > PlayerData.DataVersion) {
+            logger.warning(String.format("Player data %s was written by a newer version (%d), reading it as version %d.",
+                    document.getString(PlayerData.PlayerNameKey, "unknown"), version, PlayerData.DataVersion));
+            return false;
+        }
+
+        if (version == PlayerData.DataVersion) return false;
+
+        for (int from = version; from < PlayerData.DataVersion; from++) upgrade(document, from);
+        document.set(PlayerData.DataVersionKey, PlayerData.DataVersion);
+        return true;
+    }
+
+    private void upgrade(ConfigurationSection document, int from) {
+        switch (from) {
+            case 1 -> upgradeToUnits(document);
+            default -> throw new IllegalStateException(String.format("No upgrade from player data version %d", from));
+        }
+    }
+
+    /**
+     * Version 2 stores balances as minor units together with the scale they were written in, instead of decimal amounts.
+     */
+    private void upgradeToUnits(ConfigurationSection document) {
+        ConfigurationSection balances = document.getConfigurationSection(PlayerData.BalancesKey);
+        if (balances == null) return;
+
+        Map<String, Long> units = new HashMap<>();
+        Map<String, Integer> balanceScales = new HashMap<>();
+        for (String code : balances.getKeys(false)) {
+            int scale = scales.applyAsInt(code);
+            units.put(code, Currency.toUnits(balances.getDouble(code, 0.0), scale));
+            balanceScales.put(code, scale);
+        }
+
+        document.createSection(PlayerData.BalancesKey, units);
+        document.createSection(PlayerData.ScalesKey, balanceScales);
+    }
+}
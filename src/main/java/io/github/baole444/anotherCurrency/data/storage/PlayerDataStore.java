@@ -0,0 +1,130 @@
+package io.github.baole444.anotherCurrency.data.storage;
+
+import io.github.baole444.anotherCurrency.data.PlayerData;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Storage backend for player data.
+ * Implementations must be safe to call from multiple threads.
+ */
+public interface PlayerDataStore {
+    /**
+     * Get the name of this storage backend.
+     * @return the name used in {@code config.yml}
+     */
+    String name();
+
+    /**
+     * Load a player data from storage.
+     * @param uuid the unique identifier of the player
+     * @param fallbackName the name to use if the stored data does not have one
+     * @return the loaded player data or null if there is none
+     */
+    PlayerData load(UUID uuid, String fallbackName);
+
+    /**
+     * Load a player data from storage, telling a player with no data apart from one whose data cannot be read.
+     * The default treats a player {@link #load(UUID, String)} returns null for while {@link #exists(UUID)} as unreadable.
+     * @param uuid the unique identifier of the player
+     * @param fallbackName the name to use if the stored data does not have one
+     * @return the loaded player data or null if there is none
+     * @throws IOException if the stored data cannot be read
+     */
+    default PlayerData read(UUID uuid, String fallbackName) throws IOException {
+        PlayerData data = load(uuid, fallbackName);
+        if (data == null && exists(uuid)) throw new IOException(String.format("Stored player data of %s cannot be read", uuid));
+        return data;
+    }
+
+    /**
+     * Save a player data to storage.
+     * @param data the player data to save
+     * @return true if save successfully
+     */
+    boolean save(PlayerData data);
+
+    /**
+     * Save many player data to storage at once.
+     * @param data the player data to save
+     * @return true if all are saved successfully
+     */
+    default boolean saveAll(Collection<PlayerData> data) {
+        boolean success = true;
+        for (PlayerData entry : data) success &= save(entry);
+        return success;
+    }
+
+    /**
+     * Delete a player data from storage.
+     * @param uuid the unique identifier of the player
+     * @return true if delete successfully or there is nothing to delete
+     */
+    boolean delete(UUID uuid);
+
+    /**
+     * Check if a player has data in storage.
+     * @param uuid the unique identifier of the player
+     * @return true if stored
+     */
+    boolean exists(UUID uuid);
+
+    /**
+     * Get the unique identifiers of every stored player.
+     * @return a collection of stored players' UUID
+     */
+    Collection<UUID> uuids();
+
+    /**
+     * Read every stored player data, the consumer may be called from several threads at once.
+     * The default reads players one by one through {@link #load(UUID, String)}.
+     * @param parallelism maximum number of threads reading at once
+     * @param consumer receiver of each stored player data, must be thread-safe
+     * @return number of player data read
+     */
+    default int scan(int parallelism, Consumer<PlayerData> consumer) {
+        int scanned = 0;
+        for (UUID uuid : uuids()) {
+            PlayerData data = load(uuid, null);
+            if (data == null) continue;
+
+            consumer.accept(data);
+            scanned++;
+        }
+
+        return scanned;
+    }
+
+    /**
+     * Get the players whose stored data may be written by an older data version,
+     * the default assumes the storage upgrades itself when opened.
+     * @return unique identifiers of possibly outdated players, empty if every player is up to date
+     */
+    default Collection<UUID> outdated() {
+        return List.of();
+    }
+
+    /**
+     * Rewrite a stored player data in the current data version if it is older.
+     * @param uuid the unique identifier of the player
+     * @return true if it was rewritten
+     */
+    default boolean upgrade(UUID uuid) {
+        return false;
+    }
+
+    /**
+     * Record that every stored player data is in the current data version,
+     * so {@link #outdated()} no longer lists them.
+     */
+    default void markUpgraded() {}
+
+    /**
+     * Release any resource held by the storage.
+     */
+    default void close() {}
+}
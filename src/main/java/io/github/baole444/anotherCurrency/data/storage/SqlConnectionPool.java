@@ -0,0 +1,155 @@
+package io.github.baole444.anotherCurrency.data.storage;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Small fixed-size JDBC connection pool, connections are opened lazily up to the pool size.
+ */
+public class SqlConnectionPool implements AutoCloseable {
+    /**
+     * Longest time to wait for a free connection, in seconds.
+     */
+    public static final long BorrowTimeout = 10L;
+
+    private final String url;
+    private final int size;
+    private final ConnectionSetup setup;
+    private final BlockingQueue<Connection> idle;
+    private final AtomicInteger opened;
+    private volatile boolean closed;
+
+    /**
+     * Setup applied to every newly opened connection.
+     */
+    @FunctionalInterface
+    public interface ConnectionSetup {
+        /**
+         * Prepare the connection before it is first used.
+         * @param connection the new connection
+         * @throws SQLException if the setup failed
+         */
+        void setup(Connection connection) throws SQLException;
+    }
+
+    /**
+     * Work to run with a borrowed connection.
+     * @param <T> type of the result
+     */
+    @FunctionalInterface
+    public interface SqlWork<T> {
+        /**
+         * Run the work.
+         * @param connection the borrowed connection
+         * @return the result of the work
+         * @throws SQLException if the work failed
+         */
+        T run(Connection connection) throws SQLException;
+    }
+
+    /**
+     * Initialize a connection pool.
+     * @param url the JDBC url to connect to
+     * @param size maximum number of opened connections
+     * @param setup setup applied to each new connection
+     */
+    public SqlConnectionPool(String url, int size, ConnectionSetup setup) {
+        this.url = url;
+        this.size = Math.max(1, size);
+        this.setup = setup;
+        idle = new ArrayBlockingQueue<>(this.size);
+        opened = new AtomicInteger();
+    }
+
+    /**
+     * Run some work with a connection from the pool, the connection is returned afterward.
+     * @param work the work to run
+     * @param <T> type of the result
+     * @return the result of the work
+     * @throws SQLException if no connection is available or the work failed
+     */
+    public <T> T withConnection(SqlWork<T> work) throws SQLException {
+        Connection connection = borrow();
+        try {
+            return work.run(connection);
+        } finally {
+            release(connection);
+        }
+    }
+
+    private Connection borrow() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+
+        Connection connection = idle.poll();
+        if (connection != null) return connection;
+
+        if (opened.incrementAndGet() <= size) {
+            try {
+                return open();
+            } catch (SQLException e) {
+                opened.decrementAndGet();
+                throw e;
+            }
+        }
+
+        opened.decrementAndGet();
+        try {
+            connection = idle.poll(BorrowTimeout, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        if (connection == null) throw new SQLException(String.format("Timed out waiting %ds for a database connection", BorrowTimeout));
+        return connection;
+    }
+
+    private void release(Connection connection) {
+        try {
+            if (closed || connection.isClosed()) {
+                discard(connection);
+                return;
+            }
+
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            discard(connection);
+            return;
+        }
+
+        if (!idle.offer(connection)) discard(connection);
+    }
+
+    private Connection open() throws SQLException {
+        Connection connection = DriverManager.getConnection(url);
+        try {
+            setup.setup(connection);
+            return connection;
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    private void discard(Connection connection) {
+        opened.decrementAndGet();
+        try {
+            connection.close();
+        } catch (SQLException ignored) {}
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Connection connection;
+        while ((connection = idle.poll()) != null) discard(connection);
+    }
+}
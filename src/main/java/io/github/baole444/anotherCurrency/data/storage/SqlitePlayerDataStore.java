@@ -0,0 +1,351 @@
+package io.github.baole444.anotherCurrency.data.storage;
+
+import io.github.baole444.anotherCurrency.configurations.Currency;
+import io.github.baole444.anotherCurrency.data.PlayerData;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Player data storage in an embedded SQLite database file.
+ * The SQLite JDBC driver is provided by the server.
+ */
+public class SqlitePlayerDataStore implements PlayerDataStore {
+    /**
+     * Name of the database file inside the plugin's data folder.
+     */
+    public static final String DatabaseFileName = "players.db";
+    private static final String PlayersTable = "anc_players";
+    private static final String BalancesTable = "anc_balances";
+
+    private static final String CreatePlayers = "CREATE TABLE IF NOT EXISTS " + PlayersTable + " ("
+            + "uuid CHAR(36) PRIMARY KEY, player_name VARCHAR(16), playtime BIGINT NOT NULL DEFAULT 0, data_version INT NOT NULL)";
+    private static final String CreateBalances = "CREATE TABLE IF NOT EXISTS " + BalancesTable + " ("
+            + "uuid CHAR(36) NOT NULL, currency VARCHAR(64) NOT NULL, balance DOUBLE NOT NULL, units BIGINT, scale INT, PRIMARY KEY (uuid, currency))";
+    private static final String BalanceColumns = "PRAGMA table_info(" + BalancesTable + ")";
+    private static final String AddUnitsColumn = "ALTER TABLE " + BalancesTable + " ADD COLUMN units BIGINT";
+    private static final String AddScaleColumn = "ALTER TABLE " + BalancesTable + " ADD COLUMN scale INT";
+    private static final String SelectPlayer = "SELECT player_name, playtime FROM " + PlayersTable + " WHERE uuid = ?";
+    private static final String SelectBalances = "SELECT currency, balance, units, scale FROM " + BalancesTable + " WHERE uuid = ?";
+    private static final String SelectUuids = "SELECT uuid FROM " + PlayersTable;
+    private static final String SelectAllPlayers = "SELECT uuid, player_name, playtime FROM " + PlayersTable;
+    private static final String SelectAllBalances = "SELECT currency, balance, units, scale, uuid FROM " + BalancesTable;
+    private static final String UpsertPlayer = "INSERT INTO " + PlayersTable + " (uuid, player_name, playtime, data_version) VALUES (?, ?, ?, ?) "
+            + "ON CONFLICT(uuid) DO UPDATE SET player_name = excluded.player_name, playtime = excluded.playtime, data_version = excluded.data_version";
+    private static final String DeleteBalances = "DELETE FROM " + BalancesTable + " WHERE uuid = ?";
+    private static final String InsertBalance = "INSERT INTO " + BalancesTable + " (uuid, currency, balance, units, scale) VALUES (?, ?, ?, ?, ?)";
+    private static final String DeletePlayer = "DELETE FROM " + PlayersTable + " WHERE uuid = ?";
+
+    private final SqlConnectionPool pool;
+    private final Logger logger;
+    private final ToIntFunction<String> scales;
+
+    /**
+     * Initialize SQLite player data store, creating the tables if needed.
+     * @param databaseFile the database file
+     * @param logger the logger to report errors to
+     * @param poolSize maximum number of opened connections
+     * @param scales lookup of the current scale of a currency by its code name
+     */
+    public SqlitePlayerDataStore(File databaseFile, Logger logger, int poolSize, ToIntFunction<String> scales) {
+        this.logger = logger;
+        this.scales = scales;
+        pool = new SqlConnectionPool("jdbc:sqlite:" + databaseFile.getAbsolutePath(), poolSize, connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("PRAGMA synchronous=NORMAL");
+                statement.execute("PRAGMA busy_timeout=5000");
+            }
+        });
+
+        try {
+            pool.withConnection(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(CreatePlayers);
+                    statement.execute(CreateBalances);
+                }
+
+                addUnitColumns(connection);
+                return null;
+            });
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, String.format("Failed to initialize %s, player data might not able to be saved correctly.", DatabaseFileName), e);
+        }
+    }
+
+    @Override
+    public String name() {
+        return StorageType.SQLITE.configName();
+    }
+
+    @Override
+    public PlayerData load(UUID uuid, String fallbackName) {
+        try {
+            return read(uuid, fallbackName);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, String.format("Failed to load player data for %s", uuid), e.getCause());
+            return null;
+        }
+    }
+
+    @Override
+    public PlayerData read(UUID uuid, String fallbackName) throws IOException {
+        String id = uuid.toString();
+        try {
+            return pool.withConnection(connection -> {
+                String playerName;
+                long playtime;
+                try (PreparedStatement statement = connection.prepareStatement(SelectPlayer)) {
+                    statement.setString(1, id);
+                    try (ResultSet result = statement.executeQuery()) {
+                        if (!result.next()) return null;
+                        playerName = result.getString(1);
+                        playtime = result.getLong(2);
+                    }
+                }
+
+                PlayerData data = new PlayerData(uuid, playerName != null ? playerName : fallbackName, playtime);
+                try (PreparedStatement statement = connection.prepareStatement(SelectBalances)) {
+                    statement.setString(1, id);
+                    try (ResultSet result = statement.executeQuery()) {
+                        while (result.next()) readBalance(data, result);
+                    }
+                }
+
+                return data;
+            });
+        } catch (SQLException e) {
+            throw new IOException(String.format("Failed to query player data for %s", uuid), e);
+        }
+    }
+
+    /**
+     * Read every player with two queries instead of two per player, the rows are read by one connection.
+     * @param parallelism ignored, SQLite reads are sequential
+     * @param consumer receiver of each stored player data, must be thread-safe
+     * @return number of player data read
+     */
+    @Override
+    public int scan(int parallelism, Consumer<PlayerData> consumer) {
+        try {
+            Collection<PlayerData> scanned = pool.withConnection(connection -> {
+                Map<UUID, PlayerData> players = new HashMap<>();
+                try (Statement statement = connection.createStatement();
+                     ResultSet result = statement.executeQuery(SelectAllPlayers)) {
+                    while (result.next()) {
+                        UUID uuid = UUID.fromString(result.getString(1));
+                        players.put(uuid, new PlayerData(uuid, result.getString(2), result.getLong(3)));
+                    }
+                }
+
+                try (Statement statement = connection.createStatement();
+                     ResultSet result = statement.executeQuery(SelectAllBalances)) {
+                    while (result.next()) {
+                        PlayerData data = players.get(UUID.fromString(result.getString(5)));
+                        if (data != null) readBalance(data, result);
+                    }
+                }
+
+                return players.values();
+            });
+
+            for (PlayerData data : scanned) consumer.accept(data);
+            return scanned.size();
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, String.format("Failed to scan %s", DatabaseFileName), e);
+            return 0;
+        }
+    }
+
+    @Override
+    public boolean save(PlayerData data) {
+        return saveAll(List.of(data));
+    }
+
+    /**
+     * Save many player data in one transaction using batched statements.
+     * @param data the player data to save
+     * @return true if all are saved successfully
+     */
+    @Override
+    public boolean saveAll(Collection<PlayerData> data) {
+        if (data.isEmpty()) return true;
+
+        try {
+            return pool.withConnection(connection -> {
+                connection.setAutoCommit(false);
+                try (PreparedStatement upsert = connection.prepareStatement(UpsertPlayer);
+                     PreparedStatement clear = connection.prepareStatement(DeleteBalances);
+                     PreparedStatement insert = connection.prepareStatement(InsertBalance)) {
+                    for (PlayerData entry : data) {
+                        String id = entry.uuid().toString();
+                        upsert.setString(1, id);
+                        upsert.setString(2, entry.playerName());
+                        upsert.setLong(3, entry.playtime());
+                        upsert.setInt(4, PlayerData.DataVersion);
+                        upsert.addBatch();
+
+                        clear.setString(1, id);
+                        clear.addBatch();
+
+                        Map<String, Long> balances = new LinkedHashMap<>();
+                        entry.forEachBalance(balances::put);
+                        for (Map.Entry<String, Long> balance : balances.entrySet()) {
+                            int scale = entry.storedScale(balance.getKey(), scales);
+                            long units = balance.getValue();
+                            insert.setString(1, id);
+                            insert.setString(2, balance.getKey());
+                            insert.setDouble(3, Currency.toAmount(units, scale));
+                            insert.setLong(4, units);
+                            insert.setInt(5, scale);
+                            insert.addBatch();
+                        }
+                    }
+
+                    upsert.executeBatch();
+                    clear.executeBatch();
+                    insert.executeBatch();
+                    connection.commit();
+                    return true;
+                } catch (SQLException | RuntimeException e) {
+                    // Restoring auto-commit commits the open transaction, so a failed one must be rolled back first
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            });
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, String.format("Failed to save %d player data", data.size()), e);
+            return false;
+        }
+    }
+
+    @Override
+    public boolean delete(UUID uuid) {
+        String id = uuid.toString();
+        try {
+            return pool.withConnection(connection -> {
+                connection.setAutoCommit(false);
+                try (PreparedStatement balances = connection.prepareStatement(DeleteBalances);
+                     PreparedStatement player = connection.prepareStatement(DeletePlayer)) {
+                    balances.setString(1, id);
+                    balances.executeUpdate();
+                    player.setString(1, id);
+                    player.executeUpdate();
+                    connection.commit();
+                    return true;
+                } catch (SQLException | RuntimeException e) {
+                    // Restoring auto-commit commits the open transaction, so a failed one must be rolled back first
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            });
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, String.format("Failed to delete player data for %s", uuid), e);
+            return false;
+        }
+    }
+
+    @Override
+    public boolean exists(UUID uuid) {
+        try {
+            return pool.withConnection(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(SelectPlayer)) {
+                    statement.setString(1, uuid.toString());
+                    try (ResultSet result = statement.executeQuery()) {
+                        return result.next();
+                    }
+                }
+            });
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, String.format("Failed to check player data for %s", uuid), e);
+            return false;
+        }
+    }
+
+    @Override
+    public Collection<UUID> uuids() {
+        try {
+            return pool.withConnection(connection -> {
+                List<UUID> uuids = new ArrayList<>();
+                try (Statement statement = connection.createStatement();
+                     ResultSet result = statement.executeQuery(SelectUuids)) {
+                    while (result.next()) uuids.add(UUID.fromString(result.getString(1)));
+                }
+
+                return uuids;
+            });
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Failed to list stored player data", e);
+            return List.of();
+        }
+    }
+
+    /**
+     * Read the balance of a row selected as {@code currency, balance, units, scale} into the player data.
+     * @param data the player data to set the balance of
+     * @param result the result positioned on the row
+     * @throws SQLException if the row cannot be read
+     */
+    private void readBalance(PlayerData data, ResultSet result) throws SQLException {
+        String code = result.getString(1);
+        int scale = scales.applyAsInt(code);
+        long units = result.getLong(3);
+        // Rows written before minor units existed only have the decimal balance
+        if (result.wasNull()) {
+            data.restoreBalance(code, Currency.toUnits(result.getDouble(2), scale), scale, scales);
+            return;
+        }
+
+        int storedScale = result.getInt(4);
+        data.restoreBalance(code, units, result.wasNull() ? scale : storedScale, scales);
+    }
+
+    /**
+     * Add the minor unit columns to a balance table created by an older version.
+     * The decimal balance column is kept up to date for anyone reading the database directly.
+     * @param connection the connection to alter the table with
+     * @throws SQLException if the table could not be inspected or altered
+     */
+    private void addUnitColumns(Connection connection) throws SQLException {
+        boolean hasUnits = false;
+        boolean hasScale = false;
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery(BalanceColumns)) {
+            while (result.next()) {
+                String column = result.getString("name");
+                if ("units".equalsIgnoreCase(column)) hasUnits = true;
+                else if ("scale".equalsIgnoreCase(column)) hasScale = true;
+            }
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            if (!hasUnits) statement.execute(AddUnitsColumn);
+            if (!hasScale) statement.execute(AddScaleColumn);
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.baole444.anotherCurrency.data.storage;
+
+import io.github.baole444.anotherCurrency.data.PlayerData;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * One-shot copy of every player data from one storage backend to another.
+ */
+public class StorageMigrator {
+    /**
+     * Number of player data saved to the target in one batch.
+     */
+    public static final int BatchSize = 500;
+    private final Logger logger;
+
+    /**
+     * Initialize storage migrator instance.
+     * @param logger the logger to report progress to
+     */
+    public StorageMigrator(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Copy all player data from the source store into the target store,
+     * existing data of the same player in the target is overwritten.
+     * @param source the store to read from
+     * @param target the store to write to
+     * @return true if every player data is copied successfully
+     */
+    public boolean migrate(PlayerDataStore source, PlayerDataStore target) {
+        logger.info(String.format("Migrating player data from %s to %s...", source.name(), target.name()));
+        long startTime = System.currentTimeMillis();
+        Collection<UUID> uuids = source.uuids();
+        List<PlayerData> batch = new ArrayList<>(BatchSize);
+        boolean success = true;
+        int copied = 0;
+
+        for (UUID uuid : uuids) {
+            PlayerData data = source.load(uuid, null);
+            if (data == null) continue;
+
+            batch.add(data);
+            if (batch.size() < BatchSize) continue;
+
+            success &= target.saveAll(batch);
+            copied += batch.size();
+            batch.clear();
+            logger.info(String.format("Migrated %d/%d player data.", copied, uuids.size()));
+        }
+
+        success &= target.saveAll(batch);
+        copied += batch.size();
+
+        long finishTime = System.currentTimeMillis();
+        logger.info(String.format("Migrated %d player data to %s. Took %dms.", copied, target.name(), finishTime - startTime));
+        return success;
+    }
+}
@@ -0,0 +1,63 @@
+package io.github.baole444.anotherCurrency.data.storage;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.File;
+import java.util.function.ToIntFunction;
+
+/**
+ * Supported player data storage backends.
+ */
+public enum StorageType {
+    /**
+     * One YAML file per player under {@link YamlPlayerDataStore#PlayerDataDirName}.
+     */
+    YAML("yaml"),
+
+    /**
+     * Embedded SQLite database file {@link SqlitePlayerDataStore#DatabaseFileName}.
+     */
+    SQLITE("sqlite");
+
+    private final String configName;
+
+    StorageType(String configName) {
+        this.configName = configName;
+    }
+
+    /**
+     * Get the name of this storage type in {@code config.yml}.
+     * @return the config name
+     */
+    public String configName() {
+        return configName;
+    }
+
+    /**
+     * Find the storage type with the given config name.
+     * @param name the config name, case-insensitive
+     * @return the storage type or null if there is none
+     */
+    public static StorageType fromName(String name) {
+        if (name == null) return null;
+        for (StorageType type : values()) {
+            if (type.configName.equalsIgnoreCase(name.trim())) return type;
+        }
+
+        return null;
+    }
+
+    /**
+     * Open a store of this type inside the plugin's data folder.
+     * @param plugin the ANC plugin's instance
+     * @param poolSize maximum number of connections for database backends
+     * @param scales lookup of the current scale of a currency by its code name
+     * @return a new opened store
+     */
+    public PlayerDataStore open(JavaPlugin plugin, int poolSize, ToIntFunction<String> scales) {
+        return switch (this) {
+            case YAML -> new YamlPlayerDataStore(new File(plugin.getDataFolder(), YamlPlayerDataStore.PlayerDataDirName), plugin.getLogger(), scales);
+            case SQLITE -> new SqlitePlayerDataStore(new File(plugin.getDataFolder(), SqlitePlayerDataStore.DatabaseFileName), plugin.getLogger(), poolSize, scales);
+        };
+    }
+}
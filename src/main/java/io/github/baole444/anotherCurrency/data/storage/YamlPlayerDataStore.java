@@ -0,0 +1,468 @@
+package io.github.baole444.anotherCurrency.data.storage;
+
+import io.github.baole444.anotherCurrency.configurations.Currency;
+import io.github.baole444.anotherCurrency.data.PlayerData;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Player data storage of one YAML file per player.
+ * <p>
+ * Files are sharded by the first four hex digits of the unique identifier, as {@code players/ab/cd/{uuid}.yml},
+ * so no directory grows past a few files even with hundreds of thousands of players.
+ * Files of the older flat layout, directly in {@code players/}, are still found and are moved into their shard
+ * on their next save or by {@link #upgrade(UUID)}.
+ */
+public class YamlPlayerDataStore implements PlayerDataStore {
+    /**
+     * Name of the directory that store player data.
+     */
+    public static final String PlayerDataDirName = "players";
+
+    /**
+     * Format for the name of each player data file, which is {@code {uuid}.yml}.
+     */
+    public static final String PlayerFileNameFormat = "%s.yml";
+    private static final String PlayerFileExtension = ".yml";
+
+    /**
+     * Name of the file recording the data version every player file was upgraded to.
+     */
+    public static final String DataVersionFileName = ".data-version";
+    private static final int FileLockStripes = 64;
+    private static final int ShardDigits = 2;
+    private static final int ShardLevels = 2;
+
+    private final File playersDir;
+    private final Logger logger;
+    private final ToIntFunction<String> scales;
+    private final PlayerDataMigrator migrator;
+    private final AtomicFileWriter writer;
+    private final Object[] fileLocks;
+    private final ConcurrentHashMap<File, Boolean> cleanedShards;
+
+    /**
+     * Initialize YAML player data store.
+     * @param playersDir the directory to store player files in
+     * @param logger the logger to report errors to
+     * @param scales lookup of the current scale of a currency by its code name
+     */
+    public YamlPlayerDataStore(File playersDir, Logger logger, ToIntFunction<String> scales) {
+        this.playersDir = playersDir;
+        this.logger = logger;
+        this.scales = scales;
+        migrator = new PlayerDataMigrator(logger, scales);
+        writer = new AtomicFileWriter(logger);
+        fileLocks = new Object[FileLockStripes];
+        for (int i = 0; i < FileLockStripes; i++) fileLocks[i] = new Object();
+        cleanedShards = new ConcurrentHashMap<>();
+
+        if (!playersDir.exists() && !playersDir.mkdirs()) {
+            logger.warning(String.format("Failed to create %s directory, player data might not able to be saved correctly.", PlayerDataDirName));
+        }
+
+        // Only the data version file is written into the players directory, each shard is cleaned before its first write
+        int cleaned = writer.clean(playersDir.toPath());
+        if (cleaned > 0) logger.warning(String.format("Removed %d unfinished player data writes, those players keep their previous save.", cleaned));
+    }
+
+    @Override
+    public String name() {
+        return StorageType.YAML.configName();
+    }
+
+    @Override
+    public PlayerData load(UUID uuid, String fallbackName) {
+        try {
+            return load(uuid, fallbackName, false);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, String.format("Failed to load player data for %s", uuid), e);
+            return null;
+        }
+    }
+
+    /**
+     * Load a player data, failing on a file that cannot be parsed instead of reading it as empty.
+     * @param uuid the unique identifier of the player
+     * @param fallbackName the name to use if the stored data does not have one
+     * @return the loaded player data or null if there is none
+     * @throws IOException if the player's file cannot be read or parsed
+     */
+    @Override
+    public PlayerData read(UUID uuid, String fallbackName) throws IOException {
+        return load(uuid, fallbackName, true);
+    }
+
+    private PlayerData load(UUID uuid, String fallbackName, boolean strict) throws IOException {
+        File playerFile = locate(uuid);
+        if (playerFile == null) return null;
+
+        FileConfiguration config;
+        if (playerFile.equals(getPlayerFile(uuid))) {
+            config = loadConfiguration(playerFile, strict);
+        } else {
+            // A flat layout file may be moved into its shard while being read
+            synchronized (fileLock(uuid)) {
+                playerFile = locate(uuid);
+                if (playerFile == null) return null;
+                config = loadConfiguration(playerFile, strict);
+            }
+        }
+
+        // Older files are upgraded in memory only, they are written in the current version on their next save
+        migrator.migrate(config);
+
+        String playerName = config.getString(PlayerData.PlayerNameKey, fallbackName);
+        long playtime = config.getLong(PlayerData.PlaytimeKey, 0L);
+        PlayerData data = new PlayerData(uuid, playerName, playtime);
+        ConfigurationSection balanceSection = config.getConfigurationSection(PlayerData.BalancesKey);
+        ConfigurationSection scaleSection = config.getConfigurationSection(PlayerData.ScalesKey);
+
+        if (balanceSection != null) {
+            for (String key : balanceSection.getKeys(false)) {
+                int scale = scales.applyAsInt(key);
+                int storedScale = scaleSection != null ? scaleSection.getInt(key, scale) : scale;
+                data.restoreBalance(key, balanceSection.getLong(key, 0L), storedScale, scales);
+            }
+        }
+
+        return data;
+    }
+
+    /**
+     * Save a player file and sync its shard before returning, only used where a change must be durable on return,
+     * such as saving without write-behind. Write-behind flushes and shutdown go through {@link #saveAll(Collection)}.
+     * @param data the player data to save
+     * @return true if save successfully
+     */
+    @Override
+    public boolean save(PlayerData data) {
+        if (!write(data)) return false;
+
+        writer.sync(getPlayerFile(data.uuid()).getParentFile().toPath());
+        return true;
+    }
+
+    /**
+     * Write every player file first and sync each shard once, so the batch costs one directory sync per shard it touched.
+     * @param data the player data to save
+     * @return true if every player data was saved
+     */
+    @Override
+    public boolean saveAll(Collection<PlayerData> data) {
+        boolean success = true;
+        Set<File> shards = new HashSet<>();
+        for (PlayerData entry : data) {
+            success &= write(entry);
+            shards.add(getPlayerFile(entry.uuid()).getParentFile());
+        }
+
+        for (File shard : shards) writer.sync(shard.toPath());
+        return success;
+    }
+
+    private boolean write(PlayerData data) {
+        File playerFile = getPlayerFile(data.uuid());
+        FileConfiguration config = new YamlConfiguration();
+        config.set(PlayerData.DataVersionKey, PlayerData.DataVersion);
+        config.set(PlayerData.PlayerNameKey, data.playerName());
+        config.set(PlayerData.PlaytimeKey, data.playtime());
+
+        Map<String, Long> units = new HashMap<>();
+        Map<String, Integer> balanceScales = new HashMap<>();
+        data.forEachBalance((code, balance) -> {
+            units.put(code, balance);
+            balanceScales.put(code, data.storedScale(code, scales));
+        });
+
+        config.createSection(PlayerData.BalancesKey, units);
+        config.createSection(PlayerData.ScalesKey, balanceScales);
+
+        String content = config.saveToString();
+        synchronized (fileLock(data.uuid())) {
+            try {
+                createShard(playerFile);
+                cleanShard(playerFile.getParentFile());
+                writer.write(playerFile.toPath(), content);
+                Files.deleteIfExists(getFlatPlayerFile(data.uuid()).toPath());
+                return true;
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, String.format("Failed to save player data for %s", data.uuid()), e);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * List every player file of the flat layout, plus every other player file
+     * unless the data version file says they were all upgraded to the current version.
+     * @return unique identifiers of possibly outdated players
+     */
+    @Override
+    public Collection<UUID> outdated() {
+        File versionFile = new File(playersDir, DataVersionFileName);
+        if (versionFile.exists()) {
+            try {
+                String content = Files.readString(versionFile.toPath(), StandardCharsets.UTF_8).trim();
+                if (Integer.parseInt(content) >= PlayerData.DataVersion) return flatUuids();
+            } catch (IOException | NumberFormatException e) {
+                logger.warning(String.format("Unreadable %s file, checking every player file again.", DataVersionFileName));
+            }
+        }
+
+        return uuids();
+    }
+
+    /**
+     * Move the player file into its shard and rewrite it in the current version, the file is locked against saves
+     * between reading and writing so a newer save is never overwritten.
+     * @param uuid the unique identifier of the player
+     * @return true if the file was moved or rewritten
+     */
+    @Override
+    public boolean upgrade(UUID uuid) {
+        File playerFile = getPlayerFile(uuid);
+        synchronized (fileLock(uuid)) {
+            try {
+                boolean moved = relocate(uuid);
+                if (!playerFile.exists()) return moved;
+
+                FileConfiguration config = YamlConfiguration.loadConfiguration(playerFile);
+                if (!migrator.migrate(config)) return moved;
+
+                cleanShard(playerFile.getParentFile());
+                writer.write(playerFile.toPath(), config.saveToString());
+                writer.sync(playerFile.getParentFile().toPath());
+                return true;
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, String.format("Failed to upgrade player data for %s", uuid), e);
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public void markUpgraded() {
+        try {
+            writer.write(new File(playersDir, DataVersionFileName).toPath(), Integer.toString(PlayerData.DataVersion));
+            writer.sync(playersDir.toPath());
+        } catch (IOException e) {
+            logger.log(Level.WARNING, String.format("Failed to write %s file, player files will be checked again on next startup.", DataVersionFileName), e);
+        }
+    }
+
+    @Override
+    public boolean delete(UUID uuid) {
+        synchronized (fileLock(uuid)) {
+            boolean success = true;
+            for (File playerFile : new File[] {getPlayerFile(uuid), getFlatPlayerFile(uuid)}) {
+                if (playerFile.exists()) success &= playerFile.delete();
+            }
+
+            return success;
+        }
+    }
+
+    @Override
+    public boolean exists(UUID uuid) {
+        return locate(uuid) != null;
+    }
+
+    @Override
+    public Collection<UUID> uuids() {
+        Set<UUID> uuids = new LinkedHashSet<>();
+        for (File shard : shards()) listPlayerFiles(shard, uuids);
+
+        // Read the flat layout last, a file moved into its shard meanwhile was either listed there or is still here
+        listPlayerFiles(playersDir, uuids);
+        return uuids;
+    }
+
+    /**
+     * List every innermost shard directory, such as {@code players/ab/cd/}.
+     * @return the shard directories that exist
+     */
+    private List<File> shards() {
+        List<File> shards = new ArrayList<>();
+        File[] outer = playersDir.listFiles(YamlPlayerDataStore::isShard);
+        if (outer == null) return shards;
+
+        for (File outerShard : outer) {
+            File[] inner = outerShard.listFiles(YamlPlayerDataStore::isShard);
+            if (inner != null) shards.addAll(Arrays.asList(inner));
+        }
+
+        return shards;
+    }
+
+    /**
+     * Parse player files in parallel on a dedicated fork-join pool, so the common pool is not held up.
+     * @param parallelism maximum number of threads reading at once
+     * @param consumer receiver of each stored player data, must be thread-safe
+     * @return number of player data read
+     */
+    @Override
+    public int scan(int parallelism, Consumer<PlayerData> consumer) {
+        List<UUID> uuids = new ArrayList<>(uuids());
+        AtomicInteger scanned = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            pool.submit(() -> uuids.parallelStream().forEach(uuid -> {
+                PlayerData data = load(uuid, null);
+                if (data == null) return;
+
+                consumer.accept(data);
+                scanned.incrementAndGet();
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.log(Level.SEVERE, String.format("Failed to scan %s directory", PlayerDataDirName), e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        return scanned.get();
+    }
+
+    private FileConfiguration loadConfiguration(File playerFile, boolean strict) throws IOException {
+        if (!strict) return YamlConfiguration.loadConfiguration(playerFile);
+
+        YamlConfiguration config = new YamlConfiguration();
+        try {
+            config.load(playerFile);
+        } catch (InvalidConfigurationException e) {
+            throw new IOException(String.format("Failed to parse %s", playerFile.getName()), e);
+        }
+
+        return config;
+    }
+
+    private Object fileLock(UUID uuid) {
+        return fileLocks[Math.floorMod(uuid.hashCode(), FileLockStripes)];
+    }
+
+    /**
+     * Find the file of a player in either layout, files only ever move from the flat layout into a shard,
+     * so checking the shard again after the flat layout never misses a file being moved.
+     */
+    private File locate(UUID uuid) {
+        File playerFile = getPlayerFile(uuid);
+        if (playerFile.exists()) return playerFile;
+
+        File flatFile = getFlatPlayerFile(uuid);
+        if (flatFile.exists()) return flatFile;
+
+        return playerFile.exists() ? playerFile : null;
+    }
+
+    /**
+     * Move the flat layout file of a player into its shard, must hold the file lock of the player.
+     */
+    private boolean relocate(UUID uuid) throws IOException {
+        File flatFile = getFlatPlayerFile(uuid);
+        if (!flatFile.exists()) return false;
+
+        File playerFile = getPlayerFile(uuid);
+        if (playerFile.exists()) {
+            // Saved into its shard already, the flat file is stale
+            Files.delete(flatFile.toPath());
+            return true;
+        }
+
+        createShard(playerFile);
+        try {
+            Files.move(flatFile.toPath(), playerFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(flatFile.toPath(), playerFile.toPath());
+        }
+        writer.sync(playerFile.getParentFile().toPath());
+        writer.sync(playersDir.toPath());
+        return true;
+    }
+
+    private void createShard(File playerFile) throws IOException {
+        File shard = playerFile.getParentFile();
+        if (shard.isDirectory()) return;
+
+        Files.createDirectories(shard.toPath());
+        writer.sync(shard.getParentFile().toPath());
+        writer.sync(playersDir.toPath());
+    }
+
+    /**
+     * Delete temporary files left in a shard by writes interrupted by a crash, once per shard before its first write.
+     * Concurrent first writers to the same shard wait for the clean, so it never deletes a temporary file being written.
+     */
+    private void cleanShard(File shard) {
+        cleanedShards.computeIfAbsent(shard, dir -> {
+            int cleaned = writer.clean(dir.toPath());
+            if (cleaned > 0) logger.warning(String.format("Removed %d unfinished player data writes in %s, those players keep their previous save.", cleaned, dir.getName()));
+            return Boolean.TRUE;
+        });
+    }
+
+    private Collection<UUID> flatUuids() {
+        Set<UUID> uuids = new LinkedHashSet<>();
+        listPlayerFiles(playersDir, uuids);
+        return uuids;
+    }
+
+    private void listPlayerFiles(File dir, Set<UUID> uuids) {
+        String[] names = dir.list((parent, name) -> name.endsWith(PlayerFileExtension));
+        if (names == null) return;
+
+        for (String name : names) {
+            try {
+                uuids.add(UUID.fromString(name.substring(0, name.length() - PlayerFileExtension.length())));
+            } catch (IllegalArgumentException e) {
+                logger.warning(String.format("Skipping unknown file in %s directory: %s", PlayerDataDirName, name));
+            }
+        }
+    }
+
+    private static boolean isShard(File file) {
+        return file.getName().length() == ShardDigits && file.isDirectory();
+    }
+
+    private File getPlayerFile(UUID uuid) {
+        String name = uuid.toString();
+        File shard = playersDir;
+        for (int level = 0; level < ShardLevels; level++) {
+            shard = new File(shard, name.substring(level * ShardDigits, (level + 1) * ShardDigits));
+        }
+
+        return new File(shard, String.format(PlayerFileNameFormat, name));
+    }
+
+    private File getFlatPlayerFile(UUID uuid) {
+        return new File(playersDir, String.format(PlayerFileNameFormat, uuid.toString()));
+    }
+}
@@ -2,18 +2,34 @@ package io.github.baole444.anotherCurrency.integrations;
 
 import io.github.baole444.anotherCurrency.AnotherCurrency;
 import io.github.baole444.anotherCurrency.configurations.Currency;
+import io.github.baole444.anotherCurrency.configurations.CurrencyHandle;
+import io.github.baole444.anotherCurrency.data.TransactionResult;
 import net.milkbowl.vault.economy.Economy;
 import net.milkbowl.vault.economy.EconomyResponse;
 import org.bukkit.OfflinePlayer;
+import org.bukkit.plugin.java.JavaPlugin;
 
 import java.util.List;
+import java.util.UUID;
 
 /**
- * Placeholder for Vault Economy Provider.
+ * Vault Economy Provider backed by the primary currency.
+ * Balance changes are atomic per player and safe to call from async threads.
  */
 public class VaultEconomyProvider implements Economy {
+    private static final String NoBankSupport = "AnotherCurrency does not support bank accounts.";
+    private static final String UnknownPlayer = "Unknown player.";
+    private static final String OwnPackage = "io.github.baole444.anotherCurrency.";
+    private static final String VaultPackage = "net.milkbowl.vault.";
+    private static final StackWalker Walker = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
     private final AnotherCurrency plugin;
     private final String primaryCurrency;
+    private final CurrencyHandle primaryHandle;
+    /**
+     * Plugin name of each calling class, held by the class itself so unloaded plugins are not kept in memory.
+     */
+    private final ClassValue<String> callers;
 
     /**
      * Initialize Vault Economy Provider.
@@ -23,6 +39,13 @@ public class VaultEconomyProvider implements Economy {
     public VaultEconomyProvider(AnotherCurrency plugin, String primaryCurrency) {
         this.plugin = plugin;
         this.primaryCurrency = primaryCurrency;
+        primaryHandle = plugin.currencyManager().handle(primaryCurrency);
+        callers = new ClassValue<>() {
+            @Override
+            protected String computeValue(Class<?> type) {
+                return pluginName(type);
+            }
+        };
     }
 
     @Override
@@ -42,7 +65,7 @@ public class VaultEconomyProvider implements Economy {
 
     @Override
     public int fractionalDigits() {
-        return 2;
+        return plugin.currencyManager().scale(primaryCurrency);
     }
 
     @Override
@@ -65,169 +88,177 @@ public class VaultEconomyProvider implements Economy {
     @Deprecated
     @Override
     public boolean hasAccount(String playerName) {
-        return false;
+        OfflinePlayer player = offlinePlayer(playerName);
+        return player != null && hasAccount(player);
     }
 
     @Override
     public boolean hasAccount(OfflinePlayer offlinePlayer) {
-        return false;
+        return plugin.playerDataManager().isLoaded(offlinePlayer.getUniqueId())
+                || plugin.playerDataManager().hasPlayerData(offlinePlayer);
     }
 
     @Override
     @Deprecated
     public boolean hasAccount(String playerName, String worldName) {
-        return false;
+        return hasAccount(playerName);
     }
 
     @Override
     public boolean hasAccount(OfflinePlayer offlinePlayer, String worldName) {
-        return false;
+        return hasAccount(offlinePlayer);
     }
 
     @Override
     @Deprecated
     public double getBalance(String playerName) {
-        return 0;
+        OfflinePlayer player = offlinePlayer(playerName);
+        return player != null ? getBalance(player) : 0;
     }
 
     @Override
     public double getBalance(OfflinePlayer offlinePlayer) {
-        return 0;
+        return plugin.playerDataManager().balance(offlinePlayer, primaryHandle);
     }
 
     @Override
     @Deprecated
     public double getBalance(String playerName, String worldName) {
-        return 0;
+        return getBalance(playerName);
     }
 
     @Override
     public double getBalance(OfflinePlayer offlinePlayer, String worldName) {
-        return 0;
+        return getBalance(offlinePlayer);
     }
 
     @Override
     @Deprecated
     public boolean has(String playerName, double amount) {
-        return false;
+        OfflinePlayer player = offlinePlayer(playerName);
+        return player != null && has(player, amount);
     }
 
     @Override
     public boolean has(OfflinePlayer offlinePlayer, double amount) {
-        return false;
+        return plugin.playerDataManager().hasBalance(offlinePlayer, primaryCurrency, amount);
     }
 
     @Override
     @Deprecated
     public boolean has(String playerName, String worldName, double amount) {
-        return false;
+        return has(playerName, amount);
     }
 
     @Override
     public boolean has(OfflinePlayer offlinePlayer, String worldName, double v) {
-        return false;
+        return has(offlinePlayer, v);
     }
 
     @Override
     @Deprecated
     public EconomyResponse withdrawPlayer(String s, double v) {
-        return null;
+        OfflinePlayer player = offlinePlayer(s);
+        return player != null ? withdrawPlayer(player, v) : failure(v, UnknownPlayer);
     }
 
     @Override
     public EconomyResponse withdrawPlayer(OfflinePlayer offlinePlayer, double v) {
-        return null;
+        TransactionResult result = plugin.playerDataManager().withdraw(offlinePlayer, primaryHandle, v, plugin.configManager().currencyLimit(), caller());
+        return response(result);
     }
 
     @Override
     @Deprecated
     public EconomyResponse withdrawPlayer(String s, String s1, double v) {
-        return null;
+        return withdrawPlayer(s, v);
     }
 
     @Override
     public EconomyResponse withdrawPlayer(OfflinePlayer offlinePlayer, String s, double v) {
-        return null;
+        return withdrawPlayer(offlinePlayer, v);
     }
 
     @Override
     @Deprecated
     public EconomyResponse depositPlayer(String s, double v) {
-        return null;
+        OfflinePlayer player = offlinePlayer(s);
+        return player != null ? depositPlayer(player, v) : failure(v, UnknownPlayer);
     }
 
     @Override
     public EconomyResponse depositPlayer(OfflinePlayer offlinePlayer, double v) {
-        return null;
+        TransactionResult result = plugin.playerDataManager().deposit(offlinePlayer, primaryHandle, v, plugin.configManager().currencyLimit(), caller());
+        return response(result);
     }
 
     @Override
     @Deprecated
     public EconomyResponse depositPlayer(String s, String s1, double v) {
-        return null;
+        return depositPlayer(s, v);
     }
 
     @Override
     public EconomyResponse depositPlayer(OfflinePlayer offlinePlayer, String s, double v) {
-        return null;
+        return depositPlayer(offlinePlayer, v);
     }
 
     @Override
     @Deprecated
     public EconomyResponse createBank(String s, String s1) {
-        return null;
+        return notImplemented();
     }
 
     @Override
     public EconomyResponse createBank(String s, OfflinePlayer offlinePlayer) {
-        return null;
+        return notImplemented();
     }
 
     @Override
     public EconomyResponse deleteBank(String s) {
-        return null;
+        return notImplemented();
     }
 
     @Override
     public EconomyResponse bankBalance(String s) {
-        return null;
+        return notImplemented();
     }
 
     @Override
     public EconomyResponse bankHas(String s, double v) {
-        return null;
+        return notImplemented();
     }
 
     @Override
     public EconomyResponse bankWithdraw(String s, double v) {
-        return null;
+        return notImplemented();
     }
 
     @Override
     public EconomyResponse bankDeposit(String s, double v) {
-        return null;
+        return notImplemented();
     }
 
     @Override
     @Deprecated
     public EconomyResponse isBankOwner(String s, String s1) {
-        return null;
+        return notImplemented();
     }
 
     @Override
     public EconomyResponse isBankOwner(String s, OfflinePlayer offlinePlayer) {
-        return null;
+        return notImplemented();
     }
 
     @Override
     @Deprecated
     public EconomyResponse isBankMember(String s, String s1) {
-        return null;
+        return notImplemented();
     }
 
     @Override
     public EconomyResponse isBankMember(String s, OfflinePlayer offlinePlayer) {
-        return null;
+        return notImplemented();
     }
 
     @Override
@@ -238,22 +269,82 @@ public class VaultEconomyProvider implements Economy {
     @Override
     @Deprecated
     public boolean createPlayerAccount(String s) {
-        return false;
+        OfflinePlayer player = offlinePlayer(s);
+        return player != null && createPlayerAccount(player);
     }
 
     @Override
     public boolean createPlayerAccount(OfflinePlayer offlinePlayer) {
-        return false;
+        if (hasAccount(offlinePlayer)) return false;
+        return plugin.playerDataManager().savePlayerData(plugin.playerDataManager().playerData(offlinePlayer));
     }
 
     @Deprecated
     @Override
     public boolean createPlayerAccount(String s, String s1) {
-        return false;
+        return createPlayerAccount(s);
     }
 
     @Override
     public boolean createPlayerAccount(OfflinePlayer offlinePlayer, String s) {
-        return false;
+        return createPlayerAccount(offlinePlayer);
+    }
+
+    private OfflinePlayer offlinePlayer(String playerName) {
+        if (playerName == null) return null;
+
+        OfflinePlayer cached = plugin.getServer().getOfflinePlayerIfCached(playerName);
+        if (cached != null) return cached;
+
+        UUID uuid = plugin.playerDataManager().accounts().uuid(playerName);
+        return uuid != null ? plugin.getServer().getOfflinePlayer(uuid) : null;
+    }
+
+    /**
+     * Find the plugin calling through Vault, for the transaction history.
+     * The stack is only walked while the history is enabled, and each calling class is resolved to its plugin once.
+     */
+    private String caller() {
+        if (plugin.playerDataManager().history() == null) return null;
+
+        Class<?> caller = Walker.walk(frames -> frames
+                .map(StackWalker.StackFrame::getDeclaringClass)
+                .filter(type -> !type.getName().startsWith(OwnPackage) && !type.getName().startsWith(VaultPackage))
+                .findFirst()
+                .orElse(null));
+        return caller != null ? callers.get(caller) : null;
+    }
+
+    private static String pluginName(Class<?> type) {
+        try {
+            return JavaPlugin.getProvidingPlugin(type).getName();
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            // Not loaded by a plugin, such as the server itself
+            return type.getSimpleName();
+        }
+    }
+
+    private EconomyResponse response(TransactionResult result) {
+        return switch (result.status()) {
+            case SUCCESS -> new EconomyResponse(result.amount(), result.balance(), EconomyResponse.ResponseType.SUCCESS, null);
+            case INVALID_AMOUNT -> failure(result, "Amount must be a positive number.");
+            case INSUFFICIENT_FUNDS -> failure(result, "Insufficient funds.");
+            case EXCEEDS_MAX -> failure(result, String.format("Balance cannot exceed %s.", format(plugin.configManager().currencyLimit().maxValue())));
+            case BELOW_MIN_TRADE -> failure(result, String.format("Amount must be at least %s.", format(plugin.configManager().currencyLimit().minTrade())));
+            case SAME_ACCOUNT -> failure(result, "Cannot transfer to the same account.");
+            case UNKNOWN_CURRENCY -> failure(result, "Unknown currency.");
+        };
+    }
+
+    private EconomyResponse failure(TransactionResult result, String message) {
+        return new EconomyResponse(result.amount(), result.balance(), EconomyResponse.ResponseType.FAILURE, message);
+    }
+
+    private EconomyResponse failure(double amount, String message) {
+        return new EconomyResponse(amount, 0, EconomyResponse.ResponseType.FAILURE, message);
+    }
+
+    private EconomyResponse notImplemented() {
+        return new EconomyResponse(0, 0, EconomyResponse.ResponseType.NOT_IMPLEMENTED, NoBankSupport);
     }
 }
@@ -1,15 +1,27 @@
 package io.github.baole444.anotherCurrency.listeners;
 
 import io.github.baole444.anotherCurrency.AnotherCurrency;
+import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+
 /**
  * Listener for player data cache management.
  */
 public class PlayerDataListener implements Listener {
+    /**
+     * Longest time a login waits for the player data to load, in seconds.
+     */
+    public static final long PreloadTimeout = 5L;
     private final AnotherCurrency plugin;
 
     /**
@@ -21,19 +33,45 @@ public class PlayerDataListener implements Listener {
     }
 
     /**
-     * Load player data into cache when they join.
+     * Load player data into cache before they join, this runs off the main thread.
+     * Only logins that are still allowed after every other plugin had a say are loaded.
+     * @param event the async player pre-login event
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onAsyncPlayerPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) return;
+
+        try {
+            plugin.playerDataManager().preload(event.getUniqueId(), event.getName()).get(PreloadTimeout, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            plugin.getLogger().warning(String.format("Loading player data of %s is taking too long, it will finish after they join.", event.getName()));
+        } catch (ExecutionException e) {
+            plugin.getLogger().log(Level.SEVERE, String.format("Failed to load player data of %s", event.getName()), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Make sure player data is loading when they join and keep it cached while they are online,
+     * a late load continues in the background.
      * @param event the player join event
      */
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
-        plugin.playerDataManager().playerData(event.getPlayer());
+        Player player = event.getPlayer();
+        plugin.playerDataManager().pin(player.getUniqueId());
+        if (!plugin.playerDataManager().isLoaded(player.getUniqueId())) {
+            plugin.playerDataManager().preload(player.getUniqueId(), player.getName());
+        }
+
         if (plugin.configManager().players().playtime().trackPlaytime()) {
-            plugin.playtimeTracker().onPlayerJoin(event.getPlayer());
+            plugin.playtimeTracker().onPlayerJoin(player);
         }
     }
 
     /**
-     * Unload player from cache when they quit.
+     * Save player data when they quit, it stays cached until the cache evicts it.
      * @param event the player quit event
      */
     @EventHandler
@@ -42,6 +80,6 @@ public class PlayerDataListener implements Listener {
             plugin.playtimeTracker().onPlayerQuit(event.getPlayer());
         }
 
-        plugin.playerDataManager().unloadPlayerData(event.getPlayer());
+        plugin.playerDataManager().release(event.getPlayer());
     }
 }
@@ -0,0 +1,176 @@
+package io.github.baole444.anotherCurrency.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with logarithmic buckets.
+ * <p>
+ * Every power of two of nanoseconds is split into {@link #SubBuckets} linear buckets,
+ * so percentiles are exact to within 12.5% from 1 nanosecond up to about 18 minutes.
+ * Recording is a few atomic increments and never allocates, so it is safe on hot paths.
+ */
+public class LatencyHistogram implements LatencyHistogramMXBean {
+    private static final int SubBits = 3;
+    private static final int SubBuckets = 1 << SubBits;
+    private static final int MaxOctave = 40;
+    private static final int BucketCount = (MaxOctave - SubBits + 2) * SubBuckets;
+
+    private final String name;
+    private final AtomicLongArray buckets;
+    private final LongAdder count;
+    private final LongAdder total;
+    private final AtomicLong max;
+
+    /**
+     * Initialize an empty histogram.
+     * @param name short name of the measured operation
+     */
+    public LatencyHistogram(String name) {
+        this.name = name;
+        buckets = new AtomicLongArray(BucketCount);
+        count = new LongAdder();
+        total = new LongAdder();
+        max = new AtomicLong();
+    }
+
+    /**
+     * Get the name of the measured operation.
+     * @return the name
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Record a sample.
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0L) nanos = 0L;
+
+        buckets.incrementAndGet(bucket(nanos));
+        count.increment();
+        total.add(nanos);
+
+        long current;
+        while (nanos > (current = max.get()) && !max.compareAndSet(current, nanos)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Record the time elapsed since a start time.
+     * @param startNanos {@link System#nanoTime()} taken before the operation
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Get the number of recorded samples.
+     * @return sample count
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * Get the mean latency.
+     * @return mean in nanoseconds, or 0 if there is no sample
+     */
+    public double meanNanos() {
+        long samples = count.sum();
+        return samples == 0L ? 0D : (double) total.sum() / samples;
+    }
+
+    /**
+     * Get the highest recorded latency.
+     * @return max in nanoseconds
+     */
+    public long maxNanos() {
+        return max.get();
+    }
+
+    /**
+     * Get a percentile of the recorded latencies, as the upper bound of the bucket it falls in.
+     * @param percentile the percentile between 0 and 100
+     * @return the latency in nanoseconds, or 0 if there is no sample
+     */
+    public long percentileNanos(double percentile) {
+        long samples = 0L;
+        long[] counts = new long[BucketCount];
+        for (int i = 0; i < BucketCount; i++) {
+            counts[i] = buckets.get(i);
+            samples += counts[i];
+        }
+
+        if (samples == 0L) return 0L;
+
+        long rank = Math.max(1L, (long) Math.ceil(samples * Math.min(100D, Math.max(0D, percentile)) / 100D));
+        long seen = 0L;
+        for (int i = 0; i < BucketCount; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(upperBound(i), max.get());
+        }
+
+        return max.get();
+    }
+
+    @Override
+    public long getCount() {
+        return count();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return meanNanos() / 1_000D;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return percentileNanos(50D) / 1_000D;
+    }
+
+    @Override
+    public double getP95Micros() {
+        return percentileNanos(95D) / 1_000D;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return percentileNanos(99D) / 1_000D;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return maxNanos() / 1_000D;
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < BucketCount; i++) buckets.set(i, 0L);
+        count.reset();
+        total.reset();
+        max.set(0L);
+    }
+
+    private static int bucket(long nanos) {
+        if (nanos < SubBuckets) return (int) nanos;
+
+        int octave = 63 - Long.numberOfLeadingZeros(nanos);
+        if (octave > MaxOctave) return BucketCount - 1;
+
+        int sub = (int) (nanos >>> (octave - SubBits)) & (SubBuckets - 1);
+        return (octave - SubBits + 1) * SubBuckets + sub;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SubBuckets) return bucket;
+
+        int octave = bucket / SubBuckets + SubBits - 1;
+        int sub = bucket % SubBuckets;
+        return ((long) (SubBuckets + sub + 1) << (octave - SubBits)) - 1L;
+    }
+}
@@ -0,0 +1,47 @@
+package io.github.baole444.anotherCurrency.metrics;
+
+/**
+ * Management interface of a {@link LatencyHistogram}, exposed over JMX.
+ */
+public interface LatencyHistogramMXBean {
+    /**
+     * Get the number of recorded samples.
+     * @return sample count
+     */
+    long getCount();
+
+    /**
+     * Get the mean latency.
+     * @return mean in microseconds
+     */
+    double getMeanMicros();
+
+    /**
+     * Get the median latency.
+     * @return 50th percentile in microseconds
+     */
+    double getP50Micros();
+
+    /**
+     * Get the 95th percentile latency.
+     * @return 95th percentile in microseconds
+     */
+    double getP95Micros();
+
+    /**
+     * Get the 99th percentile latency.
+     * @return 99th percentile in microseconds
+     */
+    double getP99Micros();
+
+    /**
+     * Get the highest recorded latency.
+     * @return max in microseconds
+     */
+    double getMaxMicros();
+
+    /**
+     * Clear every recorded sample.
+     */
+    void reset();
+}
@@ -0,0 +1,57 @@
+package io.github.baole444.anotherCurrency.metrics;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Latency histograms of the economy hot paths, shared by everything that records into them.
+ */
+public final class Metrics {
+    private Metrics() {}
+
+    /**
+     * One format in this many is timed on average, timing every format would cost about as much as formatting.
+     */
+    public static final int FormatSampleRate = 64;
+
+    /**
+     * Time to load one player data from storage.
+     */
+    public static final LatencyHistogram Load = new LatencyHistogram("load");
+
+    /**
+     * Time to save one player data to storage.
+     */
+    public static final LatencyHistogram Save = new LatencyHistogram("save");
+
+    /**
+     * Time to save a batch of player data to storage, such as on a full save or a journal compaction.
+     */
+    public static final LatencyHistogram SaveBatch = new LatencyHistogram("save-batch");
+
+    /**
+     * Time to format a currency amount, only sampled formats are recorded, see {@link #sampleFormat()}.
+     */
+    public static final LatencyHistogram Format = new LatencyHistogram("format");
+
+    /**
+     * Time of one playtime tracking tick of one online player.
+     */
+    public static final LatencyHistogram PlaytimeTick = new LatencyHistogram("playtime-tick");
+
+    /**
+     * Decide whether a format is timed into {@link #Format}, without any shared state between threads.
+     * @return true for about one call in {@link #FormatSampleRate}
+     */
+    public static boolean sampleFormat() {
+        return ThreadLocalRandom.current().nextInt(FormatSampleRate) == 0;
+    }
+
+    /**
+     * Get every latency histogram.
+     * @return the histograms in display order
+     */
+    public static List<LatencyHistogram> latencies() {
+        return List.of(Load, Save, SaveBatch, Format, PlaytimeTick);
+    }
+}
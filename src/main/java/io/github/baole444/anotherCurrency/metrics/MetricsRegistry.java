@@ -0,0 +1,75 @@
+package io.github.baole444.anotherCurrency.metrics;
+
+import io.github.baole444.anotherCurrency.data.PlayerDataManager;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Registration of the plugin's metrics as JMX MBeans under the {@value #Domain} domain.
+ */
+public class MetricsRegistry {
+    /**
+     * JMX domain of every registered MBean.
+     */
+    public static final String Domain = "io.github.baole444.anotherCurrency";
+    private final Logger logger;
+    private final List<ObjectName> registered;
+
+    /**
+     * Initialize metrics registry instance.
+     * @param logger the logger to report to
+     */
+    public MetricsRegistry(Logger logger) {
+        this.logger = logger;
+        registered = new ArrayList<>();
+    }
+
+    /**
+     * Register the latency histograms and the player data view with the platform MBean server.
+     * A failed registration is logged and skipped, the plugin works without JMX.
+     * @param playerDataManager the player data manager to report on
+     */
+    public synchronized void register(PlayerDataManager playerDataManager) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (LatencyHistogram histogram : Metrics.latencies()) {
+            register(server, String.format("%s:type=Latency,name=%s", Domain, histogram.name()), histogram);
+        }
+
+        register(server, String.format("%s:type=PlayerData", Domain), new PlayerDataMetrics(playerDataManager));
+    }
+
+    /**
+     * Unregister every MBean registered by this instance.
+     */
+    public synchronized void unregister() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registered) {
+            try {
+                if (server.isRegistered(name)) server.unregisterMBean(name);
+            } catch (JMException e) {
+                logger.log(Level.WARNING, String.format("Failed to unregister MBean %s", name), e);
+            }
+        }
+
+        registered.clear();
+    }
+
+    private void register(MBeanServer server, String objectName, Object bean) {
+        try {
+            ObjectName name = new ObjectName(objectName);
+            // A previous instance left over by a plugin reload would block the registration
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+            server.registerMBean(bean, name);
+            registered.add(name);
+        } catch (JMException e) {
+            logger.log(Level.WARNING, String.format("Failed to register MBean %s", objectName), e);
+        }
+    }
+}
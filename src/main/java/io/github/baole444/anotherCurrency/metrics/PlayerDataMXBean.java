@@ -0,0 +1,54 @@
+package io.github.baole444.anotherCurrency.metrics;
+
+/**
+ * Management interface of the player data cache and storage queue, exposed over JMX.
+ */
+public interface PlayerDataMXBean {
+    /**
+     * Get the number of player data cached in memory.
+     * @return cache size
+     */
+    int getCacheSize();
+
+    /**
+     * Get the number of cached player data that cannot be evicted.
+     * @return pinned count
+     */
+    int getPinned();
+
+    /**
+     * Get the number of lookups served from memory.
+     * @return hit count
+     */
+    long getCacheHits();
+
+    /**
+     * Get the number of lookups that loaded from storage.
+     * @return miss count
+     */
+    long getCacheMisses();
+
+    /**
+     * Get the share of lookups served from memory.
+     * @return hit rate between 0 and 1
+     */
+    double getCacheHitRate();
+
+    /**
+     * Get the number of player data evicted from memory.
+     * @return eviction count
+     */
+    long getCacheEvictions();
+
+    /**
+     * Get the number of player data waiting to be saved.
+     * @return pending write count
+     */
+    int getPendingWrites();
+
+    /**
+     * Get the number of stored accounts known to the account index.
+     * @return indexed account count
+     */
+    int getIndexedAccounts();
+}
@@ -0,0 +1,58 @@
+package io.github.baole444.anotherCurrency.metrics;
+
+import io.github.baole444.anotherCurrency.data.PlayerDataManager;
+
+/**
+ * Live view of a {@link PlayerDataManager}'s cache and storage queue.
+ */
+public class PlayerDataMetrics implements PlayerDataMXBean {
+    private final PlayerDataManager playerDataManager;
+
+    /**
+     * Initialize the view.
+     * @param playerDataManager the player data manager to report on
+     */
+    public PlayerDataMetrics(PlayerDataManager playerDataManager) {
+        this.playerDataManager = playerDataManager;
+    }
+
+    @Override
+    public int getCacheSize() {
+        return playerDataManager.cacheSize();
+    }
+
+    @Override
+    public int getPinned() {
+        return playerDataManager.cacheStats().pinned();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return playerDataManager.cacheStats().hits();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return playerDataManager.cacheStats().misses();
+    }
+
+    @Override
+    public double getCacheHitRate() {
+        return playerDataManager.cacheStats().hitRate();
+    }
+
+    @Override
+    public long getCacheEvictions() {
+        return playerDataManager.cacheStats().evictions();
+    }
+
+    @Override
+    public int getPendingWrites() {
+        return playerDataManager.pendingWrites();
+    }
+
+    @Override
+    public int getIndexedAccounts() {
+        return playerDataManager.accounts().size();
+    }
+}
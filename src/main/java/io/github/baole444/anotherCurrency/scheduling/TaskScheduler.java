@@ -0,0 +1,61 @@
+package io.github.baole444.anotherCurrency.scheduling;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduling of the plugin's tasks through Paper's region-aware schedulers,
+ * which run on both Paper and region-threaded Folia servers.
+ * <p>
+ * Work on a player, such as idle checks and playtime, runs on the entity scheduler of that player,
+ * so on Folia it happens on the region thread owning the player. Persistence runs on the async scheduler.
+ */
+public class TaskScheduler {
+    private static final long MillisPerTick = 50L;
+    private final Plugin plugin;
+
+    /**
+     * Initialize task scheduler instance.
+     * @param plugin the plugin owning the tasks
+     */
+    public TaskScheduler(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Run a task repeatedly off the server threads.
+     * @param task the task to run
+     * @param delayTicks delay before the first run, in ticks
+     * @param periodTicks delay between runs, in ticks
+     * @return the scheduled task
+     */
+    public ScheduledTask runAsyncTimer(Runnable task, long delayTicks, long periodTicks) {
+        return plugin.getServer().getAsyncScheduler().runAtFixedRate(plugin, scheduled -> task.run(),
+                Math.max(0L, delayTicks) * MillisPerTick, Math.max(1L, periodTicks) * MillisPerTick, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Run a task once off the server threads.
+     * @param task the task to run
+     * @return the scheduled task
+     */
+    public ScheduledTask runAsync(Runnable task) {
+        return plugin.getServer().getAsyncScheduler().runNow(plugin, scheduled -> task.run());
+    }
+
+    /**
+     * Run a task repeatedly on the thread owning an entity, following it across regions.
+     * @param entity the entity to run on
+     * @param task the task to run
+     * @param retired run instead if the entity is removed, such as when a player quits, may be null
+     * @param delayTicks delay before the first run, in ticks
+     * @param periodTicks delay between runs, in ticks
+     * @return the scheduled task, or null if the entity was already removed
+     */
+    public ScheduledTask runEntityTimer(Entity entity, Runnable task, Runnable retired, long delayTicks, long periodTicks) {
+        return entity.getScheduler().runAtFixedRate(plugin, scheduled -> task.run(), retired, Math.max(1L, delayTicks), Math.max(1L, periodTicks));
+    }
+}
@@ -0,0 +1,44 @@
+package io.github.baole444.anotherCurrency.configurations;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CurrencyTest {
+    @Test
+    void rescaleKeepsUnitsOfTheSameScale() {
+        assertEquals(12_345L, Currency.rescale(12_345L, 2, 2));
+    }
+
+    @Test
+    void rescaleUpIsExact() {
+        assertEquals(1_234_500L, Currency.rescale(12_345L, 2, 4));
+        assertEquals(-1_234_500L, Currency.rescale(-12_345L, 2, 4));
+    }
+
+    @Test
+    void rescaleDownRoundsHalfToEven() {
+        assertEquals(12L, Currency.rescale(125L, 1, 0));
+        assertEquals(14L, Currency.rescale(135L, 1, 0));
+        assertEquals(-12L, Currency.rescale(-125L, 1, 0));
+        assertEquals(13L, Currency.rescale(1_251L, 2, 0));
+    }
+
+    @Test
+    void rescaleUpPastTheRangeOfABalanceFails() {
+        assertThrows(ArithmeticException.class, () -> Currency.rescale(Long.MAX_VALUE / 10, 0, 2));
+    }
+
+    @Test
+    void scaleIsClampedToTheSupportedRange() {
+        assertEquals(0, new Currency("clamp_low", "Low", "", "", null, -1).scale());
+        assertEquals(Currency.MaxScale, new Currency("clamp_high", "High", "", "", null, Currency.MaxScale + 3).scale());
+    }
+
+    @Test
+    void unitsRoundTripThroughAmounts() {
+        assertEquals(1_050L, Currency.toUnits(10.5, 2));
+        assertEquals(10.5, Currency.toAmount(1_050L, 2));
+    }
+}
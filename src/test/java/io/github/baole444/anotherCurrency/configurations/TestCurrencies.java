@@ -0,0 +1,18 @@
+package io.github.baole444.anotherCurrency.configurations;
+
+/**
+ * Access to currency declaration for tests outside this package, which run without a currency config.
+ */
+public final class TestCurrencies {
+    private TestCurrencies() {}
+
+    /**
+     * Declare a currency code name, assigning its handle as loading the currency config does.
+     * Handles are never released, so each test should declare code names no other test uses.
+     * @param codeName the canonical name of the currency
+     * @return the handle of the code name
+     */
+    public static CurrencyHandle declare(String codeName) {
+        return CurrencyHandle.assign(codeName);
+    }
+}
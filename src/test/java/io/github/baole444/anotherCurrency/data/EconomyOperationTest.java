@@ -0,0 +1,56 @@
+package io.github.baole444.anotherCurrency.data;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class EconomyOperationTest {
+    private static final int[] OneScale = {2};
+    private static final int[] TwoScales = {2, 2};
+
+    @Test
+    void resetSetsTheAmount() {
+        assertArrayEquals(new long[] {1_050L}, EconomyOperation.reset("coins", 10.5).apply(new long[] {99L}, OneScale));
+    }
+
+    @Test
+    void scaleRoundsHalfToEven() {
+        assertArrayEquals(new long[] {12L}, EconomyOperation.scale("coins", 0.5).apply(new long[] {25L}, OneScale));
+    }
+
+    @Test
+    void scaleSaturatesAtTheLargestBalance() {
+        long[] after = EconomyOperation.scale("coins", 10).apply(new long[] {Long.MAX_VALUE / 2}, OneScale);
+        assertArrayEquals(new long[] {Long.MAX_VALUE}, after);
+    }
+
+    @Test
+    void scaleSaturatesAtTheSmallestBalance() {
+        long[] after = EconomyOperation.scale("coins", 10).apply(new long[] {Long.MIN_VALUE / 2}, OneScale);
+        assertArrayEquals(new long[] {Long.MIN_VALUE + 1}, after);
+    }
+
+    @Test
+    void convertEmptiesTheSourceIntoTheTarget() {
+        long[] after = EconomyOperation.convert("coins", "gems", 2).apply(new long[] {150L, 100L}, TwoScales);
+        assertArrayEquals(new long[] {0L, 400L}, after);
+    }
+
+    @Test
+    void convertConvertsBetweenScales() {
+        long[] after = EconomyOperation.convert("coins", "gems", 1).apply(new long[] {1_234L, 0L}, new int[] {2, 0});
+        assertArrayEquals(new long[] {0L, 12L}, after);
+    }
+
+    @Test
+    void convertSaturatesTheSumAtTheLargestBalance() {
+        long[] after = EconomyOperation.convert("coins", "gems", 1).apply(new long[] {Long.MAX_VALUE / 2 + 10, Long.MAX_VALUE / 2}, TwoScales);
+        assertArrayEquals(new long[] {0L, Long.MAX_VALUE}, after);
+    }
+
+    @Test
+    void convertSaturatesTheSumAtTheSmallestBalance() {
+        long[] after = EconomyOperation.convert("coins", "gems", 1).apply(new long[] {Long.MIN_VALUE / 2 - 10, Long.MIN_VALUE / 2}, TwoScales);
+        assertArrayEquals(new long[] {0L, Long.MIN_VALUE + 1}, after);
+    }
+}
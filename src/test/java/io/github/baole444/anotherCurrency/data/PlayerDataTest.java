@@ -0,0 +1,72 @@
+package io.github.baole444.anotherCurrency.data;
+
+import io.github.baole444.anotherCurrency.configurations.Currency;
+import io.github.baole444.anotherCurrency.configurations.CurrencyHandle;
+import io.github.baole444.anotherCurrency.configurations.TestCurrencies;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.ToIntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlayerDataTest {
+    private static final ToIntFunction<String> DefaultScales = code -> Currency.DefaultScale;
+
+    @Test
+    void undeclaredBalanceKeepsItsStoredScale() {
+        PlayerData data = new PlayerData(UUID.randomUUID(), "player");
+        data.restoreBalance("retained_stored", 12_345L, 4, DefaultScales);
+
+        assertEquals(12_345L, data.balance("retained_stored"));
+        assertEquals(4, data.storedScale("retained_stored", DefaultScales));
+        assertTrue(data.hasBalance("retained_stored"));
+        assertEquals(Map.of("retained_stored", 12_345L), data.balances());
+    }
+
+    @Test
+    void declaredBalanceIsConvertedToTheCurrentScale() {
+        TestCurrencies.declare("retained_declared");
+        PlayerData data = new PlayerData(UUID.randomUUID(), "player");
+        data.restoreBalance("retained_declared", 12_345L, 4, DefaultScales);
+
+        assertEquals(123L, data.balance("retained_declared"));
+        assertEquals(Currency.DefaultScale, data.storedScale("retained_declared", DefaultScales));
+    }
+
+    @Test
+    void retainedBalanceIsPromotedOnceDeclared() {
+        PlayerData data = new PlayerData(UUID.randomUUID(), "player");
+        data.restoreBalance("retained_promoted", 150L, 1, DefaultScales);
+
+        CurrencyHandle currency = TestCurrencies.declare("retained_promoted");
+        assertEquals(150L, data.balance(currency));
+
+        data.promoteRetained(DefaultScales);
+        assertEquals(1_500L, data.balance(currency));
+        assertEquals(Currency.DefaultScale, data.storedScale("retained_promoted", DefaultScales));
+    }
+
+    @Test
+    void retainedBalanceCanBeRemoved() {
+        PlayerData data = new PlayerData(UUID.randomUUID(), "player");
+        data.restoreBalance("retained_removed", 500L, 2, DefaultScales);
+
+        assertTrue(data.removeBalance("retained_removed"));
+        assertFalse(data.hasBalance("retained_removed"));
+        assertFalse(data.removeBalance("retained_removed"));
+        assertEquals(0L, data.balance("retained_removed"));
+    }
+
+    @Test
+    void setBalanceOfAnUndeclaredCurrencyUsesTheDefaultScale() {
+        PlayerData data = new PlayerData(UUID.randomUUID(), "player");
+        data.balance("retained_set", 700L);
+
+        assertEquals(700L, data.balance("retained_set"));
+        assertEquals(Currency.DefaultScale, data.storedScale("retained_set", code -> 5));
+    }
+}
@@ -0,0 +1,44 @@
+package io.github.baole444.anotherCurrency.data.storage;
+
+import io.github.baole444.anotherCurrency.data.PlayerData;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.ToIntFunction;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlayerDataMigratorTest {
+    private static final Logger Log = Logger.getLogger(PlayerDataMigratorTest.class.getName());
+    private static final ToIntFunction<String> Scales = code -> code.equals("migrate_gems") ? 0 : 2;
+
+    @Test
+    void migratorUpgradesDecimalBalancesToUnits() throws Exception {
+        YamlConfiguration document = new YamlConfiguration();
+        document.loadFromString(String.join("\n",
+                "player-name: player",
+                "balances:",
+                "  migrate_coins: 10.25",
+                "  migrate_gems: 3.0",
+                ""));
+
+        assertTrue(new PlayerDataMigrator(Log, Scales).migrate(document));
+        assertEquals(PlayerData.DataVersion, PlayerDataMigrator.version(document));
+        assertEquals(1_025L, document.getLong("balances.migrate_coins"));
+        assertEquals(3L, document.getLong("balances.migrate_gems"));
+        assertEquals(2, document.getInt("scales.migrate_coins"));
+        assertEquals(0, document.getInt("scales.migrate_gems"));
+    }
+
+    @Test
+    void migratorLeavesCurrentDocumentsUnchanged() throws Exception {
+        YamlConfiguration document = new YamlConfiguration();
+        document.loadFromString(String.format("data-version: %d%nbalances:%n  migrate_coins: 1025%n", PlayerData.DataVersion));
+
+        assertFalse(new PlayerDataMigrator(Log, Scales).migrate(document));
+        assertEquals(1_025L, document.getLong("balances.migrate_coins"));
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.baole444.anotherCurrency.data.storage;
+
+import io.github.baole444.anotherCurrency.configurations.TestCurrencies;
+import io.github.baole444.anotherCurrency.data.PlayerData;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.ToIntFunction;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class YamlPlayerDataStoreTest {
+    private static final Logger Log = Logger.getLogger(YamlPlayerDataStoreTest.class.getName());
+    private static final ToIntFunction<String> Scales = code -> 2;
+
+    @TempDir
+    Path playersDir;
+
+    @Test
+    void storeLoadsVersionOneFilesAndSavesThemAsVersionTwo() throws IOException {
+        TestCurrencies.declare("migrate_coins");
+        UUID uuid = UUID.randomUUID();
+        // Version 1 files have no data version and sit directly in the players directory
+        Files.writeString(playersDir.resolve(uuid + ".yml"), String.join("\n",
+                "player-name: player",
+                "playtime: 60",
+                "balances:",
+                "  migrate_coins: 10.25",
+                "  migrate_retired: 7.5",
+                ""), StandardCharsets.UTF_8);
+
+        YamlPlayerDataStore store = new YamlPlayerDataStore(playersDir.toFile(), Log, Scales);
+        PlayerData loaded = store.load(uuid, null);
+        assertNotNull(loaded);
+        assertEquals("player", loaded.playerName());
+        assertEquals(60L, loaded.playtime());
+        assertEquals(Map.of("migrate_coins", 1_025L, "migrate_retired", 750L), loaded.balances());
+
+        assertTrue(store.save(loaded));
+        String name = uuid.toString();
+        File saved = playersDir.resolve(name.substring(0, 2)).resolve(name.substring(2, 4)).resolve(name + ".yml").toFile();
+        assertTrue(saved.isFile());
+        assertFalse(playersDir.resolve(uuid + ".yml").toFile().exists());
+
+        YamlConfiguration document = YamlConfiguration.loadConfiguration(saved);
+        assertEquals(PlayerData.DataVersion, PlayerDataMigrator.version(document));
+        assertEquals(1_025L, document.getLong("balances.migrate_coins"));
+        assertEquals(750L, document.getLong("balances.migrate_retired"));
+        assertEquals(2, document.getInt("scales.migrate_retired"));
+        assertEquals(loaded.balances(), store.load(uuid, null).balances());
+    }
+}